@@ -0,0 +1,83 @@
+package com.khanivorous.studentservice.jmh;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.khanivorous.studentservice.student.export.StudentJsonHttpMessageConverter;
+import com.khanivorous.studentservice.student.model.StudentDTO;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes a {@code GET /students} response body with the Jackson converter and with
+ * {@link StudentJsonHttpMessageConverter}, into a body that discards what it is given so only the encoding is
+ * measured. Run with {@code -Djmh.args="StudentJsonConverterBenchmark -prof gc"} to see the allocation per write.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StudentJsonConverterBenchmark {
+
+    private static final Type STUDENT_LIST = new ParameterizedTypeReference<List<StudentDTO>>() {
+    }.getType();
+
+    @Param({"100", "10000"})
+    private int size;
+
+    private MappingJackson2HttpMessageConverter jacksonConverter;
+
+    private StudentJsonHttpMessageConverter studentConverter;
+
+    private List<StudentDTO> students;
+
+    private final HttpOutputMessage discardingBody = new HttpOutputMessage() {
+
+        private final HttpHeaders headers = new HttpHeaders();
+
+        @Override
+        public OutputStream getBody() {
+            return OutputStream.nullOutputStream();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+    };
+
+    @Setup
+    public void setUp() {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        jacksonConverter = new MappingJackson2HttpMessageConverter(objectMapper);
+        studentConverter = new StudentJsonHttpMessageConverter(objectMapper);
+        students = new ArrayList<>(size);
+        for (int id = 1; id <= size; id++) {
+            students.add(new StudentDTO(id, "Student " + id, 17 + id % 60));
+        }
+    }
+
+    @Benchmark
+    public void jackson() throws IOException {
+        discardingBody.getHeaders().clear();
+        jacksonConverter.write(students, STUDENT_LIST, MediaType.APPLICATION_JSON, discardingBody);
+    }
+
+    @Benchmark
+    public void studentConverter() throws IOException {
+        discardingBody.getHeaders().clear();
+        studentConverter.write(students, STUDENT_LIST, MediaType.APPLICATION_JSON, discardingBody);
+    }
+}
@@ -0,0 +1,48 @@
+package com.khanivorous.studentservice.jmh;
+
+import com.khanivorous.studentservice.student.entities.Student;
+import com.khanivorous.studentservice.student.mapper.StudentMapper;
+import com.khanivorous.studentservice.student.model.StudentDTO;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StudentMapperBenchmark {
+
+    @Param({"1", "100", "10000"})
+    private int size;
+
+    private final StudentMapper mapper = new StudentMapper();
+
+    private List<Student> students;
+
+    @Setup
+    public void setUp() {
+        students = new ArrayList<>(size);
+        for (int id = 1; id <= size; id++) {
+            Student student = new Student();
+            student.setId(id);
+            student.setName("Student " + id);
+            student.setAge(17 + id % 60);
+            students.add(student);
+        }
+    }
+
+    @Benchmark
+    public StudentDTO toDTO() {
+        return mapper.toDTO(students.get(0));
+    }
+
+    @Benchmark
+    public List<StudentDTO> toDTOList() {
+        return mapper.toDTOList(students);
+    }
+}
@@ -0,0 +1,80 @@
+package com.khanivorous.studentservice.jmh;
+
+import com.khanivorous.studentservice.student.model.StudentDTO;
+import com.khanivorous.studentservice.student.model.StudentMatch;
+import com.khanivorous.studentservice.student.search.StudentNameIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Searches one million generated names. They are built from random syllables, so common prefixes have long posting
+ * lists and a typo is close to several names, as in a real table.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class StudentNameIndexBenchmark {
+
+    private static final String[] ONSETS = {"", "b", "br", "c", "ch", "d", "f", "g", "gr", "h", "j", "k", "l", "m", "n",
+            "p", "r", "s", "sh", "st", "t", "th", "tr", "v", "w", "z"};
+
+    private static final String[] NUCLEI = {"a", "e", "i", "o", "u", "ai", "ea", "ie", "ou", "y"};
+
+    private static final String[] CODAS = {"", "", "", "l", "n", "r", "s", "t", "m", "ck", "nd", "rt", "ll", "ss"};
+
+    @Param({"1000000"})
+    private int size;
+
+    private StudentNameIndex index;
+
+    private String fullName;
+
+    private String typo;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        index = new StudentNameIndex(null, null);
+        for (int id = 1; id <= size; id++) {
+            String name = word(random) + " " + word(random);
+            index.add(new StudentDTO(id, name, 17 + id % 60));
+            if (id == size / 2) {
+                fullName = name;
+            }
+        }
+        typo = fullName.substring(0, 2) + fullName.charAt(3) + fullName.charAt(2) + fullName.substring(4);
+    }
+
+    @Benchmark
+    public List<StudentMatch> searchPrefix() {
+        return index.search("bra", 10);
+    }
+
+    @Benchmark
+    public List<StudentMatch> searchFullName() {
+        return index.search(fullName, 10);
+    }
+
+    @Benchmark
+    public List<StudentMatch> searchWithTypo() {
+        return index.search(typo, 10);
+    }
+
+    private static String word(Random random) {
+        StringBuilder word = new StringBuilder();
+        int syllables = 2 + random.nextInt(2);
+        for (int i = 0; i < syllables; i++) {
+            word.append(ONSETS[random.nextInt(ONSETS.length)])
+                    .append(NUCLEI[random.nextInt(NUCLEI.length)])
+                    .append(CODAS[random.nextInt(CODAS.length)]);
+        }
+        word.setCharAt(0, Character.toUpperCase(word.charAt(0)));
+        return word.toString();
+    }
+}
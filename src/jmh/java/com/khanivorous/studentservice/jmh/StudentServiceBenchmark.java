@@ -0,0 +1,77 @@
+package com.khanivorous.studentservice.jmh;
+
+import com.khanivorous.studentservice.StudentServiceApplication;
+import com.khanivorous.studentservice.student.model.StudentCursor;
+import com.khanivorous.studentservice.student.model.StudentDTO;
+import com.khanivorous.studentservice.student.model.StudentPage;
+import com.khanivorous.studentservice.student.services.StudentService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calls {@link StudentService} in a Spring context without the web layer, backed by embedded H2 with
+ * {@value #ROWS} students.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StudentServiceBenchmark {
+
+    private static final int ROWS = 10_000;
+
+    private ConfigurableApplicationContext context;
+
+    private StudentService studentService;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(StudentServiceApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:jmh;DB_CLOSE_DELAY=-1",
+                        "logging.level.root=warn")
+                .run();
+        List<Object[]> rows = new ArrayList<>(ROWS);
+        for (int id = 1; id <= ROWS; id++) {
+            rows.add(new Object[]{id, "Student " + id, 17 + id % 60});
+        }
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        jdbcTemplate.batchUpdate("insert into student (id, name, age) values (?, ?, ?)", rows);
+        jdbcTemplate.execute("alter sequence student_id_seq restart with " + (ROWS + 1));
+        studentService = context.getBean(StudentService.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * Always the same student, so this measures a cache hit.
+     */
+    @Benchmark
+    public StudentDTO getCachedStudentById() {
+        return studentService.getStudentById(1);
+    }
+
+    @Benchmark
+    public StudentPage getStudentPage() {
+        return studentService.getStudentPage(StudentCursor.encode(ThreadLocalRandom.current().nextInt(ROWS - 100)), 100);
+    }
+
+    @Benchmark
+    public StudentDTO addNewStudent() {
+        return studentService.addNewStudent("Student", 20);
+    }
+}
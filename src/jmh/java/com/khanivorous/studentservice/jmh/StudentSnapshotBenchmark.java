@@ -0,0 +1,100 @@
+package com.khanivorous.studentservice.jmh;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.khanivorous.studentservice.student.export.StudentJsonHttpMessageConverter;
+import com.khanivorous.studentservice.student.model.StudentDTO;
+import com.khanivorous.studentservice.student.sharding.StudentShards;
+import com.khanivorous.studentservice.student.snapshot.StudentSnapshot;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes a full page of {@code GET /students} as JSON from the snapshot's columns and from the {@code StudentDTO}s a
+ * database read hands back, into a body that discards what it is given. The snapshot is filled through {@code put},
+ * the way it follows writes. Run with {@code -Djmh.args="StudentSnapshotBenchmark -prof gc"} to see the allocation
+ * per page.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StudentSnapshotBenchmark {
+
+    private static final Type STUDENT_LIST = new ParameterizedTypeReference<List<StudentDTO>>() {
+    }.getType();
+
+    private static final int STUDENTS = 100_000;
+
+    private static final int PAGE_SIZE = 1000;
+
+    private StudentJsonHttpMessageConverter converter;
+
+    private StudentSnapshot snapshot;
+
+    private List<StudentDTO> students;
+
+    private int after;
+
+    private final HttpOutputMessage discardingBody = new HttpOutputMessage() {
+
+        private final HttpHeaders headers = new HttpHeaders();
+
+        @Override
+        public OutputStream getBody() {
+            return OutputStream.nullOutputStream();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+    };
+
+    @Setup
+    public void setUp() {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        converter = new StudentJsonHttpMessageConverter(objectMapper);
+        snapshot = new StudentSnapshot(null, new StudentShards(null, Optional.empty(), Optional.empty(), 1),
+                new SimpleMeterRegistry(), 1024);
+        students = new ArrayList<>(STUDENTS);
+        for (int id = 1; id <= STUDENTS; id++) {
+            StudentDTO student = new StudentDTO(id, "Student " + id, 17 + id % 60);
+            students.add(student);
+            snapshot.put(student);
+        }
+    }
+
+    @Benchmark
+    public void snapshotPage() throws IOException {
+        after = (after + PAGE_SIZE) % (STUDENTS - PAGE_SIZE);
+        discardingBody.getHeaders().clear();
+        converter.write(snapshot.page(after, PAGE_SIZE), STUDENT_LIST, MediaType.APPLICATION_JSON, discardingBody);
+    }
+
+    @Benchmark
+    public void dtoPage() throws IOException {
+        after = (after + PAGE_SIZE) % (STUDENTS - PAGE_SIZE);
+        discardingBody.getHeaders().clear();
+        // a database read creates a DTO per row, the name strings are shared here so it still costs less than one
+        List<StudentDTO> page = new ArrayList<>(PAGE_SIZE);
+        for (StudentDTO student : students.subList(after, after + PAGE_SIZE)) {
+            page.add(new StudentDTO(student.id(), student.name(), student.age()));
+        }
+        converter.write(page, STUDENT_LIST, MediaType.APPLICATION_JSON, discardingBody);
+    }
+}
@@ -0,0 +1,73 @@
+package com.khanivorous.studentservice.jmh;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.khanivorous.studentservice.student.model.StudentDTO;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encodes and decodes lists of students in each format {@code GET /students} can answer with. The size of the
+ * encoded list is printed once per format, as JMH only measures time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StudentWireFormatBenchmark {
+
+    @Param({"json", "cbor", "smile"})
+    private String format;
+
+    @Param({"10000"})
+    private int size;
+
+    private ObjectWriter writer;
+
+    private ObjectReader reader;
+
+    private List<StudentDTO> students;
+
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() throws IOException {
+        JsonFactory factory = switch (format) {
+            case "cbor" -> new CBORFactory();
+            case "smile" -> new SmileFactory();
+            default -> new JsonFactory();
+        };
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().factory(factory).build();
+        JavaType listType = objectMapper.getTypeFactory().constructCollectionType(List.class, StudentDTO.class);
+        writer = objectMapper.writerFor(listType);
+        reader = objectMapper.readerFor(listType);
+        students = new ArrayList<>(size);
+        for (int id = 1; id <= size; id++) {
+            students.add(new StudentDTO(id, "Student " + id, 17 + id % 60));
+        }
+        encoded = writer.writeValueAsBytes(students);
+        System.out.printf("%n%s: %d students encode to %d bytes%n", format, size, encoded.length);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return writer.writeValueAsBytes(students);
+    }
+
+    @Benchmark
+    public List<StudentDTO> decode() throws IOException {
+        return reader.readValue(encoded);
+    }
+}
@@ -0,0 +1,10 @@
+package com.khanivorous.studentservice.student;
+
+
+public class BatchTooLargeException extends RuntimeException {
+
+    public BatchTooLargeException(int size, int maximum) {
+        super("Batch of " + size + " items exceeds the maximum of " + maximum);
+    }
+
+}
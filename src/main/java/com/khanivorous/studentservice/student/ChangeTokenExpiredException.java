@@ -0,0 +1,10 @@
+package com.khanivorous.studentservice.student;
+
+
+public class ChangeTokenExpiredException extends RuntimeException {
+
+    public ChangeTokenExpiredException(String token) {
+        super("Change token " + token + " is older than the kept deletions, read all students again");
+    }
+
+}
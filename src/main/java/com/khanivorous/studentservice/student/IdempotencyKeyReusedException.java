@@ -0,0 +1,10 @@
+package com.khanivorous.studentservice.student;
+
+
+public class IdempotencyKeyReusedException extends RuntimeException {
+
+    public IdempotencyKeyReusedException(String key) {
+        super("Idempotency-Key " + key + " was already used for a different student");
+    }
+
+}
@@ -0,0 +1,10 @@
+package com.khanivorous.studentservice.student;
+
+
+public class IngestQueueFullException extends RuntimeException {
+
+    public IngestQueueFullException(int capacity) {
+        super("The ingest queue is full with " + capacity + " students waiting to be written, retry later");
+    }
+
+}
@@ -0,0 +1,10 @@
+package com.khanivorous.studentservice.student;
+
+
+public class InvalidPageRequestException extends RuntimeException {
+
+    public InvalidPageRequestException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,9 @@
+package com.khanivorous.studentservice.student;
+
+public class ShardingUnsupportedException extends RuntimeException {
+
+    public ShardingUnsupportedException(String operation) {
+        super(operation + " is not available while students are sharded");
+    }
+
+}
@@ -0,0 +1,56 @@
+package com.khanivorous.studentservice.student.changes;
+
+import com.khanivorous.studentservice.student.repository.StudentRepository;
+import com.khanivorous.studentservice.student.sharding.StudentShards;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Removes the tombstones of students deleted more than {@code student.changes.tombstone-retention} ago. A client that
+ * has not synced for longer than that gets a 410 from GET /students/changes and has to read all students again. Every
+ * shard keeps its own tombstones and is compacted in turn. The row recording how far is created on every shard when the
+ * application starts.
+ */
+@Component
+@Profile("!reactive")
+public class StudentTombstoneCompactor implements SmartInitializingSingleton {
+
+    private final StudentRepository studentRepository;
+
+    private final StudentShards studentShards;
+
+    private final Duration retention;
+
+    public StudentTombstoneCompactor(StudentRepository studentRepository, StudentShards studentShards,
+                                     @Value("${student.changes.tombstone-retention:30d}") Duration retention) {
+        this.studentRepository = studentRepository;
+        this.studentShards = studentShards;
+        this.retention = retention;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        studentShards.forEachShard(() -> {
+            try {
+                studentRepository.createChangeSequence();
+            } catch (DataIntegrityViolationException ex) {
+                // another instance starting at the same time created it
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${student.changes.compaction-interval:PT1H}")
+    public int compact() {
+        Instant deletedBefore = Instant.now().minus(retention);
+        return studentShards.onEachShard(() -> studentRepository.compactTombstones(deletedBefore)).stream()
+                .mapToInt(Integer::intValue)
+                .sum();
+    }
+}
@@ -0,0 +1,96 @@
+package com.khanivorous.studentservice.student.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits reads from writes when {@code student.datasource.replicas.urls} lists one or more read replicas. Read-only
+ * transactions, such as the ones behind {@code GET /students}, run on the replicas and everything else on the primary
+ * configured by {@code spring.datasource}. The replicas use the primary's credentials unless they are given their own.
+ */
+@Configuration
+@Profile("!reactive")
+@ConditionalOnProperty(name = "student.datasource.replicas.urls")
+public class ReadReplicaConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        primary.setPoolName("primary");
+        return primary;
+    }
+
+    @Bean(destroyMethod = "close")
+    public ReplicaRoutingDataSource replicaRoutingDataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                                            DataSourceProperties properties,
+                                                            @Value("${student.datasource.replicas.urls}") List<String> urls,
+                                                            @Value("${student.datasource.replicas.username:}") String username,
+                                                            @Value("${student.datasource.replicas.password:}") String password,
+                                                            @Value("${student.datasource.replicas.pool-size:10}") int poolSize,
+                                                            @Value("${student.datasource.replicas.connection-timeout:1s}") Duration connectionTimeout,
+                                                            @Value("${student.datasource.replicas.validation-timeout:1s}") Duration validationTimeout) {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (String url : urls) {
+            HikariDataSource replica = new HikariDataSource();
+            replica.setPoolName("replica-" + (replicas.size() + 1));
+            replica.setJdbcUrl(url.trim());
+            replica.setUsername(StringUtils.hasText(username) ? username : properties.determineUsername());
+            replica.setPassword(StringUtils.hasText(username) ? password : properties.determinePassword());
+            replica.setMaximumPoolSize(poolSize);
+            // a replica that is down should fail over quickly rather than hold the request for the primary's timeout
+            replica.setConnectionTimeout(connectionTimeout.toMillis());
+            replica.setInitializationFailTimeout(-1);
+            replica.setReadOnly(true);
+            replicas.put(replica.getPoolName(), replica);
+        }
+        return new ReplicaRoutingDataSource(primaryDataSource, replicas, validationTimeout);
+    }
+
+    /**
+     * Binds the replica pools the way Boot binds the primary's, the routing data source cannot take the registry
+     * itself because the registry's own data source metrics need every data source first.
+     */
+    @Bean
+    public MeterBinder replicaMetrics(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return registry -> {
+            for (DataSource replica : replicaRoutingDataSource.replicaDataSources()) {
+                if (replica instanceof HikariDataSource hikari) {
+                    hikari.setMetricRegistry(registry);
+                }
+            }
+            Gauge.builder("student.datasource.replicas.healthy", replicaRoutingDataSource, ReplicaRoutingDataSource::healthyReplicas)
+                    .description("replicas taking read-only transactions")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+
+    @Bean
+    public ReadYourWritesFilter readYourWritesFilter(@Value("${student.datasource.replicas.read-your-writes:5s}") Duration window) {
+        return new ReadYourWritesFilter(window);
+    }
+}
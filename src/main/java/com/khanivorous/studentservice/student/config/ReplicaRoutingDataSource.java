@@ -0,0 +1,183 @@
+package com.khanivorous.studentservice.student.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Hands out connections for read-only transactions from the healthy replicas in turn, and every other connection from
+ * the primary.
+ * <p>
+ * A transaction is only known to be read-only once it has begun, so this has to sit behind a
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}, which takes the connection at the first
+ * statement. A replica that fails to hand out a connection, or fails {@link #checkReplicas()}, is ejected and its reads
+ * go to the primary until a later check finds it healthy again. Reads also go to the primary while
+ * {@link #setReadFromPrimary(boolean)} is set for the thread, see {@link ReadYourWritesFilter}.
+ */
+public class ReplicaRoutingDataSource extends AbstractDataSource implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    private static final ThreadLocal<Boolean> readFromPrimary = new ThreadLocal<>();
+
+    private static final class Replica {
+
+        private final String name;
+
+        private final DataSource dataSource;
+
+        private volatile boolean healthy = true;
+
+        private Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+    }
+
+    private final DataSource primary;
+
+    private final List<Replica> replicas = new ArrayList<>();
+
+    private final int validationTimeoutSeconds;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas, Duration validationTimeout) {
+        this.primary = primary;
+        replicas.forEach((name, dataSource) -> this.replicas.add(new Replica(name, dataSource)));
+        this.validationTimeoutSeconds = (int) Math.max(1, validationTimeout.toSeconds());
+    }
+
+    /**
+     * Sends the reads of the current thread to the primary until this is called again with {@code false}.
+     */
+    public static void setReadFromPrimary(boolean primary) {
+        if (primary) {
+            readFromPrimary.set(Boolean.TRUE);
+        } else {
+            readFromPrimary.remove();
+        }
+    }
+
+    /**
+     * Runs the read on the primary, for reads whose result outlives the request and must not come from a replica that
+     * has not caught up. It has to be called before the transaction it runs in takes its connection.
+     */
+    public static <T> T readFromPrimary(Supplier<T> read) {
+        Boolean previous = readFromPrimary.get();
+        readFromPrimary.set(Boolean.TRUE);
+        try {
+            return read.get();
+        } finally {
+            if (previous == null) {
+                readFromPrimary.remove();
+            }
+        }
+    }
+
+    /**
+     * Whether the read-only transactions of the current thread are sent to the replicas, which they are unless the
+     * thread reads from the primary.
+     */
+    public boolean readsGoToReplicas() {
+        return !replicas.isEmpty() && readFromPrimary.get() == null;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Replica replica = route();
+        if (replica == null) {
+            return primary.getConnection();
+        }
+        try {
+            return replica.dataSource.getConnection();
+        } catch (SQLException ex) {
+            eject(replica, ex);
+            return primary.getConnection();
+        }
+    }
+
+    /**
+     * Connections for other credentials are always taken from the primary.
+     */
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return primary.getConnection(username, password);
+    }
+
+    /**
+     * Ejects the replicas that cannot hand out a valid connection and takes back the ones that can again.
+     */
+    @Scheduled(fixedDelayString = "${student.datasource.replicas.health-check-interval:PT5S}")
+    public void checkReplicas() {
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.dataSource.getConnection()) {
+                if (connection.isValid(validationTimeoutSeconds)) {
+                    if (!replica.healthy) {
+                        log.info("Replica {} is healthy again, sending it reads", replica.name);
+                        replica.healthy = true;
+                    }
+                } else {
+                    eject(replica, null);
+                }
+            } catch (SQLException ex) {
+                eject(replica, ex);
+            }
+        }
+    }
+
+    public int healthyReplicas() {
+        return (int) replicas.stream().filter(replica -> replica.healthy).count();
+    }
+
+    List<DataSource> replicaDataSources() {
+        return replicas.stream().map(replica -> replica.dataSource).toList();
+    }
+
+    /**
+     * Closes the replica pools, the primary is left to its owner.
+     */
+    @Override
+    public void close() throws Exception {
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    private Replica route() {
+        if (replicas.isEmpty()
+                || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                || readFromPrimary.get() != null) {
+            return null;
+        }
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            if (replica.healthy) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    private void eject(Replica replica, SQLException cause) {
+        if (replica.healthy) {
+            log.warn("Ejecting replica {}, its reads go to the primary until it is healthy again", replica.name, cause);
+            replica.healthy = false;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.khanivorous.studentservice.student.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Runs the periodic housekeeping jobs, such as purging expired idempotency keys and compacting old tombstones.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
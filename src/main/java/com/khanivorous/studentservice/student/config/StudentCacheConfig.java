@@ -0,0 +1,16 @@
+package com.khanivorous.studentservice.student.config;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Enables the in-process student cache. The cache itself is a Caffeine cache configured through
+ * {@code spring.cache.caffeine.spec}, which bounds it by size and time and evicts with W-TinyLFU.
+ */
+@Configuration
+@EnableCaching
+public class StudentCacheConfig {
+
+    public static final String STUDENT_CACHE = "students";
+
+}
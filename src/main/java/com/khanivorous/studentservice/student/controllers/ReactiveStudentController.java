@@ -0,0 +1,145 @@
+package com.khanivorous.studentservice.student.controllers;
+
+import com.khanivorous.studentservice.student.InvalidPageRequestException;
+import com.khanivorous.studentservice.student.NoSuchIdException;
+import com.khanivorous.studentservice.student.events.StudentChangeFeed;
+import com.khanivorous.studentservice.student.events.StudentVersion;
+import com.khanivorous.studentservice.student.model.StudentCreationDTO;
+import com.khanivorous.studentservice.student.model.StudentDTO;
+import com.khanivorous.studentservice.student.model.StudentQuery;
+import com.khanivorous.studentservice.student.model.StudentSort;
+import com.khanivorous.studentservice.student.model.StudentStats;
+import com.khanivorous.studentservice.student.services.ReactiveStudentService;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.validation.FieldError;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.bind.support.WebExchangeBindException;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.validation.Valid;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serves the same /students contract as {@link StudentController} from WebFlux when the reactive profile is active.
+ */
+@RestController
+@Profile("reactive")
+@RequestMapping(path = "/students")
+public class ReactiveStudentController {
+
+    private ReactiveStudentService studentService;
+
+    private StudentVersion studentVersion;
+
+    private StudentChangeFeed studentChangeFeed;
+
+    public ReactiveStudentController(ReactiveStudentService studentService, StudentVersion studentVersion,
+                                     StudentChangeFeed studentChangeFeed) {
+        this.studentService = studentService;
+        this.studentVersion = studentVersion;
+        this.studentChangeFeed = studentChangeFeed;
+    }
+
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseStatus(HttpStatus.CREATED)
+    public Mono<StudentDTO> addNewStudent(@Valid @RequestBody StudentCreationDTO student) {
+        return studentService.addNewStudent(student.name(), student.age());
+    }
+
+    @GetMapping(value = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<StudentDTO> getUserById(@PathVariable Integer id, ServerWebExchange exchange) {
+        if (exchange.checkNotModified(studentVersion.eTag())) {
+            return Mono.empty();
+        }
+        return studentService.getStudentById(id);
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<List<StudentDTO>>> getAllUsers(@RequestParam(defaultValue = "100") int limit,
+                                                              @RequestParam(required = false) String after,
+                                                              @RequestParam(required = false) String namePrefix,
+                                                              @RequestParam(required = false) Integer minAge,
+                                                              @RequestParam(required = false) Integer maxAge,
+                                                              @RequestParam(defaultValue = "id") String sort,
+                                                              ServerWebExchange exchange) {
+        if (exchange.checkNotModified(studentVersion.eTag())) {
+            return Mono.empty();
+        }
+        StudentQuery query = new StudentQuery(namePrefix, minAge, maxAge, StudentSort.fromParameter(sort));
+        return studentService.getStudentPage(query, after, limit).map(page -> {
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (page.hasNext()) {
+                String next = UriComponentsBuilder.fromUri(exchange.getRequest().getURI())
+                        .replaceQueryParam("after", page.nextCursor())
+                        .toUriString();
+                response.header(StudentController.NEXT_CURSOR_HEADER, page.nextCursor())
+                        .header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+            }
+            return response.body(page.students());
+        });
+    }
+
+    @GetMapping(value = "/stats", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<StudentStats> getStudentStats(@RequestParam(defaultValue = "10") int bucketSize, ServerWebExchange exchange) {
+        if (exchange.checkNotModified(studentVersion.eTag())) {
+            return Mono.empty();
+        }
+        return studentService.getStudentStats(bucketSize);
+    }
+
+    /**
+     * Streams every student in id order as newline delimited json, one row is read from the database for each
+     * row the client consumes.
+     */
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<StudentDTO> streamAllUsers() {
+        return studentService.getAllStudents();
+    }
+
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<?>> streamChanges(
+            @RequestHeader(name = StudentController.LAST_EVENT_ID_HEADER, required = false) String lastEventId) {
+        return studentChangeFeed.subscribe(lastEventId);
+    }
+
+    @DeleteMapping("/{id}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public Mono<Void> deleteStudent(@PathVariable Integer id) {
+        return studentService.deleteStudentById(id);
+    }
+
+    @ExceptionHandler(NoSuchIdException.class)
+    @ResponseStatus(HttpStatus.NOT_FOUND)
+    String studentNotFoundHandler(NoSuchIdException ex) {
+        return ex.getMessage();
+    }
+
+    @ExceptionHandler(InvalidPageRequestException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    String invalidPageRequestHandler(InvalidPageRequestException ex) {
+        return ex.getMessage();
+    }
+
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    @ExceptionHandler(WebExchangeBindException.class)
+    public Map<String, String> handleValidationExceptions(WebExchangeBindException ex) {
+        Map<String, String> errors = new HashMap<>();
+        ex.getBindingResult().getAllErrors().forEach((error) -> {
+            String fieldName = ((FieldError) error).getField();
+            String errorMessage = error.getDefaultMessage();
+            errors.put(fieldName, errorMessage);
+        });
+        return errors;
+    }
+}
@@ -1,8 +1,31 @@
 package com.khanivorous.studentservice.student.controllers;
 
+import com.khanivorous.studentservice.student.BatchTooLargeException;
+import com.khanivorous.studentservice.student.ChangeTokenExpiredException;
+import com.khanivorous.studentservice.student.IdempotencyKeyReusedException;
+import com.khanivorous.studentservice.student.IngestQueueFullException;
+import com.khanivorous.studentservice.student.InvalidPageRequestException;
 import com.khanivorous.studentservice.student.NoSuchIdException;
+import com.khanivorous.studentservice.student.ShardingUnsupportedException;
+import com.khanivorous.studentservice.student.config.ReplicaRoutingDataSource;
+import com.khanivorous.studentservice.student.events.StudentChangeFeed;
+import com.khanivorous.studentservice.student.events.StudentVersion;
+import com.khanivorous.studentservice.student.export.StudentExporter;
+import com.khanivorous.studentservice.student.ingest.StudentIngestQueue;
+import com.khanivorous.studentservice.student.model.StudentBatchError;
+import com.khanivorous.studentservice.student.model.StudentBatchResult;
+import com.khanivorous.studentservice.student.model.StudentBulkDeleteResult;
+import com.khanivorous.studentservice.student.model.StudentChanges;
 import com.khanivorous.studentservice.student.model.StudentCreationDTO;
+import com.khanivorous.studentservice.student.model.StudentCreationResult;
 import com.khanivorous.studentservice.student.model.StudentDTO;
+import com.khanivorous.studentservice.student.model.StudentIngestStatus;
+import com.khanivorous.studentservice.student.model.StudentMatch;
+import com.khanivorous.studentservice.student.model.StudentPage;
+import com.khanivorous.studentservice.student.model.StudentQuery;
+import com.khanivorous.studentservice.student.model.StudentSort;
+import com.khanivorous.studentservice.student.model.StudentStats;
+import com.khanivorous.studentservice.student.model.StudentUpdateDTO;
 import com.khanivorous.studentservice.student.services.StudentService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -12,26 +35,88 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.validation.FieldError;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import reactor.core.publisher.Flux;
 
+import javax.validation.ConstraintViolation;
 import javax.validation.Valid;
+import javax.validation.Validator;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
 
 @RestController
+@Profile("!reactive")
 @RequestMapping(path = "/students")
 public class StudentController {
 
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    public static final int MAX_BATCH_SIZE = 10_000;
+
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    public static final String IDEMPOTENT_REPLAYED_HEADER = "Idempotent-Replayed";
+
+    public static final String LAST_EVENT_ID_HEADER = "Last-Event-ID";
+
+    /**
+     * Smile, Jackson's binary JSON, offered with CBOR next to JSON for service-to-service calls, see
+     * {@link com.khanivorous.studentservice.student.config.StudentWireFormatConfig}.
+     */
+    public static final String SMILE_VALUE = "application/x-jackson-smile";
+
+    // the formats of the negotiated reads, in the order they are declared in produces
+    private static final List<MediaType> READ_FORMATS = List.of(MediaType.APPLICATION_JSON, MediaType.APPLICATION_CBOR,
+            MediaType.parseMediaType(SMILE_VALUE));
+
     private StudentService studentService;
 
+    private StudentExporter studentExporter;
+
+    private Validator validator;
+
+    private StudentVersion studentVersion;
+
+    private StudentChangeFeed studentChangeFeed;
+
+    private StudentIngestQueue studentIngestQueue;
+
+    private ReplicaRoutingDataSource replicaRoutingDataSource;
+
     @Autowired
-    public StudentController(StudentService studentService) {
+    public StudentController(StudentService studentService, StudentExporter studentExporter, Validator validator,
+                             StudentVersion studentVersion, StudentChangeFeed studentChangeFeed,
+                             Optional<StudentIngestQueue> studentIngestQueue,
+                             Optional<ReplicaRoutingDataSource> replicaRoutingDataSource) {
         this.studentService = studentService;
+        this.studentExporter = studentExporter;
+        this.validator = validator;
+        this.studentVersion = studentVersion;
+        this.studentChangeFeed = studentChangeFeed;
+        this.studentIngestQueue = studentIngestQueue.orElse(null);
+        this.replicaRoutingDataSource = replicaRoutingDataSource.orElse(null);
     }
 
     @Operation(summary = "Add a new Student")
@@ -40,15 +125,107 @@ public class StudentController {
                     responseCode = "201",
                     description = "Added new student",
                     content = { @Content(mediaType = "application/json", schema = @Schema(implementation = StudentDTO.class)) }
-            )})
-    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE,
-            produces = MediaType.APPLICATION_JSON_VALUE)
-    @ResponseStatus(HttpStatus.CREATED)
-    public @ResponseBody
-    StudentDTO addNewStudent(@Valid @RequestBody StudentCreationDTO student) {
+            ),
+            @ApiResponse(
+                    responseCode = "202",
+                    description = "Queued the new student to be written, its progress is at the Location header",
+                    content = { @Content(mediaType = "application/json", schema = @Schema(implementation = StudentDTO.class)) }
+            ),
+            @ApiResponse(responseCode = "422", description = "The Idempotency-Key was already used for a different student",
+                    content =  @Content),
+            @ApiResponse(responseCode = "429", description = "The ingest queue is full, retry after the Retry-After header",
+                    content =  @Content)})
+    @PostMapping(consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE, SMILE_VALUE},
+            produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE, SMILE_VALUE})
+    public ResponseEntity<StudentDTO> addNewStudent(@Valid @RequestBody StudentCreationDTO student,
+                                                    @Parameter(description = "a retry with the same key returns the student created by the first request")
+                                                    @RequestHeader(name = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
         String name = student.name();
         int age = student.age();
-        return studentService.addNewStudent(name, age);
+        // the key and the student are committed together, so keyed requests are never queued
+        if (idempotencyKey != null) {
+            StudentCreationResult result = studentService.addNewStudent(name, age, idempotencyKey);
+            ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.CREATED);
+            if (result.replayed()) {
+                response.header(IDEMPOTENT_REPLAYED_HEADER, "true");
+            }
+            return response.body(result.student());
+        }
+        if (studentIngestQueue == null) {
+            return ResponseEntity.status(HttpStatus.CREATED).body(studentService.addNewStudent(name, age));
+        }
+        StudentIngestQueue.Receipt receipt = studentIngestQueue.accept(name, age);
+        if (receipt.committed()) {
+            return ResponseEntity.created(ServletUriComponentsBuilder.fromCurrentRequest()
+                            .path("/{id}")
+                            .buildAndExpand(receipt.student().id())
+                            .toUri())
+                    .body(receipt.student());
+        }
+        return ResponseEntity.accepted()
+                .location(ServletUriComponentsBuilder.fromCurrentRequest()
+                        .path("/ingest/{id}")
+                        .buildAndExpand(receipt.student().id())
+                        .toUri())
+                .body(receipt.student());
+    }
+
+    @Operation(summary = "Find out whether a student accepted with 202 has been written")
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "QUEUED, WRITTEN or FAILED",
+                    content = { @Content(mediaType = "application/json", schema = @Schema(implementation = StudentIngestStatus.class)) }
+            ),
+            @ApiResponse(responseCode = "404", description = "No student with this id was queued or written",
+                    content =  @Content)})
+    @GetMapping(value = "/ingest/{id}", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE, SMILE_VALUE})
+    public @ResponseBody
+    StudentIngestStatus getIngestStatus(@Parameter(description = "id returned when the student was accepted") @PathVariable Integer id) {
+        if (studentIngestQueue == null) {
+            throw new NoSuchIdException(id);
+        }
+        return studentIngestQueue.status(id);
+    }
+
+    @Operation(summary = "Add many new Students in one request")
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "201",
+                    description = "Added every student",
+                    content = { @Content(mediaType = "application/json", schema = @Schema(implementation = StudentBatchResult.class)) }
+            ),
+            @ApiResponse(
+                    responseCode = "207",
+                    description = "Added some students, the errors list the index of every student that was not added",
+                    content = { @Content(mediaType = "application/json", schema = @Schema(implementation = StudentBatchResult.class)) }
+            ),
+            @ApiResponse(responseCode = "400", description = "Too many students in one batch",
+                    content =  @Content)})
+    @PostMapping(value = "/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE, SMILE_VALUE},
+            produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE, SMILE_VALUE})
+    public ResponseEntity<StudentBatchResult> addNewStudents(@RequestBody List<StudentCreationDTO> students) {
+        if (students.size() > MAX_BATCH_SIZE) {
+            throw new BatchTooLargeException(students.size(), MAX_BATCH_SIZE);
+        }
+        Map<Integer, StudentCreationDTO> validStudents = new LinkedHashMap<>();
+        List<StudentBatchError> errors = new ArrayList<>();
+        for (int index = 0; index < students.size(); index++) {
+            StudentCreationDTO student = students.get(index);
+            Set<ConstraintViolation<StudentCreationDTO>> violations = validator.validate(student);
+            if (violations.isEmpty()) {
+                validStudents.put(index, student);
+            } else {
+                Map<String, String> fieldErrors = new HashMap<>();
+                violations.forEach(violation -> fieldErrors.put(violation.getPropertyPath().toString(), violation.getMessage()));
+                errors.add(new StudentBatchError(index, fieldErrors));
+            }
+        }
+        StudentBatchResult result = studentService.addNewStudents(validStudents);
+        errors.addAll(result.errors());
+        errors.sort(Comparator.comparingInt(StudentBatchError::index));
+        return ResponseEntity.status(errors.isEmpty() ? HttpStatus.CREATED : HttpStatus.MULTI_STATUS)
+                .body(new StudentBatchResult(result.created(), errors));
     }
 
     @Operation(summary = "Find student by id")
@@ -58,31 +235,202 @@ public class StudentController {
                     description = "found student",
                     content = { @Content(mediaType = "application/json", schema = @Schema(implementation = StudentDTO.class)) }
             ),
+            @ApiResponse(responseCode = "304", description = "No student has changed since the If-None-Match ETag",
+                    content =  @Content),
             @ApiResponse(responseCode = "404", description = "Student not found",
                     content =  @Content)})
-    @GetMapping(value = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
-    @ResponseStatus(HttpStatus.OK)
+    @GetMapping(value = "/{id}", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE, SMILE_VALUE})
     public @ResponseBody
-    StudentDTO getUserById(@Parameter(description = "id of student to be searched") @PathVariable Integer id) {
+    StudentDTO getUserById(@Parameter(description = "id of student to be searched") @PathVariable Integer id, NativeWebRequest request) {
+        if (notModified(request)) {
+            return null;
+        }
         return studentService.getStudentById(id);
     }
 
-    @Operation(summary = "Find all students")
+    @Operation(summary = "Find all students, one keyset page at a time")
     @ApiResponses(value = {
             @ApiResponse(
                     responseCode = "200",
-                    description = "all students",
+                    description = "one page of the matching students, in sort order",
                     content = {
                             @Content(
                                     mediaType = "application/json",
                                     array = @ArraySchema(schema = @Schema(implementation = StudentDTO.class))
                     )}
+            ),
+            @ApiResponse(responseCode = "304", description = "No student has changed since the If-None-Match ETag",
+                    content =  @Content),
+            @ApiResponse(responseCode = "400", description = "Invalid limit, sort, age range or cursor",
+                    content =  @Content)})
+    @GetMapping(produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE, SMILE_VALUE})
+    public ResponseEntity<List<StudentDTO>> getAllUsers(
+            @Parameter(description = "maximum number of students to return") @RequestParam(defaultValue = "100") int limit,
+            @Parameter(description = "cursor returned in the " + NEXT_CURSOR_HEADER + " header of the previous page") @RequestParam(required = false) String after,
+            @Parameter(description = "only students whose name starts with this prefix") @RequestParam(required = false) String namePrefix,
+            @Parameter(description = "only students at least this old") @RequestParam(required = false) Integer minAge,
+            @Parameter(description = "only students at most this old") @RequestParam(required = false) Integer maxAge,
+            @Parameter(description = "order of the students, one of id, name or age, ties are ordered by id") @RequestParam(defaultValue = "id") String sort,
+            NativeWebRequest request) {
+        StudentQuery query = new StudentQuery(namePrefix, minAge, maxAge, StudentSort.fromParameter(sort));
+        StudentPage page = readUnderETag(request, () -> studentService.getStudentPage(query, after, limit));
+        if (page == null) {
+            return null;
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.hasNext()) {
+            String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("after", page.nextCursor())
+                    .toUriString();
+            response.header(NEXT_CURSOR_HEADER, page.nextCursor())
+                    .header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+        return response.body(page.students());
+    }
+
+    @Operation(summary = "Find the students created, updated or deleted since a change token")
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "the changed students, the ids of the deleted ones and the token to send next time",
+                    content = { @Content(mediaType = "application/json", schema = @Schema(implementation = StudentChanges.class)) }
+            ),
+            @ApiResponse(responseCode = "400", description = "Invalid limit or token",
+                    content =  @Content),
+            @ApiResponse(responseCode = "410", description = "The token is too old, read all students and sync from the token returned without one",
+                    content =  @Content),
+            @ApiResponse(responseCode = "501", description = "Students are sharded, changes cannot be read in one order",
+                    content =  @Content)})
+    @GetMapping(value = "/changes", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE, SMILE_VALUE})
+    public @ResponseBody
+    StudentChanges getChanges(
+            @Parameter(description = "nextToken of the previous sync, every student is returned without it") @RequestParam(required = false) String since,
+            @Parameter(description = "maximum number of changes to return") @RequestParam(defaultValue = "100") int limit) {
+        return studentService.getChangesSince(since, limit);
+    }
+
+    @Operation(summary = "Count the students and summarise their ages")
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "the number of students, their minimum, maximum and mean age and an age histogram",
+                    content = { @Content(mediaType = "application/json", schema = @Schema(implementation = StudentStats.class)) }
+            ),
+            @ApiResponse(responseCode = "304", description = "No student has changed since the If-None-Match ETag",
+                    content =  @Content),
+            @ApiResponse(responseCode = "400", description = "Invalid bucket size",
+                    content =  @Content)})
+    @GetMapping(value = "/stats", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE, SMILE_VALUE})
+    public @ResponseBody
+    StudentStats getStudentStats(
+            @Parameter(description = "number of years in each bucket of the age histogram") @RequestParam(defaultValue = "10") int bucketSize,
+            NativeWebRequest request) {
+        return readUnderETag(request, () -> studentService.getStudentStats(bucketSize));
+    }
+
+    @Operation(summary = "Search students by name, tolerating typos and unfinished words")
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "the students with the most similar names, best match first",
+                    content = {
+                            @Content(
+                                    mediaType = "application/json",
+                                    array = @ArraySchema(schema = @Schema(implementation = StudentMatch.class))
+                    )}
+            ),
+            @ApiResponse(responseCode = "400", description = "Invalid limit",
+                    content =  @Content)})
+    @GetMapping(value = "/search", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE, SMILE_VALUE})
+    public @ResponseBody
+    List<StudentMatch> searchStudents(
+            @Parameter(description = "the name, or the start of it, as typed") @RequestParam String q,
+            @Parameter(description = "maximum number of students to return") @RequestParam(defaultValue = "10") int limit) {
+        return studentService.searchStudents(q, limit);
+    }
+
+    @Operation(summary = "Follow created, updated and deleted students as server-sent events")
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "one event per committed change, the data is the student, or only its id when deleted",
+                    content = @Content(mediaType = MediaType.TEXT_EVENT_STREAM_VALUE)
             )})
-    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
-    @ResponseStatus(HttpStatus.OK)
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<?>> streamChanges(
+            @Parameter(description = "id of the last event received, the changes after it are sent first")
+            @RequestHeader(name = LAST_EVENT_ID_HEADER, required = false) String lastEventId) {
+        return studentChangeFeed.subscribe(lastEventId);
+    }
+
+    @Operation(summary = "Export all students as newline delimited json")
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "every student, one json object per line",
+                    content = @Content(mediaType = StudentExporter.NDJSON_VALUE)
+            )})
+    @GetMapping(value = "/export", produces = StudentExporter.NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportStudentsAsNdjson() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(StudentExporter.NDJSON_VALUE))
+                .body(studentExporter.ndjson());
+    }
+
+    @Operation(summary = "Export all students as csv")
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "every student, with an id,name,age header line",
+                    content = @Content(mediaType = StudentExporter.CSV_VALUE)
+            )})
+    @GetMapping(value = "/export", produces = StudentExporter.CSV_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportStudentsAsCsv() {
+        return ResponseEntity.ok()
+                .contentType(new MediaType("text", "csv", StandardCharsets.UTF_8))
+                .body(studentExporter.csv());
+    }
+
+    @Operation(summary = "Replace the name and age of a student")
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "updated student, with its new version",
+                    content = { @Content(mediaType = "application/json", schema = @Schema(implementation = StudentDTO.class)) }
+            ),
+            @ApiResponse(responseCode = "400", description = "Invalid name or age",
+                    content =  @Content),
+            @ApiResponse(responseCode = "404", description = "Student not found",
+                    content =  @Content),
+            @ApiResponse(responseCode = "409", description = "The student is no longer at the given version",
+                    content =  @Content)})
+    @PutMapping(value = "/{id}", consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE)
     public @ResponseBody
-    List<StudentDTO> getAllUsers() {
-        return studentService.getAllStudents();
+    StudentDTO replaceStudent(@Parameter(description = "id of student to be updated") @PathVariable Integer id,
+                              @Validated(StudentUpdateDTO.Replacement.class) @RequestBody StudentUpdateDTO student) {
+        return studentService.updateStudent(id, student.name(), student.age(), student.version());
+    }
+
+    @Operation(summary = "Change the name or the age of a student")
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "updated student, with its new version",
+                    content = { @Content(mediaType = "application/json", schema = @Schema(implementation = StudentDTO.class)) }
+            ),
+            @ApiResponse(responseCode = "400", description = "Invalid name or age, or neither given",
+                    content =  @Content),
+            @ApiResponse(responseCode = "404", description = "Student not found",
+                    content =  @Content),
+            @ApiResponse(responseCode = "409", description = "The student is no longer at the given version",
+                    content =  @Content)})
+    @PatchMapping(value = "/{id}", consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public @ResponseBody
+    StudentDTO updateStudent(@Parameter(description = "id of student to be updated") @PathVariable Integer id,
+                             @Valid @RequestBody StudentUpdateDTO student) {
+        return studentService.updateStudent(id, student.name(), student.age(), student.version());
     }
 
     @Operation(summary = "Delete student by id")
@@ -101,6 +449,26 @@ public class StudentController {
         studentService.deleteStudentById(id);
     }
 
+    @Operation(summary = "Delete many students by id")
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "the ids that were deleted and the ids that did not exist",
+                    content = { @Content(mediaType = "application/json", schema = @Schema(implementation = StudentBulkDeleteResult.class)) }
+            ),
+            @ApiResponse(responseCode = "400", description = "Too many ids in one request",
+                    content =  @Content)})
+    @DeleteMapping(consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    public @ResponseBody
+    StudentBulkDeleteResult deleteStudents(@RequestBody List<Integer> ids) {
+        if (ids.size() > MAX_BATCH_SIZE) {
+            throw new BatchTooLargeException(ids.size(), MAX_BATCH_SIZE);
+        }
+        return studentService.deleteStudentsByIds(ids);
+    }
+
     @ResponseBody
     @ExceptionHandler(NoSuchIdException.class)
     @ResponseStatus(HttpStatus.NOT_FOUND)
@@ -108,6 +476,103 @@ public class StudentController {
         return ex.getMessage();
     }
 
+    @ResponseBody
+    @ExceptionHandler(InvalidPageRequestException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    String invalidPageRequestHandler(InvalidPageRequestException ex) {
+        return ex.getMessage();
+    }
+
+    @ResponseBody
+    @ExceptionHandler(BatchTooLargeException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    String batchTooLargeHandler(BatchTooLargeException ex) {
+        return ex.getMessage();
+    }
+
+    @ResponseBody
+    @ExceptionHandler(IdempotencyKeyReusedException.class)
+    @ResponseStatus(HttpStatus.UNPROCESSABLE_ENTITY)
+    String idempotencyKeyReusedHandler(IdempotencyKeyReusedException ex) {
+        return ex.getMessage();
+    }
+
+    /**
+     * Answers 304 when the If-None-Match ETag is the current one of the format this request is answered in.
+     */
+    private boolean notModified(NativeWebRequest request) {
+        return request.checkNotModified(studentVersion.eTag(readFormat(request)));
+    }
+
+    /**
+     * Runs a read answered under an ETag, or answers 304 and returns {@code null}. When the read goes to a replica the
+     * ETag is taken from what it returned, a replica that lags would otherwise give a client rows older than the
+     * counter's ETag and keep answering 304 for them after it caught up. Without one the counter's ETag is checked
+     * first and a 304 costs no read.
+     */
+    private <T> T readUnderETag(NativeWebRequest request, Supplier<T> read) {
+        if (replicaRoutingDataSource == null || !replicaRoutingDataSource.readsGoToReplicas()) {
+            return notModified(request) ? null : read.get();
+        }
+        T content = read.get();
+        return request.checkNotModified(studentVersion.eTagOf(content, readFormat(request))) ? null : content;
+    }
+
+    /**
+     * The format the request is answered in, chosen from the Accept header the way the message converters will choose
+     * it: the first format that the most preferred acceptable type allows.
+     */
+    private static MediaType readFormat(NativeWebRequest request) {
+        String[] accept = request.getHeaderValues(HttpHeaders.ACCEPT);
+        if (accept == null) {
+            return MediaType.APPLICATION_JSON;
+        }
+        List<MediaType> acceptable;
+        try {
+            acceptable = MediaType.parseMediaTypes(List.of(accept));
+        } catch (InvalidMediaTypeException ex) {
+            // the request is turned down before a body is written
+            return MediaType.APPLICATION_JSON;
+        }
+        MediaType.sortBySpecificityAndQuality(acceptable);
+        for (MediaType type : acceptable) {
+            for (MediaType format : READ_FORMATS) {
+                if (type.isCompatibleWith(format)) {
+                    return format;
+                }
+            }
+        }
+        return MediaType.APPLICATION_JSON;
+    }
+
+    @ResponseBody
+    @ExceptionHandler(ChangeTokenExpiredException.class)
+    @ResponseStatus(HttpStatus.GONE)
+    String changeTokenExpiredHandler(ChangeTokenExpiredException ex) {
+        return ex.getMessage();
+    }
+
+    @ResponseBody
+    @ExceptionHandler(ShardingUnsupportedException.class)
+    @ResponseStatus(HttpStatus.NOT_IMPLEMENTED)
+    String shardingUnsupportedHandler(ShardingUnsupportedException ex) {
+        return ex.getMessage();
+    }
+
+    @ResponseBody
+    @ExceptionHandler(ObjectOptimisticLockingFailureException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    String optimisticLockingFailureHandler(ObjectOptimisticLockingFailureException ex) {
+        return "Student with id " + ex.getIdentifier() + " was changed by someone else, read it again and retry";
+    }
+
+    @ExceptionHandler(IngestQueueFullException.class)
+    ResponseEntity<String> ingestQueueFullHandler(IngestQueueFullException ex) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(ex.getMessage());
+    }
+
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public Map<String, String> handleValidationExceptions(
@@ -0,0 +1,80 @@
+package com.khanivorous.studentservice.student.entities;
+
+import com.khanivorous.studentservice.student.model.StudentDTO;
+import org.springframework.data.domain.Persistable;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.PostLoad;
+import javax.persistence.PostPersist;
+import javax.persistence.Table;
+import javax.persistence.Transient;
+import java.time.Instant;
+
+// the key is the primary key, so two requests inserting the same key are serialised by the database on that one row
+@Entity
+@Table(name = "idempotency_key", indexes = @Index(name = "idx_idempotency_key_created_at", columnList = "createdAt"))
+public class IdempotencyKey implements Persistable<String> {
+
+    @Id
+    @Column(name = "idempotency_key", length = 255)
+    private String idempotencyKey;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    private Integer studentId;
+
+    private String studentName;
+
+    private Integer studentAge;
+
+    private Long studentVersion;
+
+    @Transient
+    private boolean isNew = true;
+
+    protected IdempotencyKey() {
+    }
+
+    public IdempotencyKey(String idempotencyKey, Instant createdAt) {
+        this.idempotencyKey = idempotencyKey;
+        this.createdAt = createdAt;
+    }
+
+    @Override
+    public String getId() {
+        return idempotencyKey;
+    }
+
+    /**
+     * Always true until the key has been saved or loaded, so saving a new key inserts it without selecting it first.
+     */
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        isNew = false;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public StudentDTO getStudent() {
+        return studentId == null ? null : new StudentDTO(studentId, studentName, studentAge, studentVersion);
+    }
+
+    public void setStudent(StudentDTO student) {
+        this.studentId = student.id();
+        this.studentName = student.name();
+        this.studentAge = student.age();
+        this.studentVersion = student.version();
+    }
+}
@@ -1,21 +1,50 @@
 package com.khanivorous.studentservice.student.entities;
 
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
+import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import javax.persistence.Version;
 
+// filtered pages and change feeds are keyset range scans on one of these, ordered by the column and then id
 @Entity
+@DynamicUpdate
+@Table(indexes = {
+        @Index(name = "idx_student_name_id", columnList = "name, id"),
+        @Index(name = "idx_student_age_id", columnList = "age, id"),
+        @Index(name = "idx_student_change_seq_id", columnList = "changeSeq, id")})
 public class Student {
 
+    // pooled-lo reserves 50 ids per sequence call and treats the stored value as the next free id. It has a sequence
+    // of its own, created with an increment of 50, because hibernate_sequence of databases from before it counts in
+    // ones and would hand out overlapping blocks, db/student-id-seq-mysql.sql starts it past the existing students
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(generator = "student_sequence")
+    @GenericGenerator(name = "student_sequence", strategy = "org.hibernate.id.enhanced.SequenceStyleGenerator", parameters = {
+            @Parameter(name = "sequence_name", value = "student_id_seq"),
+            @Parameter(name = "increment_size", value = "50"),
+            @Parameter(name = "optimizer", value = "pooled-lo")})
     private Integer id;
 
     private String name;
 
     private Integer age;
 
+    // rows inserted without JPA, by the ingest queue or the reactive profile, start at version 0 too
+    @Version
+    @Column(columnDefinition = "bigint default 0 not null")
+    private Long version;
+
+    // taken from the change number sequence on every insert and update, rows from before it existed are at 0
+    @Column(columnDefinition = "bigint default 0 not null")
+    private long changeSeq;
+
     public Integer getId() {
         return id;
     }
@@ -40,4 +69,20 @@ public class Student {
         this.age = age;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public long getChangeSeq() {
+        return changeSeq;
+    }
+
+    public void setChangeSeq(long changeSeq) {
+        this.changeSeq = changeSeq;
+    }
+
 }
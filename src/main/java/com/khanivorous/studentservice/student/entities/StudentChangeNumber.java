@@ -0,0 +1,27 @@
+package com.khanivorous.studentservice.student.entities;
+
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+// never stored, it declares the sequence change sequence numbers are taken from so the schema gets it like the id
+// sequence, pooled-lo reserves 50 numbers per sequence call
+@Entity
+@Table(name = "student_change_number")
+public class StudentChangeNumber {
+
+    @Id
+    @GeneratedValue(generator = "student_change_number_sequence")
+    @GenericGenerator(name = "student_change_number_sequence", strategy = "org.hibernate.id.enhanced.SequenceStyleGenerator", parameters = {
+            @Parameter(name = "sequence_name", value = "student_change_number_seq"),
+            @Parameter(name = "increment_size", value = "50"),
+            @Parameter(name = "optimizer", value = "pooled-lo")})
+    private Long id;
+
+    protected StudentChangeNumber() {
+    }
+}
@@ -0,0 +1,35 @@
+package com.khanivorous.studentservice.student.entities;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+// a single row, created when the application starts, recording how far tombstones have been compacted
+@Entity
+@Table(name = "student_change_sequence")
+public class StudentChangeSequence {
+
+    public static final int ID = 1;
+
+    @Id
+    private Integer id;
+
+    /**
+     * Tombstones up to this change sequence number have been compacted away.
+     */
+    @Column(nullable = false)
+    private long compactedThrough;
+
+    public StudentChangeSequence() {
+        this.id = ID;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public long getCompactedThrough() {
+        return compactedThrough;
+    }
+}
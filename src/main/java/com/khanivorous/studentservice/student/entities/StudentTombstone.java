@@ -0,0 +1,46 @@
+package com.khanivorous.studentservice.student.entities;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.time.Instant;
+
+// student ids are never reused, so a deleted student has exactly one tombstone
+@Entity
+@Table(name = "student_tombstone", indexes = {
+        @Index(name = "idx_student_tombstone_change_seq", columnList = "changeSeq"),
+        @Index(name = "idx_student_tombstone_deleted_at", columnList = "deletedAt")})
+public class StudentTombstone {
+
+    @Id
+    private Integer studentId;
+
+    @Column(nullable = false)
+    private long changeSeq;
+
+    @Column(nullable = false)
+    private Instant deletedAt;
+
+    protected StudentTombstone() {
+    }
+
+    public StudentTombstone(Integer studentId, long changeSeq, Instant deletedAt) {
+        this.studentId = studentId;
+        this.changeSeq = changeSeq;
+        this.deletedAt = deletedAt;
+    }
+
+    public Integer getStudentId() {
+        return studentId;
+    }
+
+    public long getChangeSeq() {
+        return changeSeq;
+    }
+
+    public Instant getDeletedAt() {
+        return deletedAt;
+    }
+}
@@ -0,0 +1,48 @@
+package com.khanivorous.studentservice.student.events;
+
+import com.khanivorous.studentservice.student.config.StudentCacheConfig;
+import com.khanivorous.studentservice.student.model.StudentDTO;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Keeps the student cache in step with committed changes. It follows the events rather than sitting on the service
+ * methods as {@code @CachePut} and {@code @CacheEvict}, so it runs in a known order with the other listeners, before
+ * {@link StudentVersion} moves the ETag on, and whichever way the student was created.
+ */
+@Component
+@Profile("!reactive")
+public class StudentCacheUpdater {
+
+    private final Cache cache;
+
+    public StudentCacheUpdater(CacheManager cacheManager) {
+        this.cache = cacheManager.getCache(StudentCacheConfig.STUDENT_CACHE);
+    }
+
+    @Order(StudentVersion.READ_STATE_ORDER)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCreated(StudentCreatedEvent event) {
+        put(event.student());
+    }
+
+    @Order(StudentVersion.READ_STATE_ORDER)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUpdated(StudentUpdatedEvent event) {
+        put(event.student());
+    }
+
+    @Order(StudentVersion.READ_STATE_ORDER)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDeleted(StudentDeletedEvent event) {
+        cache.evict(event.id());
+    }
+
+    private void put(StudentDTO student) {
+        cache.put(student.id(), student);
+    }
+}
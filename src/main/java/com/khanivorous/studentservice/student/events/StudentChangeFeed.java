@@ -0,0 +1,182 @@
+package com.khanivorous.studentservice.student.events;
+
+import com.khanivorous.studentservice.student.model.StudentDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Broadcasts committed student changes as server-sent events, so other services can follow the table instead of
+ * polling it.
+ * <p>
+ * Every change gets an id made of a per-process epoch and a sequence number, and the last
+ * {@code student.events.replay-size} changes are kept in memory. A subscriber that sends the id of the last event it
+ * saw is first sent the changes it missed. When they are no longer kept, or the id is from another process, it is sent
+ * a {@value #RESET_EVENT} event instead and should read the students again. Each subscriber has its own buffer of
+ * {@code student.events.subscriber-buffer} events. A subscriber that falls a whole buffer behind is disconnected, so
+ * it can reconnect and resume, and it never holds up the request that made the change or any other subscriber.
+ * Every stream starts with a heartbeat comment, repeated every {@code student.events.heartbeat}, so clients see the
+ * response at once and idle connections are not closed by proxies.
+ */
+@Component
+public class StudentChangeFeed {
+
+    public static final String CREATED_EVENT = "created";
+
+    public static final String UPDATED_EVENT = "updated";
+
+    public static final String DELETED_EVENT = "deleted";
+
+    public static final String RESET_EVENT = "reset";
+
+    private static final Logger log = LoggerFactory.getLogger(StudentChangeFeed.class);
+
+    private static final ServerSentEvent<?> HEARTBEAT = ServerSentEvent.builder().comment("heartbeat").build();
+
+    private record Change(long sequence, ServerSentEvent<?> event) {
+    }
+
+    private final String epoch = Long.toHexString(ThreadLocalRandom.current().nextLong());
+
+    private final int replaySize;
+
+    private final int subscriberBuffer;
+
+    private final Duration heartbeat;
+
+    // guarded by this
+    private final Deque<Change> changes = new ArrayDeque<>();
+
+    // guarded by this
+    private final Set<Sinks.Many<ServerSentEvent<?>>> subscribers = new LinkedHashSet<>();
+
+    // guarded by this
+    private long sequence;
+
+    public StudentChangeFeed(@Value("${student.events.replay-size:1000}") int replaySize,
+                             @Value("${student.events.subscriber-buffer:256}") int subscriberBuffer,
+                             @Value("${student.events.heartbeat:15s}") Duration heartbeat) {
+        this.replaySize = replaySize;
+        this.subscriberBuffer = subscriberBuffer;
+        this.heartbeat = heartbeat;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCreated(StudentCreatedEvent event) {
+        publish(CREATED_EVENT, event.student());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUpdated(StudentUpdatedEvent event) {
+        publish(UPDATED_EVENT, event.student());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDeleted(StudentDeletedEvent event) {
+        publish(DELETED_EVENT, new StudentDTO(event.id(), null, null));
+    }
+
+    /**
+     * Streams the changes committed from now on, preceded by the ones after {@code lastEventId} when it is given.
+     */
+    public Flux<ServerSentEvent<?>> subscribe(String lastEventId) {
+        return Flux.defer(() -> {
+            Sinks.Many<ServerSentEvent<?>> subscriber;
+            synchronized (this) {
+                List<ServerSentEvent<?>> missed = changesAfter(lastEventId);
+                subscriber = Sinks.many().unicast()
+                        .onBackpressureBuffer(new ArrayBlockingQueue<>(subscriberBuffer + missed.size()));
+                missed.forEach(subscriber::tryEmitNext);
+                subscribers.add(subscriber);
+            }
+            Sinks.Empty<Void> done = Sinks.empty();
+            Flux<ServerSentEvent<?>> heartbeats = Flux.interval(heartbeat)
+                    .onBackpressureDrop()
+                    .<ServerSentEvent<?>>map(tick -> HEARTBEAT)
+                    .takeUntilOther(done.asMono());
+            // a prefetch of one keeps the events waiting for a slow subscriber in its own bounded buffer
+            return Flux.merge(1, subscriber.asFlux().doOnTerminate(done::tryEmitEmpty), heartbeats)
+                    .startWith(HEARTBEAT)
+                    .doFinally(signal -> unsubscribe(subscriber));
+        });
+    }
+
+    private synchronized void publish(String type, StudentDTO student) {
+        long id = ++sequence;
+        ServerSentEvent<?> event = ServerSentEvent.builder(student)
+                .id(eventId(id))
+                .event(type)
+                .build();
+        changes.addLast(new Change(id, event));
+        if (changes.size() > replaySize) {
+            changes.removeFirst();
+        }
+        for (Iterator<Sinks.Many<ServerSentEvent<?>>> it = subscribers.iterator(); it.hasNext(); ) {
+            Sinks.Many<ServerSentEvent<?>> subscriber = it.next();
+            // fails when the buffer is full, or the subscriber has already gone
+            if (subscriber.tryEmitNext(event).isFailure()) {
+                it.remove();
+                if (subscriber.tryEmitComplete().isSuccess()) {
+                    log.debug("Disconnected a student change subscriber that was {} events behind", subscriberBuffer);
+                }
+            }
+        }
+    }
+
+    private synchronized void unsubscribe(Sinks.Many<ServerSentEvent<?>> subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    private List<ServerSentEvent<?>> changesAfter(String lastEventId) {
+        if (lastEventId == null) {
+            return List.of();
+        }
+        long last = parseSequence(lastEventId);
+        long oldest = changes.isEmpty() ? sequence + 1 : changes.getFirst().sequence();
+        if (last < oldest - 1 || last > sequence) {
+            return List.of(ServerSentEvent.builder("changes after " + lastEventId + " are no longer available")
+                    .id(eventId(sequence))
+                    .event(RESET_EVENT)
+                    .build());
+        }
+        List<ServerSentEvent<?>> missed = new ArrayList<>();
+        for (Change change : changes) {
+            if (change.sequence() > last) {
+                missed.add(change.event());
+            }
+        }
+        return missed;
+    }
+
+    private String eventId(long sequence) {
+        return epoch + "-" + sequence;
+    }
+
+    private long parseSequence(String eventId) {
+        int separator = eventId.lastIndexOf('-');
+        if (separator < 0 || !eventId.substring(0, separator).equals(epoch)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(eventId.substring(separator + 1));
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+}
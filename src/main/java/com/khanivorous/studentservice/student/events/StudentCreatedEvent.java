@@ -0,0 +1,6 @@
+package com.khanivorous.studentservice.student.events;
+
+import com.khanivorous.studentservice.student.model.StudentDTO;
+
+public record StudentCreatedEvent(StudentDTO student) {
+}
@@ -0,0 +1,4 @@
+package com.khanivorous.studentservice.student.events;
+
+public record StudentDeletedEvent(int id) {
+}
@@ -0,0 +1,65 @@
+package com.khanivorous.studentservice.student.events;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+
+/**
+ * Remembers which students changed within {@code student.datasource.replicas.read-your-writes}, the time a replica is
+ * taken to catch up in. A read of one of them whose result is kept for every client, such as the one filling the
+ * student cache, goes to the primary, a replica may not show the change yet. Any other student reads the same on a
+ * replica as on the primary. Without replicas nothing is remembered.
+ * <p>
+ * A change is remembered before {@link StudentVersion} moves the ETag on, so no read under the new ETag misses it.
+ */
+@Component
+@Profile("!reactive")
+public class StudentRecentChanges {
+
+    // null without replicas
+    private final Cache<Integer, Boolean> changed;
+
+    public StudentRecentChanges(@Value("${student.datasource.replicas.urls:}") String replicaUrls,
+                                @Value("${student.datasource.replicas.read-your-writes:5s}") Duration replicaLag) {
+        this.changed = replicaUrls.isBlank() ? null : Caffeine.newBuilder()
+                .expireAfterWrite(replicaLag)
+                .build();
+    }
+
+    /**
+     * Whether the student was created, updated or deleted within the time a replica is taken to catch up in.
+     */
+    public boolean changedRecently(int id) {
+        return changed != null && changed.getIfPresent(id) != null;
+    }
+
+    @Order(StudentVersion.READ_STATE_ORDER)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCreated(StudentCreatedEvent event) {
+        remember(event.student().id());
+    }
+
+    @Order(StudentVersion.READ_STATE_ORDER)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUpdated(StudentUpdatedEvent event) {
+        remember(event.student().id());
+    }
+
+    @Order(StudentVersion.READ_STATE_ORDER)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDeleted(StudentDeletedEvent event) {
+        remember(event.id());
+    }
+
+    private void remember(int id) {
+        if (changed != null) {
+            changed.put(id, Boolean.TRUE);
+        }
+    }
+}
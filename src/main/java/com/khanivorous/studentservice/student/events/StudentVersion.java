@@ -0,0 +1,96 @@
+package com.khanivorous.studentservice.student.events;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts changes to the student table so reads can be given a strong ETag without touching the database.
+ * The counter is bumped after a change is committed, and the ETag carries a per-process epoch so a restarted
+ * instance never reuses the ETag of a previous one.
+ * <p>
+ * The counter only sees the changes made through this instance. With several instances behind one database each
+ * would keep answering 304 for students another one changed, so ETags are for a single instance only and are turned
+ * off with {@code student.etag.enabled=false} when there are more. A version read from the database cannot stand in
+ * for it, change sequence numbers are taken in blocks per instance, so the highest one does not move when another
+ * instance commits a lower one.
+ * <p>
+ * Reads that read replicas answer are given {@link #eTagOf(Object, MediaType)} instead, the counter may already count a
+ * change the replica does not show yet.
+ * <p>
+ * The counter is bumped by the last listener of each change, after the ones at {@link #READ_STATE_ORDER}, so an ETag
+ * never stands for a change that the cache, the name index or the snapshot does not show yet.
+ */
+@Component
+public class StudentVersion {
+
+    /**
+     * The order of the listeners that update what reads are served from.
+     */
+    public static final int READ_STATE_ORDER = Ordered.LOWEST_PRECEDENCE - 1;
+
+    private final boolean enabled;
+
+    private final String epoch = Long.toHexString(ThreadLocalRandom.current().nextLong());
+
+    private final AtomicLong version = new AtomicLong();
+
+    public StudentVersion(@Value("${student.etag.enabled:true}") boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * The current ETag, or {@code null} when ETags are turned off, which conditional requests treat as never
+     * matching.
+     */
+    public String eTag() {
+        return enabled ? "\"" + epoch + "-" + version.get() + "\"" : null;
+    }
+
+    /**
+     * The current ETag of a body written in the given format. Each format has its own, since a strong ETag stands for
+     * the exact bytes of the body.
+     */
+    public String eTag(MediaType mediaType) {
+        return enabled ? "\"" + epoch + "-" + version.get() + "-" + mediaType.getSubtype() + "\"" : null;
+    }
+
+    /**
+     * An ETag computed from what was read rather than from the counter, for reads that a replica answers. Replicas may
+     * lag behind the counter, so only the rows a client was actually given can tell whether it still has them.
+     * {@code null} when ETags are turned off.
+     */
+    public String eTagOf(Object content, MediaType mediaType) {
+        if (!enabled) {
+            return null;
+        }
+        String digest = DigestUtils.md5DigestAsHex(content.toString().getBytes(StandardCharsets.UTF_8));
+        return "\"" + digest + "-" + mediaType.getSubtype() + "\"";
+    }
+
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCreated(StudentCreatedEvent event) {
+        version.incrementAndGet();
+    }
+
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUpdated(StudentUpdatedEvent event) {
+        version.incrementAndGet();
+    }
+
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDeleted(StudentDeletedEvent event) {
+        version.incrementAndGet();
+    }
+}
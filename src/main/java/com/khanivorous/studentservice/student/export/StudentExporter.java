@@ -0,0 +1,101 @@
+package com.khanivorous.studentservice.student.export;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.khanivorous.studentservice.student.model.StudentDTO;
+import com.khanivorous.studentservice.student.services.StudentService;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes the whole student table to the response as it is read from the database, one row at a time.
+ */
+@Component
+@Profile("!reactive")
+public class StudentExporter {
+
+    public static final String NDJSON_VALUE = "application/x-ndjson";
+
+    public static final String CSV_VALUE = "text/csv";
+
+    private final StudentService studentService;
+
+    private final ObjectWriter studentWriter;
+
+    public StudentExporter(StudentService studentService, ObjectMapper objectMapper) {
+        this.studentService = studentService;
+        this.studentWriter = objectMapper.writerFor(StudentDTO.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    public StreamingResponseBody ndjson() {
+        return outputStream -> {
+            try (JsonGenerator generator = studentWriter.createGenerator(outputStream)) {
+                generator.setRootValueSeparator(null);
+                studentService.exportStudents(student -> {
+                    try {
+                        studentWriter.writeValue(generator, student);
+                        generator.writeRaw('\n');
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+            } catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            }
+        };
+    }
+
+    public StreamingResponseBody csv() {
+        return outputStream -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            try {
+                writer.write("id,name,age\n");
+                studentService.exportStudents(student -> {
+                    try {
+                        writeCsvRow(writer, student);
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+            } catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            }
+            writer.flush();
+        };
+    }
+
+    private static void writeCsvRow(Writer writer, StudentDTO student) throws IOException {
+        writer.write(String.valueOf(student.id()));
+        writer.write(',');
+        writeCsvField(writer, student.name());
+        writer.write(',');
+        writer.write(student.age() == null ? "" : student.age().toString());
+        writer.write('\n');
+    }
+
+    private static void writeCsvField(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean quote = value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
@@ -0,0 +1,379 @@
+package com.khanivorous.studentservice.student.export;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.khanivorous.studentservice.student.model.StudentDTO;
+import com.khanivorous.studentservice.student.snapshot.StudentSnapshot;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Writes a {@link StudentDTO} or a {@code List<StudentDTO>} as JSON straight into the response, byte for byte what
+ * Jackson writes for them, without looking the record up by reflection or building a {@code String} on the way. The
+ * field names are encoded once and the output buffers are pooled. A page of the {@link StudentSnapshot} is written
+ * from its columns, without a {@code StudentDTO} being created for it at all.
+ * <p>
+ * It only takes over while the application's {@link ObjectMapper} writes a student the default way. Indented output,
+ * a naming strategy or a property inclusion set through {@code spring.jackson} leave students to Jackson. Reading is
+ * always left to Jackson.
+ */
+public class StudentJsonHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+    private static final byte[] ID = "{\"id\":".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] NAME = ",\"name\":".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] AGE = ",\"age\":".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] VERSION = ",\"version\":".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] LONG_MIN_VALUE = String.valueOf(Long.MIN_VALUE).getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final int POOLED_BUFFERS = 64;
+
+    // the longest a single character is written, as a six character unicode escape
+    private static final int MAX_CHAR_BYTES = 6;
+
+    private static final int MAX_LONG_BYTES = 20;
+
+    private final BlockingQueue<byte[]> buffers = new ArrayBlockingQueue<>(POOLED_BUFFERS);
+
+    private final boolean enabled;
+
+    public StudentJsonHttpMessageConverter(ObjectMapper objectMapper) {
+        super(MediaType.APPLICATION_JSON);
+        JsonInclude.Include inclusion = objectMapper.getSerializationConfig().getDefaultPropertyInclusion().getValueInclusion();
+        this.enabled = !objectMapper.isEnabled(SerializationFeature.INDENT_OUTPUT)
+                && objectMapper.getPropertyNamingStrategy() == null
+                && (inclusion == JsonInclude.Include.ALWAYS || inclusion == JsonInclude.Include.USE_DEFAULTS);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return enabled && clazz == StudentDTO.class;
+    }
+
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        if (!enabled || !canWrite(mediaType)) {
+            return false;
+        }
+        if (clazz == StudentDTO.class) {
+            return true;
+        }
+        ResolvableType resolved = ResolvableType.forType(type != null ? type : clazz);
+        return List.class.isAssignableFrom(clazz)
+                && resolved.asCollection().getGeneric(0).resolve() == StudentDTO.class;
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return false;
+    }
+
+    // never reached, canRead turns every body away, but a caller going past it gets the converter's own error
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) {
+        throw notReadable(inputMessage);
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) {
+        throw notReadable(inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(Object value, Type type, HttpOutputMessage outputMessage) throws IOException {
+        byte[] buffer = buffers.poll();
+        Output output = new Output(outputMessage.getBody(), buffer != null ? buffer : new byte[BUFFER_SIZE]);
+        try {
+            if (value instanceof StudentDTO student) {
+                output.writeStudent(student);
+            } else if (value instanceof StudentSnapshot.Rows rows) {
+                output.writeRows(rows);
+            } else {
+                output.writeStudents((List<?>) value);
+            }
+            output.flush();
+        } finally {
+            buffers.offer(output.buffer);
+        }
+    }
+
+    private static HttpMessageNotReadableException notReadable(HttpInputMessage inputMessage) {
+        return new HttpMessageNotReadableException("Students are only written by this converter", inputMessage);
+    }
+
+    /**
+     * A buffer in front of the response body that JSON is written into.
+     */
+    private static final class Output {
+
+        private final OutputStream body;
+
+        private final byte[] buffer;
+
+        private int position;
+
+        private Output(OutputStream body, byte[] buffer) {
+            this.body = body;
+            this.buffer = buffer;
+        }
+
+        private void writeStudents(List<?> students) throws IOException {
+            writeByte('[');
+            for (int i = 0; i < students.size(); i++) {
+                if (i > 0) {
+                    writeByte(',');
+                }
+                Object student = students.get(i);
+                if (student == null) {
+                    writeBytes(NULL);
+                } else {
+                    writeStudent((StudentDTO) student);
+                }
+            }
+            writeByte(']');
+        }
+
+        private void writeRows(StudentSnapshot.Rows rows) throws IOException {
+            writeByte('[');
+            rows.writeTo((row, id, names, nameOffset, nameLength, age, version) -> {
+                if (row > 0) {
+                    writeByte(',');
+                }
+                writeBytes(ID);
+                writeLong(id);
+                writeBytes(NAME);
+                writeName(names, nameOffset, nameLength);
+                writeBytes(AGE);
+                if (age == StudentSnapshot.NO_AGE) {
+                    writeBytes(NULL);
+                } else {
+                    writeLong(age);
+                }
+                writeBytes(VERSION);
+                writeLong(version);
+                writeByte('}');
+            });
+            writeByte(']');
+        }
+
+        private void writeStudent(StudentDTO student) throws IOException {
+            writeBytes(ID);
+            writeNumber(student.id());
+            writeBytes(NAME);
+            writeString(student.name());
+            writeBytes(AGE);
+            writeNumber(student.age());
+            if (student.version() != null) {
+                writeBytes(VERSION);
+                writeNumber(student.version());
+            }
+            writeByte('}');
+        }
+
+        private void writeNumber(Number number) throws IOException {
+            if (number == null) {
+                writeBytes(NULL);
+                return;
+            }
+            writeLong(number.longValue());
+        }
+
+        private void writeLong(long value) throws IOException {
+            if (value == Long.MIN_VALUE) {
+                writeBytes(LONG_MIN_VALUE);
+                return;
+            }
+            ensureCapacity(MAX_LONG_BYTES);
+            if (value < 0) {
+                buffer[position++] = '-';
+                value = -value;
+            }
+            int digits = 1;
+            for (long rest = value / 10; rest > 0; rest /= 10) {
+                digits++;
+            }
+            for (int i = position + digits - 1; i >= position; i--) {
+                buffer[i] = (byte) ('0' + value % 10);
+                value /= 10;
+            }
+            position += digits;
+        }
+
+        /**
+         * Escapes the way Jackson does by default: quotes, backslashes and control characters, with the short forms
+         * for the common ones. Surrogates are escaped one by one as Jackson 2.13 does, paired or not, and everything else
+         * is written as UTF-8.
+         */
+        private void writeString(String value) throws IOException {
+            if (value == null) {
+                writeBytes(NULL);
+                return;
+            }
+            writeByte('"');
+            int length = value.length();
+            for (int i = 0; i < length; i++) {
+                ensureCapacity(MAX_CHAR_BYTES);
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    if (c >= 0x20 && c != '"' && c != '\\') {
+                        buffer[position++] = (byte) c;
+                    } else {
+                        writeEscaped(c);
+                    }
+                } else if (c < 0x800) {
+                    buffer[position++] = (byte) (0xC0 | c >> 6);
+                    buffer[position++] = (byte) (0x80 | c & 0x3F);
+                } else if (Character.isSurrogate(c)) {
+                    writeUnicodeEscape(c);
+                } else {
+                    buffer[position++] = (byte) (0xE0 | c >> 12);
+                    buffer[position++] = (byte) (0x80 | c >> 6 & 0x3F);
+                    buffer[position++] = (byte) (0x80 | c & 0x3F);
+                }
+            }
+            writeByte('"');
+        }
+
+        /**
+         * Writes a name from the snapshot's UTF-8 as {@link #writeString(String)} writes it from a {@code String}. Only
+         * ASCII and the sequences that hold a surrogate have to be looked at, the rest is copied as it is.
+         */
+        private void writeName(byte[] names, int offset, int length) throws IOException {
+            if (length < 0) {
+                writeBytes(NULL);
+                return;
+            }
+            writeByte('"');
+            int end = offset + length;
+            for (int i = offset; i < end; ) {
+                int run = i;
+                while (run < end && names[run] >= 0x20 && names[run] != '"' && names[run] != '\\') {
+                    run++;
+                }
+                if (run > i) {
+                    writeBytes(names, i, run - i);
+                    i = run;
+                    continue;
+                }
+                // a four byte sequence is written as two escapes
+                ensureCapacity(2 * MAX_CHAR_BYTES);
+                int b = names[i] & 0xFF;
+                if (b < 0x80) {
+                    writeEscaped((char) b);
+                    i++;
+                } else if (b < 0xE0) {
+                    buffer[position++] = names[i++];
+                    buffer[position++] = names[i++];
+                } else if (b < 0xF0) {
+                    char c = (char) ((b & 0x0F) << 12 | (names[i + 1] & 0x3F) << 6 | names[i + 2] & 0x3F);
+                    if (Character.isSurrogate(c)) {
+                        writeUnicodeEscape(c);
+                    } else {
+                        System.arraycopy(names, i, buffer, position, 3);
+                        position += 3;
+                    }
+                    i += 3;
+                } else {
+                    int codePoint = (b & 0x07) << 18 | (names[i + 1] & 0x3F) << 12
+                            | (names[i + 2] & 0x3F) << 6 | names[i + 3] & 0x3F;
+                    writeUnicodeEscape(Character.highSurrogate(codePoint));
+                    writeUnicodeEscape(Character.lowSurrogate(codePoint));
+                    i += 4;
+                }
+            }
+            writeByte('"');
+        }
+
+        private void writeEscaped(char c) {
+            char shortForm = switch (c) {
+                case '"' -> '"';
+                case '\\' -> '\\';
+                case '\b' -> 'b';
+                case '\t' -> 't';
+                case '\n' -> 'n';
+                case '\f' -> 'f';
+                case '\r' -> 'r';
+                default -> 0;
+            };
+            if (shortForm == 0) {
+                writeUnicodeEscape(c);
+                return;
+            }
+            buffer[position++] = '\\';
+            buffer[position++] = (byte) shortForm;
+        }
+
+        private void writeUnicodeEscape(char c) {
+            buffer[position++] = '\\';
+            buffer[position++] = 'u';
+            buffer[position++] = HEX[c >> 12];
+            buffer[position++] = HEX[c >> 8 & 0xF];
+            buffer[position++] = HEX[c >> 4 & 0xF];
+            buffer[position++] = HEX[c & 0xF];
+        }
+
+        private void writeByte(char b) throws IOException {
+            ensureCapacity(1);
+            buffer[position++] = (byte) b;
+        }
+
+        private void writeBytes(byte[] bytes) throws IOException {
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        private void writeBytes(byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0) {
+                if (position == buffer.length) {
+                    flush();
+                }
+                int chunk = Math.min(length, buffer.length - position);
+                System.arraycopy(bytes, offset, buffer, position, chunk);
+                position += chunk;
+                offset += chunk;
+                length -= chunk;
+            }
+        }
+
+        private void ensureCapacity(int bytes) throws IOException {
+            if (position + bytes > buffer.length) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            if (position > 0) {
+                body.write(buffer, 0, position);
+                position = 0;
+            }
+        }
+    }
+}
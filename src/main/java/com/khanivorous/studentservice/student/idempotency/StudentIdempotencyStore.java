@@ -0,0 +1,112 @@
+package com.khanivorous.studentservice.student.idempotency;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.khanivorous.studentservice.student.IdempotencyKeyReusedException;
+import com.khanivorous.studentservice.student.entities.IdempotencyKey;
+import com.khanivorous.studentservice.student.model.StudentCreationResult;
+import com.khanivorous.studentservice.student.model.StudentDTO;
+import com.khanivorous.studentservice.student.repository.IdempotencyKeyRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Remembers which student was created for each {@code Idempotency-Key}, so a retried request gets the original
+ * student back instead of creating another one.
+ * <p>
+ * Keys live in the idempotency_key table, keyed by the key itself, and the most recent ones are also kept in a
+ * bounded in-process cache. A request inserts its key in the same transaction that creates the student. A concurrent
+ * request with the same key blocks on that one row until the first commits, then fails the insert and reads the
+ * stored student. Requests with different keys never wait on each other. Keys expire after
+ * {@code student.idempotency.ttl} and are purged from the table periodically.
+ */
+@Component
+@Profile("!reactive")
+public class StudentIdempotencyStore {
+
+    public static final int MAX_KEY_LENGTH = 255;
+
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final Duration ttl;
+
+    private final Cache<String, StudentDTO> recent;
+
+    public StudentIdempotencyStore(IdempotencyKeyRepository idempotencyKeyRepository, PlatformTransactionManager transactionManager,
+                                   @Value("${student.idempotency.ttl:24h}") Duration ttl,
+                                   @Value("${student.idempotency.cache-size:10000}") int cacheSize) {
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.ttl = ttl;
+        this.recent = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    /**
+     * Returns the student created for the key, or creates it with the given function and records it under the key.
+     *
+     * @throws IdempotencyKeyReusedException when the key was used for a student with a different name or age
+     */
+    public StudentCreationResult createOnce(String key, String name, int age, Supplier<StudentDTO> create) {
+        for (int attempt = 0; ; attempt++) {
+            Optional<StudentDTO> stored = find(key);
+            if (stored.isPresent()) {
+                StudentDTO student = stored.get();
+                if (!Objects.equals(student.name(), name) || !Objects.equals(student.age(), age)) {
+                    throw new IdempotencyKeyReusedException(key);
+                }
+                return new StudentCreationResult(student, true);
+            }
+            try {
+                StudentDTO student = transactionTemplate.execute(status -> {
+                    IdempotencyKey claimed = idempotencyKeyRepository.saveAndFlush(new IdempotencyKey(key, Instant.now()));
+                    StudentDTO created = create.get();
+                    claimed.setStudent(created);
+                    return created;
+                });
+                recent.put(key, student);
+                return new StudentCreationResult(student, false);
+            } catch (DataIntegrityViolationException ex) {
+                // the key was committed by a concurrent request, which the next lookup finds, or it has expired but
+                // not been purged yet, in which case it is replaced
+                if (attempt > 0) {
+                    throw ex;
+                }
+                idempotencyKeyRepository.deleteIfCreatedBefore(key, Instant.now().minus(ttl));
+            }
+        }
+    }
+
+    public Optional<StudentDTO> find(String key) {
+        StudentDTO cached = recent.getIfPresent(key);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        Instant expiry = Instant.now().minus(ttl);
+        Optional<StudentDTO> stored = idempotencyKeyRepository.findById(key)
+                .filter(idempotencyKey -> idempotencyKey.getCreatedAt().isAfter(expiry))
+                .map(IdempotencyKey::getStudent);
+        stored.ifPresent(student -> recent.put(key, student));
+        return stored;
+    }
+
+    @Scheduled(fixedDelayString = "${student.idempotency.purge-interval:PT10M}")
+    public int purgeExpired() {
+        return idempotencyKeyRepository.deleteCreatedBefore(Instant.now().minus(ttl));
+    }
+}
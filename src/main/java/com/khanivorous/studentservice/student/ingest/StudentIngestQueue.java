@@ -0,0 +1,316 @@
+package com.khanivorous.studentservice.student.ingest;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.khanivorous.studentservice.student.IngestQueueFullException;
+import com.khanivorous.studentservice.student.NoSuchIdException;
+import com.khanivorous.studentservice.student.events.StudentCreatedEvent;
+import com.khanivorous.studentservice.student.model.StudentDTO;
+import com.khanivorous.studentservice.student.model.StudentIngestStatus;
+import com.khanivorous.studentservice.student.repository.StudentRepository;
+import com.khanivorous.studentservice.student.sharding.StudentShards;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Write-behind queue for new students, enabled with {@code student.ingest.async=true}.
+ * <p>
+ * A student is given its id and put on a bounded queue, and the request returns without waiting for the database.
+ * A single writer thread takes students off the queue and inserts them in batches of up to
+ * {@code student.ingest.flush-size}, flushing a smaller batch once the first student in it has waited
+ * {@code student.ingest.flush-interval}. A full queue rejects new students instead of blocking the request.
+ * <p>
+ * With the default {@code student.ingest.durability=accepted} a student that is still queued is lost if the process
+ * dies. With {@code committed} the request waits, up to {@code student.ingest.commit-timeout}, for the batch holding
+ * its student to commit. Concurrent requests still share one insert and one commit.
+ */
+@Component
+@Profile("!reactive")
+@ConditionalOnProperty(name = "student.ingest.async", havingValue = "true")
+public class StudentIngestQueue implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(StudentIngestQueue.class);
+
+    private static final int MAX_FAILED_IDS = 10_000;
+
+    public enum Durability {
+        /**
+         * Return as soon as the student is queued.
+         */
+        ACCEPTED,
+        /**
+         * Return once the student is committed, or when the commit timeout runs out.
+         */
+        COMMITTED
+    }
+
+    /**
+     * The student as it will be stored, and whether it has already been committed.
+     */
+    public record Receipt(StudentDTO student, boolean committed) {
+    }
+
+    private record Pending(StudentDTO student, CompletableFuture<StudentDTO> written) {
+    }
+
+    private final StudentRepository studentRepository;
+
+    private final StudentShards studentShards;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final int capacity;
+
+    private final int flushSize;
+
+    private final long flushIntervalNanos;
+
+    private final Durability durability;
+
+    private final Duration commitTimeout;
+
+    private final BlockingQueue<Pending> queue;
+
+    private final Map<Integer, Pending> queued = new ConcurrentHashMap<>();
+
+    private final Cache<Integer, Boolean> failed = Caffeine.newBuilder()
+            .maximumSize(MAX_FAILED_IDS)
+            .expireAfterWrite(Duration.ofHours(1))
+            .build();
+
+    private final MeterRegistry meterRegistry;
+
+    private final Timer flushed;
+
+    private final Timer flushFailed;
+
+    private final DistributionSummary flushSizes;
+
+    private final Counter rejected;
+
+    private volatile boolean running;
+
+    private Thread writer;
+
+    public StudentIngestQueue(StudentRepository studentRepository, StudentShards studentShards, ApplicationEventPublisher eventPublisher,
+                              MeterRegistry meterRegistry,
+                              @Value("${student.ingest.queue-capacity:10000}") int capacity,
+                              @Value("${student.ingest.flush-size:500}") int flushSize,
+                              @Value("${student.ingest.flush-interval:50ms}") Duration flushInterval,
+                              @Value("${student.ingest.durability:accepted}") Durability durability,
+                              @Value("${student.ingest.commit-timeout:5s}") Duration commitTimeout) {
+        this.studentRepository = studentRepository;
+        this.studentShards = studentShards;
+        this.eventPublisher = eventPublisher;
+        this.meterRegistry = meterRegistry;
+        this.capacity = capacity;
+        this.flushSize = flushSize;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.durability = durability;
+        this.commitTimeout = commitTimeout;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        Gauge.builder("student.ingest.queue.depth", queue, BlockingQueue::size)
+                .description("students accepted and waiting to be written")
+                .register(meterRegistry);
+        this.flushed = flushTimer("success").register(meterRegistry);
+        this.flushFailed = flushTimer("failure").register(meterRegistry);
+        this.flushSizes = DistributionSummary.builder("student.ingest.flush.size")
+                .description("students written per batch")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("student.ingest.rejected")
+                .description("students turned away because the queue was full")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Allocates an id for the student and queues it to be written.
+     *
+     * @throws IngestQueueFullException when the queue is full, or the application is shutting down
+     */
+    public Receipt accept(String name, int age) {
+        if (!running || queue.remainingCapacity() == 0) {
+            rejected.increment();
+            throw new IngestQueueFullException(capacity);
+        }
+        Pending pending = new Pending(new StudentDTO(studentShards.nextId(), name, age, 0L), new CompletableFuture<>());
+        queued.put(pending.student().id(), pending);
+        if (!queue.offer(pending)) {
+            queued.remove(pending.student().id());
+            rejected.increment();
+            throw new IngestQueueFullException(capacity);
+        }
+        if (durability == Durability.COMMITTED) {
+            return new Receipt(pending.student(), awaitCommit(pending));
+        }
+        return new Receipt(pending.student(), false);
+    }
+
+    /**
+     * Reports whether a student accepted by this queue is still queued, has been written, or could not be written.
+     *
+     * @throws NoSuchIdException when the id is neither queued, failed nor in the database
+     */
+    public StudentIngestStatus status(int id) {
+        if (queued.containsKey(id)) {
+            return new StudentIngestStatus(id, StudentIngestStatus.State.QUEUED);
+        }
+        if (failed.getIfPresent(id) != null) {
+            return new StudentIngestStatus(id, StudentIngestStatus.State.FAILED);
+        }
+        if (studentShards.onShardOf(id, () -> studentRepository.existsById(id))) {
+            return new StudentIngestStatus(id, StudentIngestStatus.State.WRITTEN);
+        }
+        throw new NoSuchIdException(id);
+    }
+
+    /**
+     * Starts before and stops after the web server, so the queue is drained once no more requests can come in.
+     */
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE - 2;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        writer = new Thread(this::drain, "student-ingest-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Stops accepting students and writes out everything that was accepted before returning.
+     */
+    @Override
+    public void stop() {
+        running = false;
+        try {
+            writer.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        // a student offered while the writer was finishing is still written
+        List<Pending> batch = new ArrayList<>(flushSize);
+        while (queue.drainTo(batch, flushSize) > 0) {
+            flush(batch);
+            batch.clear();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private static Timer.Builder flushTimer(String outcome) {
+        return Timer.builder("student.ingest.flush")
+                .description("time to insert and commit one batch of queued students")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram();
+    }
+
+    private boolean awaitCommit(Pending pending) {
+        try {
+            pending.written().get(commitTimeout.toNanos(), TimeUnit.NANOSECONDS);
+            return true;
+        } catch (TimeoutException ex) {
+            return false;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException ex) {
+            throw ex.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(ex.getCause());
+        }
+    }
+
+    private void drain() {
+        List<Pending> batch = new ArrayList<>(flushSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < flushSize) {
+                    if (queue.drainTo(batch, flushSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    Pending next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Writes the batch with one insert per shard, a shard that fails the insert fails only its own students.
+     */
+    private void flush(List<Pending> batch) {
+        for (Map.Entry<Integer, List<Pending>> shard : studentShards.groupByShard(batch, pending -> pending.student().id()).entrySet()) {
+            flush(shard.getKey(), shard.getValue());
+        }
+    }
+
+    private void flush(int shard, List<Pending> batch) {
+        List<StudentDTO> students = batch.stream().map(Pending::student).toList();
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            studentShards.onShard(shard, () -> {
+                studentRepository.insertAll(students);
+                return students;
+            });
+        } catch (RuntimeException ex) {
+            sample.stop(flushFailed);
+            log.warn("Could not write a batch of {} queued students", students.size(), ex);
+            for (Pending pending : batch) {
+                failed.put(pending.student().id(), Boolean.TRUE);
+                queued.remove(pending.student().id());
+                pending.written().completeExceptionally(ex);
+            }
+            return;
+        }
+        sample.stop(flushed);
+        flushSizes.record(students.size());
+        for (Pending pending : batch) {
+            eventPublisher.publishEvent(new StudentCreatedEvent(pending.student()));
+            queued.remove(pending.student().id());
+            pending.written().complete(pending.student());
+        }
+    }
+}
@@ -6,23 +6,21 @@ import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Component
 public class StudentMapper {
 
 
     public StudentDTO toDTO(Student entity) {
-        return new StudentDTO(entity.getId(), entity.getName(), entity.getAge());
+        return new StudentDTO(entity.getId(), entity.getName(), entity.getAge(), entity.getVersion());
     }
 
     public List<StudentDTO> toDTOList(Iterable<Student> students) {
-        List<Student> studentList = new ArrayList<>();
-        students.forEach(studentList::add);
-        return studentList
-                .stream()
-                .map(student -> new StudentDTO(student.getId(),student.getName(),student.getAge()))
-                .collect(Collectors.toList());
+        List<StudentDTO> dtoList = new ArrayList<>();
+        for (Student student : students) {
+            dtoList.add(toDTO(student));
+        }
+        return dtoList;
     }
 
     public Student toEntity(StudentDTO dto) {
@@ -30,6 +28,7 @@ public class StudentMapper {
         entity.setId(dto.id());
         entity.setName(dto.name());
         entity.setAge(dto.age());
+        entity.setVersion(dto.version());
         return entity;
     }
 
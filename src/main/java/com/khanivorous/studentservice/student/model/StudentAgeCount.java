@@ -0,0 +1,8 @@
+package com.khanivorous.studentservice.student.model;
+
+/**
+ * The number of students of one age, one row of a {@code group by age} query. The age is null for the students
+ * whose age is not known.
+ */
+public record StudentAgeCount(Integer age, long count) {
+}
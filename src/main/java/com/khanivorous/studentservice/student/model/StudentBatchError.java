@@ -0,0 +1,6 @@
+package com.khanivorous.studentservice.student.model;
+
+import java.util.Map;
+
+public record StudentBatchError(int index, Map<String, String> errors) {
+}
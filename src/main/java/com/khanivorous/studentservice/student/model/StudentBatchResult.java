@@ -0,0 +1,6 @@
+package com.khanivorous.studentservice.student.model;
+
+import java.util.List;
+
+public record StudentBatchResult(List<StudentDTO> created, List<StudentBatchError> errors) {
+}
@@ -0,0 +1,19 @@
+package com.khanivorous.studentservice.student.model;
+
+/**
+ * One row of the change feed, the student as it is now, or only its id when it has been deleted.
+ */
+public record StudentChange(long changeSeq, int id, StudentDTO student) {
+
+    public StudentChange(Long changeSeq, Integer id, String name, Integer age, Long version) {
+        this(changeSeq, id, new StudentDTO(id, name, age, version));
+    }
+
+    public StudentChange(Long changeSeq, Integer id) {
+        this(changeSeq, id, null);
+    }
+
+    public boolean deleted() {
+        return student == null;
+    }
+}
@@ -0,0 +1,35 @@
+package com.khanivorous.studentservice.student.model;
+
+import com.khanivorous.studentservice.student.InvalidPageRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque position in the change feed handed to clients as the since token. It carries the change sequence number of
+ * the last change a client has seen, and the id of that student, because students written before the change feed
+ * existed all share change sequence number 0.
+ */
+public record StudentChangeToken(long changeSeq, int id) {
+
+    public static final StudentChangeToken START = new StudentChangeToken(0, 0);
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    public static StudentChangeToken decode(String token) {
+        try {
+            String[] parts = new String(DECODER.decode(token), StandardCharsets.UTF_8).split(":", 2);
+            if (parts.length != 2) {
+                throw new InvalidPageRequestException("Invalid change token " + token);
+            }
+            return new StudentChangeToken(Long.parseLong(parts[0]), Integer.parseInt(parts[1]));
+        } catch (IllegalArgumentException ex) {
+            throw new InvalidPageRequestException("Invalid change token " + token);
+        }
+    }
+
+    public String encode() {
+        return ENCODER.encodeToString((changeSeq + ":" + id).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,10 @@
+package com.khanivorous.studentservice.student.model;
+
+import java.util.List;
+
+/**
+ * The students created or updated and the ids of the students deleted since a change token, and the token to send
+ * next time. When {@code hasMore} is set the next token should be used straight away to fetch the rest.
+ */
+public record StudentChanges(List<StudentDTO> changed, List<Integer> deleted, String nextToken, boolean hasMore) {
+}
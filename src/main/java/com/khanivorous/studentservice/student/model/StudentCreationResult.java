@@ -0,0 +1,7 @@
+package com.khanivorous.studentservice.student.model;
+
+/**
+ * The student created for a request, and whether it was created by an earlier request with the same idempotency key.
+ */
+public record StudentCreationResult(StudentDTO student, boolean replayed) {
+}
@@ -0,0 +1,83 @@
+package com.khanivorous.studentservice.student.model;
+
+import com.khanivorous.studentservice.student.InvalidPageRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque keyset cursor handed to clients as the next page token.
+ * It carries the id of the last student on the previous page, and for pages sorted by name or age also that
+ * student's name or age, encoded so clients do not rely on its shape. A student without that name or age, which rows
+ * from before the api validated them can be, is marked by leaving the value out, so it is not confused with an empty
+ * name or the text {@code null}.
+ */
+public final class StudentCursor {
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private StudentCursor() {
+    }
+
+    public static String encode(int lastId) {
+        return encode(Integer.toString(lastId));
+    }
+
+    public static int decode(String cursor) {
+        try {
+            return Integer.parseInt(text(cursor));
+        } catch (IllegalArgumentException ex) {
+            throw new InvalidPageRequestException("Invalid cursor " + cursor);
+        }
+    }
+
+    /**
+     * Encodes the position of the last student of a page in the given sort order. Cursors for pages sorted by id are
+     * the same as {@link #encode(int)}.
+     */
+    public static String encode(StudentSort sort, StudentDTO last) {
+        if (sort == StudentSort.ID) {
+            return encode(last.id());
+        }
+        Object value = sort == StudentSort.NAME ? last.name() : last.age();
+        String position = sort.property() + ":" + last.id();
+        return encode(value == null ? position : position + ":" + value);
+    }
+
+    /**
+     * Decodes a cursor into the last student of the previous page. Only the id and the property the page is sorted by
+     * are set.
+     */
+    public static StudentDTO decode(String cursor, StudentSort sort) {
+        if (sort == StudentSort.ID) {
+            return new StudentDTO(decode(cursor), null, null);
+        }
+        String[] parts;
+        try {
+            parts = text(cursor).split(":", 3);
+        } catch (IllegalArgumentException ex) {
+            throw new InvalidPageRequestException("Invalid cursor " + cursor);
+        }
+        if (parts.length < 2 || !parts[0].equals(sort.property())) {
+            throw new InvalidPageRequestException("Cursor " + cursor + " was not issued for sort=" + sort.property());
+        }
+        try {
+            int id = Integer.parseInt(parts[1]);
+            String value = parts.length == 3 ? parts[2] : null;
+            return sort == StudentSort.NAME
+                    ? new StudentDTO(id, value, null)
+                    : new StudentDTO(id, null, value == null ? null : Integer.valueOf(value));
+        } catch (NumberFormatException ex) {
+            throw new InvalidPageRequestException("Invalid cursor " + cursor);
+        }
+    }
+
+    private static String encode(String position) {
+        return ENCODER.encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String text(String cursor) {
+        return new String(DECODER.decode(cursor), StandardCharsets.UTF_8);
+    }
+}
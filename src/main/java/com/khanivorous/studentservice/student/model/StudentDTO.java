@@ -1,4 +1,20 @@
 package com.khanivorous.studentservice.student.model;
 
-public record StudentDTO(Integer id, String name, Integer age) {
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * A student as returned by the api, in lists and on its own alike. The version is what a PUT or PATCH sends back to
+ * update the student only if it has not changed since, it is left out only where it is not known, as for a deleted
+ * student in the change feed.
+ */
+public record StudentDTO(Integer id, String name, Integer age, @JsonInclude(JsonInclude.Include.NON_NULL) Long version) {
+
+    @JsonCreator
+    public StudentDTO {
+    }
+
+    public StudentDTO(Integer id, String name, Integer age) {
+        this(id, name, age, null);
+    }
 }
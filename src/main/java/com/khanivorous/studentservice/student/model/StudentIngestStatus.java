@@ -0,0 +1,22 @@
+package com.khanivorous.studentservice.student.model;
+
+/**
+ * Where a student accepted by the asynchronous ingest queue is on its way to the database.
+ */
+public record StudentIngestStatus(int id, State state) {
+
+    public enum State {
+        /**
+         * Accepted and waiting in the queue.
+         */
+        QUEUED,
+        /**
+         * Committed to the database.
+         */
+        WRITTEN,
+        /**
+         * The batch it was written in failed, it will not be retried.
+         */
+        FAILED
+    }
+}
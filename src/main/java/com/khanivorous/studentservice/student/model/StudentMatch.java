@@ -0,0 +1,7 @@
+package com.khanivorous.studentservice.student.model;
+
+/**
+ * A student found by name search, with the trigram similarity of its name to the query between 0 and 1.
+ */
+public record StudentMatch(StudentDTO student, double score) {
+}
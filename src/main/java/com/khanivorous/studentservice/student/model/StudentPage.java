@@ -0,0 +1,10 @@
+package com.khanivorous.studentservice.student.model;
+
+import java.util.List;
+
+public record StudentPage(List<StudentDTO> students, String nextCursor) {
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
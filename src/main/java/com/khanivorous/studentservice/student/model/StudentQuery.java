@@ -0,0 +1,22 @@
+package com.khanivorous.studentservice.student.model;
+
+/**
+ * Filters and order of a page of students. A null filter matches every student, the age bounds are inclusive.
+ */
+public record StudentQuery(String namePrefix, Integer minAge, Integer maxAge, StudentSort sort) {
+
+    public static final StudentQuery ALL = new StudentQuery(null, null, null, StudentSort.ID);
+
+    public StudentQuery {
+        if (namePrefix != null && namePrefix.isEmpty()) {
+            namePrefix = null;
+        }
+        if (sort == null) {
+            sort = StudentSort.ID;
+        }
+    }
+
+    public boolean isFiltered() {
+        return namePrefix != null || minAge != null || maxAge != null;
+    }
+}
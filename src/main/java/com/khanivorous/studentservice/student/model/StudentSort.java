@@ -0,0 +1,50 @@
+package com.khanivorous.studentservice.student.model;
+
+import com.khanivorous.studentservice.student.InvalidPageRequestException;
+
+import java.util.Comparator;
+
+/**
+ * Orders a page of students by one property. Ties are broken by id, so every order is total and can be paged with a
+ * keyset cursor.
+ */
+public enum StudentSort {
+
+    ID("id"),
+    NAME("name"),
+    AGE("age");
+
+    private final String property;
+
+    StudentSort(String property) {
+        this.property = property;
+    }
+
+    public String property() {
+        return property;
+    }
+
+    /**
+     * The same order in memory, for merging pages read from several shards. Nulls sort first and names in the order of
+     * their characters, as they do in H2 and in MySQL with a binary collation such as {@code utf8mb4_bin}, which shards
+     * need. Under a case or accent insensitive collation the shards would sort names in an order this does not
+     * reproduce, and merged pages would come out of order.
+     */
+    public Comparator<StudentDTO> comparator() {
+        Comparator<StudentDTO> byId = Comparator.comparing(StudentDTO::id);
+        return switch (this) {
+            case ID -> byId;
+            case NAME -> Comparator.comparing(StudentDTO::name, Comparator.nullsFirst(Comparator.<String>naturalOrder())).thenComparing(byId);
+            case AGE -> Comparator.comparing(StudentDTO::age, Comparator.nullsFirst(Comparator.<Integer>naturalOrder())).thenComparing(byId);
+        };
+    }
+
+    public static StudentSort fromParameter(String value) {
+        for (StudentSort sort : values()) {
+            if (sort.property.equals(value)) {
+                return sort;
+            }
+        }
+        throw new InvalidPageRequestException("sort must be one of id, name, age");
+    }
+}
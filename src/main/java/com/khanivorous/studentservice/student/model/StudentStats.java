@@ -0,0 +1,51 @@
+package com.khanivorous.studentservice.student.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Summary of the ages of all students. The age statistics leave out students whose age is not known and are null
+ * when there are none, empty buckets are left out of the histogram.
+ */
+public record StudentStats(long count, Integer minAge, Integer maxAge, Double meanAge, List<AgeBucket> ageHistogram) {
+
+    /**
+     * The number of students aged from fromAge to toAge, both inclusive.
+     */
+    public record AgeBucket(int fromAge, int toAge, long count) {
+    }
+
+    /**
+     * Builds the statistics from the per age counts, which must be in age order, grouping ages into buckets of
+     * bucketSize years aligned on multiples of bucketSize.
+     */
+    public static StudentStats of(List<StudentAgeCount> ageCounts, int bucketSize) {
+        long count = 0;
+        long aged = 0;
+        long ageSum = 0;
+        Integer minAge = null;
+        Integer maxAge = null;
+        List<AgeBucket> histogram = new ArrayList<>();
+        for (StudentAgeCount ageCount : ageCounts) {
+            count += ageCount.count();
+            Integer age = ageCount.age();
+            if (age == null) {
+                continue;
+            }
+            aged += ageCount.count();
+            ageSum += age * ageCount.count();
+            minAge = minAge == null ? age : Math.min(minAge, age);
+            maxAge = maxAge == null ? age : Math.max(maxAge, age);
+            int fromAge = Math.floorDiv(age, bucketSize) * bucketSize;
+            AgeBucket last = histogram.isEmpty() ? null : histogram.get(histogram.size() - 1);
+            if (last != null && last.fromAge() == fromAge) {
+                histogram.set(histogram.size() - 1, new AgeBucket(fromAge, last.toAge(), last.count() + ageCount.count()));
+            } else {
+                int toAge = (int) Math.min((long) fromAge + bucketSize - 1, Integer.MAX_VALUE);
+                histogram.add(new AgeBucket(fromAge, toAge, ageCount.count()));
+            }
+        }
+        Double meanAge = aged == 0 ? null : (double) ageSum / aged;
+        return new StudentStats(count, minAge, maxAge, meanAge, histogram);
+    }
+}
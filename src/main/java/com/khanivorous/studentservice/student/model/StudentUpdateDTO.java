@@ -0,0 +1,27 @@
+package com.khanivorous.studentservice.student.model;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import javax.validation.groups.Default;
+
+/**
+ * The body of a PUT or PATCH. A PATCH leaves the fields that are null unchanged, a PUT must set every field. When the
+ * version is given the update only succeeds if the student is still at that version.
+ */
+public record StudentUpdateDTO(
+        @NotEmpty(groups = Replacement.class, message = "name must not be empty")
+        @Size(min = 1, message = "name must not be empty")
+        String name,
+        @NotNull(groups = Replacement.class, message = "age must not be null")
+        @Min(value = 17, message = "age cannot be less than 17 years old")
+        Integer age,
+        Long version) {
+
+    /**
+     * The constraints of a PUT, which replaces the whole student.
+     */
+    public interface Replacement extends Default {
+    }
+}
@@ -0,0 +1,25 @@
+package com.khanivorous.studentservice.student.repository;
+
+import com.khanivorous.studentservice.student.entities.IdempotencyKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+@Repository
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, String> {
+
+    @Transactional
+    @Modifying
+    @Query("delete from IdempotencyKey k where k.createdAt < :before")
+    int deleteCreatedBefore(@Param("before") Instant before);
+
+    @Transactional
+    @Modifying
+    @Query("delete from IdempotencyKey k where k.idempotencyKey = :key and k.createdAt < :before")
+    int deleteIfCreatedBefore(@Param("key") String key, @Param("before") Instant before);
+}
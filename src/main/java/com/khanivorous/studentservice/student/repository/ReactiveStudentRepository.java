@@ -0,0 +1,134 @@
+package com.khanivorous.studentservice.student.repository;
+
+import com.khanivorous.studentservice.student.model.StudentAgeCount;
+import com.khanivorous.studentservice.student.model.StudentDTO;
+import com.khanivorous.studentservice.student.model.StudentQuery;
+import io.r2dbc.spi.Row;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+/**
+ * Non-blocking access to the student table over R2DBC for the reactive profile. Rows are mapped straight to
+ * {@link StudentDTO}s, there are no entities on this side.
+ * <p>
+ * The schema is {@code db/reactive-schema.sql}, its own database and not one shared with the JPA profile: writes here
+ * take no change sequence numbers and deletes leave no tombstones, so {@code GET /students/changes} of the other
+ * profile would miss them. The sequence is read with H2's syntax, the only R2DBC driver on the classpath.
+ */
+@Repository
+@Profile("reactive")
+public class ReactiveStudentRepository {
+
+    private static final String SELECT_STUDENTS = "select id, name, age, version from student";
+
+    // the increment of student_id_seq, each value read from it reserves this many ids
+    private static final int ID_BLOCK_SIZE = 50;
+
+    private final DatabaseClient databaseClient;
+
+    // the ids left in the block last read from the sequence, guarded by this
+    private int nextId;
+
+    private int blockEnd;
+
+    public ReactiveStudentRepository(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    public Mono<StudentDTO> findDTOById(int id) {
+        return databaseClient.sql(SELECT_STUDENTS + " where id = :id")
+                .bind("id", id)
+                .map(ReactiveStudentRepository::toDTO)
+                .one();
+    }
+
+    public Flux<StudentDTO> findDTOsByIdGreaterThan(int after, int limit) {
+        return databaseClient.sql(SELECT_STUDENTS + " where id > :after order by id limit :limit")
+                .bind("after", after)
+                .bind("limit", limit)
+                .map(ReactiveStudentRepository::toDTO)
+                .all();
+    }
+
+    /**
+     * Reads up to limit students matching the query in its sort order, after the last student of the previous page.
+     */
+    public Flux<StudentDTO> findDTOs(StudentQuery query, StudentDTO after, int limit) {
+        StudentKeysetQuery keyset = StudentKeysetQuery.of("", query, after);
+        DatabaseClient.GenericExecuteSpec select = databaseClient.sql(SELECT_STUDENTS + keyset.where() + keyset.orderBy() + " limit :limit")
+                .bind("limit", limit);
+        for (Map.Entry<String, Object> parameter : keyset.parameters().entrySet()) {
+            select = select.bind(parameter.getKey(), parameter.getValue());
+        }
+        return select.map(ReactiveStudentRepository::toDTO).all();
+    }
+
+    public Flux<StudentDTO> findAllDTOs() {
+        return databaseClient.sql(SELECT_STUDENTS + " order by id")
+                .map(ReactiveStudentRepository::toDTO)
+                .all();
+    }
+
+    public Flux<StudentAgeCount> countByAge() {
+        return databaseClient.sql("select age, count(*) as students from student group by age order by age")
+                .map(row -> new StudentAgeCount(row.get("age", Integer.class), row.get("students", Long.class)))
+                .all();
+    }
+
+    /**
+     * Inserts a student with the next id of the block last read from the sequence, and reads the next block once it
+     * is used up, the way JPA's pooled-lo optimizer does. Only one insert in 50 waits for the sequence.
+     */
+    public Mono<StudentDTO> insert(String name, int age) {
+        return nextId()
+                .flatMap(id -> databaseClient.sql("insert into student (id, name, age) values (:id, :name, :age)")
+                        .bind("id", id)
+                        .bind("name", name)
+                        .bind("age", age)
+                        .fetch()
+                        .rowsUpdated()
+                        .thenReturn(new StudentDTO(id, name, age, 0L)));
+    }
+
+    private Mono<Integer> nextId() {
+        Integer id = takeId();
+        if (id != null) {
+            return Mono.just(id);
+        }
+        return databaseClient.sql("select next value for student_id_seq")
+                .map(row -> row.get(0, Long.class).intValue())
+                .one()
+                .map(this::startBlock);
+    }
+
+    private synchronized Integer takeId() {
+        return nextId < blockEnd ? nextId++ : null;
+    }
+
+    /**
+     * Hands out the first id of a block just read and keeps the rest. Inserts that find the block used up at the same
+     * time each read a block of their own, only the last one read is kept and the others' remaining ids are skipped.
+     */
+    private synchronized int startBlock(int first) {
+        nextId = first + 1;
+        blockEnd = first + ID_BLOCK_SIZE;
+        return first;
+    }
+
+    public Mono<Integer> deleteStudentById(int id) {
+        return databaseClient.sql("delete from student where id = :id")
+                .bind("id", id)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    private static StudentDTO toDTO(Row row) {
+        return new StudentDTO(row.get("id", Integer.class), row.get("name", String.class), row.get("age", Integer.class),
+                row.get("version", Long.class));
+    }
+}
@@ -0,0 +1,62 @@
+package com.khanivorous.studentservice.student.repository;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.TreeSet;
+import java.util.function.LongSupplier;
+
+/**
+ * Tracks the change sequence numbers held by transactions of this process that have not finished. Numbers are taken
+ * in order but transactions commit in any order, so a change is only handed out once every lower number taken here
+ * has committed or rolled back. A transaction only holds back the first number it took, the ones it takes after it
+ * are higher.
+ */
+final class StudentChangeWatermark {
+
+    // the first number of each unfinished transaction, guarded by this
+    private final TreeSet<Long> inFlight = new TreeSet<>();
+
+    /**
+     * Takes {@code count} numbers and holds the lowest one back from {@link #committedThrough} until the current
+     * transaction completes. Taking and holding happen under one lock, so a number is never seen taken but not held.
+     */
+    synchronized long[] take(int count, LongSupplier next) {
+        long[] numbers = new long[count];
+        for (int i = 0; i < count; i++) {
+            numbers[i] = next.getAsLong();
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive() && TransactionSynchronizationManager.getResource(this) == null) {
+            long first = numbers[0];
+            inFlight.add(first);
+            TransactionSynchronizationManager.bindResource(this, first);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(StudentChangeWatermark.this);
+                    release(first);
+                }
+            });
+        }
+        return numbers;
+    }
+
+    /**
+     * The highest number below which every change has committed or rolled back, given the highest committed one.
+     * It has to be read before this is called. The calling transaction's own changes are visible to it and do not
+     * hold it back.
+     */
+    synchronized long committedThrough(long lastCommitted) {
+        Object own = TransactionSynchronizationManager.getResource(this);
+        for (Long first : inFlight) {
+            if (!first.equals(own)) {
+                return Math.min(lastCommitted, first - 1);
+            }
+        }
+        return lastCommitted;
+    }
+
+    private synchronized void release(long first) {
+        inFlight.remove(first);
+    }
+}
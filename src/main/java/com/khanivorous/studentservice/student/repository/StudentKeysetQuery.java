@@ -0,0 +1,105 @@
+package com.khanivorous.studentservice.student.repository;
+
+import com.khanivorous.studentservice.student.model.StudentDTO;
+import com.khanivorous.studentservice.student.model.StudentQuery;
+import com.khanivorous.studentservice.student.model.StudentSort;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds the where and order by clauses of a filtered keyset page, shared by the JPQL and the R2DBC repositories.
+ * The name prefix is a like pattern with no leading wildcard, which the database turns into a range scan of the
+ * (name, id) index in the column's own collation. The position after the previous page is compared on the sort
+ * property and then id, matching the (name, id) and (age, id) indexes. Nulls come first in both H2 and MySQL, so after
+ * a student without the property the rest of the nulls come before every value.
+ */
+final class StudentKeysetQuery {
+
+    private static final char LIKE_ESCAPE = '!';
+
+    private final String where;
+
+    private final String orderBy;
+
+    private final Map<String, Object> parameters;
+
+    private StudentKeysetQuery(String where, String orderBy, Map<String, Object> parameters) {
+        this.where = where;
+        this.orderBy = orderBy;
+        this.parameters = parameters;
+    }
+
+    /**
+     * @param qualifier prefix of every column, such as {@code "s."} for a JPQL alias, or empty for plain sql
+     * @param after     the last student of the previous page, or null for the first page
+     */
+    static StudentKeysetQuery of(String qualifier, StudentQuery query, StudentDTO after) {
+        List<String> conditions = new ArrayList<>();
+        Map<String, Object> parameters = new LinkedHashMap<>();
+        String id = qualifier + "id";
+        String name = qualifier + "name";
+        String age = qualifier + "age";
+
+        String prefix = query.namePrefix();
+        if (prefix != null) {
+            conditions.add(name + " like :namePattern escape '" + LIKE_ESCAPE + "'");
+            parameters.put("namePattern", escapeLike(prefix) + "%");
+        }
+        if (query.minAge() != null) {
+            conditions.add(age + " >= :minAge");
+            parameters.put("minAge", query.minAge());
+        }
+        if (query.maxAge() != null) {
+            conditions.add(age + " <= :maxAge");
+            parameters.put("maxAge", query.maxAge());
+        }
+        if (after != null) {
+            parameters.put("afterId", after.id());
+            switch (query.sort()) {
+                case ID -> conditions.add(id + " > :afterId");
+                case NAME -> conditions.add(after(name, id, "afterName", after.name(), parameters));
+                case AGE -> conditions.add(after(age, id, "afterAge", after.age(), parameters));
+            }
+        }
+
+        String where = conditions.isEmpty() ? "" : " where " + String.join(" and ", conditions);
+        String orderBy = query.sort() == StudentSort.ID
+                ? " order by " + id
+                : " order by " + qualifier + query.sort().property() + ", " + id;
+        return new StudentKeysetQuery(where, orderBy, parameters);
+    }
+
+    String where() {
+        return where;
+    }
+
+    String orderBy() {
+        return orderBy;
+    }
+
+    Map<String, Object> parameters() {
+        return parameters;
+    }
+
+    private static String after(String column, String id, String parameter, Object value, Map<String, Object> parameters) {
+        if (value == null) {
+            return "(" + column + " is not null or " + id + " > :afterId)";
+        }
+        parameters.put(parameter, value);
+        return "(" + column + " > :" + parameter + " or (" + column + " = :" + parameter + " and " + id + " > :afterId))";
+    }
+
+    private static String escapeLike(String value) {
+        StringBuilder escaped = new StringBuilder(value.length() + 4);
+        for (char c : value.toCharArray()) {
+            if (c == '%' || c == '_' || c == LIKE_ESCAPE) {
+                escaped.append(LIKE_ESCAPE);
+            }
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+}
@@ -1,9 +1,41 @@
 package com.khanivorous.studentservice.student.repository;
 
 import com.khanivorous.studentservice.student.entities.Student;
-import org.springframework.data.repository.CrudRepository;
+import com.khanivorous.studentservice.student.model.StudentAgeCount;
+import com.khanivorous.studentservice.student.model.StudentDTO;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+import java.util.Optional;
+
 @Repository
-public interface StudentRepository extends CrudRepository<Student, Integer> {
+public interface StudentRepository extends PagingAndSortingRepository<Student, Integer>, StudentRepositoryCustom {
+
+    // implemented in StudentRepositoryImpl, which gives every saved student the next change sequence number
+    @Override
+    <S extends Student> S save(S student);
+
+    @Override
+    <S extends Student> Iterable<S> saveAll(Iterable<S> students);
+
+    @Query("select new com.khanivorous.studentservice.student.model.StudentDTO(s.id, s.name, s.age, s.version) from Student s where s.id = :id")
+    Optional<StudentDTO> findDTOById(@Param("id") int id);
+
+    @Query("select new com.khanivorous.studentservice.student.model.StudentDTO(s.id, s.name, s.age, s.version) from Student s where s.id > :after order by s.id")
+    Slice<StudentDTO> findDTOsByIdGreaterThan(@Param("after") int after, Pageable pageable);
+
+    @Query("select new com.khanivorous.studentservice.student.model.StudentDTO(s.id, s.name, s.age, s.version) from Student s order by s.id")
+    List<StudentDTO> findAllDTOs();
+
+    /**
+     * Counts the students of each age in the database, so the statistics of a table of any size are built from at
+     * most one row per distinct age.
+     */
+    @Query("select new com.khanivorous.studentservice.student.model.StudentAgeCount(s.age, count(s)) from Student s group by s.age order by s.age")
+    List<StudentAgeCount> countByAge();
 }
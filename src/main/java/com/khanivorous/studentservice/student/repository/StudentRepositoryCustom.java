@@ -0,0 +1,107 @@
+package com.khanivorous.studentservice.student.repository;
+
+import com.khanivorous.studentservice.student.entities.Student;
+import com.khanivorous.studentservice.student.model.StudentChange;
+import com.khanivorous.studentservice.student.model.StudentDTO;
+import com.khanivorous.studentservice.student.model.StudentQuery;
+import org.springframework.data.domain.Slice;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Every method that writes students takes the next numbers from the change sequence in the same transaction, and
+ * deletes leave a tombstone, so {@link #findChangesAfter} can tell a client what changed since it last synced.
+ * Numbers come from a pooled database sequence without locking anything, so transactions can commit out of the order
+ * of their numbers. {@link #lastChangeSeq()} therefore stops below the first number of any transaction of this
+ * process still running, and a client never skips a change that commits late. Writes made by another instance are
+ * not held back that way. The inherited delete methods leave no tombstones and are only meant for tests.
+ */
+public interface StudentRepositoryCustom {
+
+    /**
+     * Saves the student with the next change sequence number, replacing {@code CrudRepository.save}.
+     */
+    <S extends Student> S save(S student);
+
+    /**
+     * Saves the students with the next change sequence numbers.
+     */
+    <S extends Student> Iterable<S> saveAll(Iterable<S> students);
+
+    /**
+     * Scrolls over every student in id order without loading the table into memory.
+     * Rows are projected straight into {@link StudentDTO}s, so nothing is added to the persistence context.
+     */
+    void forEachStudent(Consumer<StudentDTO> consumer);
+
+    /**
+     * Reads one page of the students matching the query, in its sort order, starting after the last student of the
+     * previous page. The filters and the position are range conditions on the (name, id) and (age, id) indexes.
+     */
+    Slice<StudentDTO> findDTOs(StudentQuery query, StudentDTO after, int limit);
+
+    /**
+     * Deletes the student and leaves a tombstone for it.
+     *
+     * @return the number of students deleted
+     */
+    int deleteStudentById(int id);
+
+    /**
+     * Deletes the students with the given ids with a single delete statement, leaves a tombstone for each, and returns
+     * the ids that existed. The students are locked when they are looked up, so when two deletes race for the same
+     * ids only one of them reports each id as deleted.
+     */
+    List<Integer> deleteExistingByIdIn(Collection<Integer> ids);
+
+    /**
+     * Sets the given name and age of a student with a single update statement, leaving null fields unchanged and
+     * bumping the version. With an expected version only a student still at that version is updated.
+     *
+     * @return the number of students updated, 0 when the student does not exist or is at another version
+     */
+    int updateStudent(int id, String name, Integer age, Long expectedVersion);
+
+    /**
+     * Allocates the id of a student that is inserted later with {@link #insertAll}. Ids come from the same generator
+     * as the ids of saved entities, so the database is only asked for a new block of ids once per allocation size.
+     */
+    int nextId();
+
+    /**
+     * Inserts students whose ids were allocated with {@link #nextId()} in one transaction, as one jdbc batch.
+     */
+    void insertAll(List<StudentDTO> students);
+
+    /**
+     * Reads up to {@code limit} students and tombstones that changed after the given position and up to
+     * {@code throughChangeSeq}, in change sequence order. Both are range scans on a change sequence index.
+     */
+    List<StudentChange> findChangesAfter(long changeSeq, int afterId, long throughChangeSeq, int limit);
+
+    /**
+     * The highest change sequence number below which every change has committed or rolled back, 0 before the first
+     * change.
+     */
+    long lastChangeSeq();
+
+    /**
+     * Creates the row recording how far tombstones have been compacted, unless it exists.
+     */
+    void createChangeSequence();
+
+    /**
+     * Tombstones up to this change sequence number have been compacted away, 0 before the first compaction.
+     */
+    long compactedChangeSeq();
+
+    /**
+     * Removes the tombstones of students deleted before the given time and records how far they were removed.
+     *
+     * @return the number of tombstones removed
+     */
+    int compactTombstones(Instant deletedBefore);
+}
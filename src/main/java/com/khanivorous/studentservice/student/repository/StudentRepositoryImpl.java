@@ -0,0 +1,291 @@
+package com.khanivorous.studentservice.student.repository;
+
+import com.khanivorous.studentservice.student.entities.Student;
+import com.khanivorous.studentservice.student.entities.StudentChangeNumber;
+import com.khanivorous.studentservice.student.entities.StudentChangeSequence;
+import com.khanivorous.studentservice.student.entities.StudentTombstone;
+import com.khanivorous.studentservice.student.model.StudentChange;
+import com.khanivorous.studentservice.student.model.StudentDTO;
+import com.khanivorous.studentservice.student.model.StudentQuery;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.StatelessSession;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+import javax.persistence.TypedQuery;
+import java.sql.PreparedStatement;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+
+public class StudentRepositoryImpl implements StudentRepositoryCustom {
+
+    private static final Comparator<StudentChange> CHANGE_ORDER = Comparator.comparingLong(StudentChange::changeSeq)
+            .thenComparingInt(StudentChange::id);
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final StudentChangeWatermark changeWatermark = new StudentChangeWatermark();
+
+    private final int fetchSize;
+
+    public StudentRepositoryImpl(@Value("${student.export.fetch-size:1000}") int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    @Override
+    @Transactional
+    public <S extends Student> S save(S student) {
+        student.setChangeSeq(allocateChangeSeqs(1)[0]);
+        if (student.getId() == null) {
+            entityManager.persist(student);
+            return student;
+        }
+        return entityManager.merge(student);
+    }
+
+    @Override
+    @Transactional
+    public <S extends Student> Iterable<S> saveAll(Iterable<S> students) {
+        List<S> toSave = new ArrayList<>();
+        students.forEach(toSave::add);
+        if (toSave.isEmpty()) {
+            return toSave;
+        }
+        long[] changeSeqs = allocateChangeSeqs(toSave.size());
+        List<S> saved = new ArrayList<>(toSave.size());
+        for (int i = 0; i < toSave.size(); i++) {
+            S student = toSave.get(i);
+            student.setChangeSeq(changeSeqs[i]);
+            if (student.getId() == null) {
+                entityManager.persist(student);
+                saved.add(student);
+            } else {
+                saved.add(entityManager.merge(student));
+            }
+        }
+        return saved;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void forEachStudent(Consumer<StudentDTO> consumer) {
+        Session session = entityManager.unwrap(Session.class);
+        try (ScrollableResults results = session.createQuery(
+                        "select new com.khanivorous.studentservice.student.model.StudentDTO(s.id, s.name, s.age, s.version) from Student s order by s.id",
+                        StudentDTO.class)
+                .setFetchSize(fetchSize)
+                .setReadOnly(true)
+                .scroll(ScrollMode.FORWARD_ONLY)) {
+            while (results.next()) {
+                consumer.accept((StudentDTO) results.get(0));
+            }
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Slice<StudentDTO> findDTOs(StudentQuery query, StudentDTO after, int limit) {
+        StudentKeysetQuery keyset = StudentKeysetQuery.of("s.", query, after);
+        TypedQuery<StudentDTO> page = entityManager.createQuery(
+                        "select new com.khanivorous.studentservice.student.model.StudentDTO(s.id, s.name, s.age, s.version) from Student s"
+                                + keyset.where() + keyset.orderBy(),
+                        StudentDTO.class)
+                .setMaxResults(limit + 1);
+        keyset.parameters().forEach(page::setParameter);
+        List<StudentDTO> students = page.getResultList();
+        boolean hasNext = students.size() > limit;
+        return new SliceImpl<>(hasNext ? students.subList(0, limit) : students, PageRequest.ofSize(limit), hasNext);
+    }
+
+    @Override
+    @Transactional
+    public int deleteStudentById(int id) {
+        int deleted = entityManager.createQuery("delete from Student s where s.id = :id")
+                .setParameter("id", id)
+                .executeUpdate();
+        if (deleted > 0) {
+            entityManager.persist(new StudentTombstone(id, allocateChangeSeqs(1)[0], Instant.now()));
+        }
+        return deleted;
+    }
+
+    @Override
+    @Transactional
+    public List<Integer> deleteExistingByIdIn(Collection<Integer> ids) {
+        // locked, so a concurrent delete of the same ids waits for this one and then finds them gone
+        List<Integer> existing = entityManager.createQuery("select s.id from Student s where s.id in :ids", Integer.class)
+                .setParameter("ids", ids)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultList();
+        if (!existing.isEmpty()) {
+            long[] changeSeqs = allocateChangeSeqs(existing.size());
+            entityManager.createQuery("delete from Student s where s.id in :ids")
+                    .setParameter("ids", existing)
+                    .executeUpdate();
+            Instant deletedAt = Instant.now();
+            for (int i = 0; i < existing.size(); i++) {
+                entityManager.persist(new StudentTombstone(existing.get(i), changeSeqs[i], deletedAt));
+            }
+        }
+        return existing;
+    }
+
+    @Override
+    @Transactional
+    public int updateStudent(int id, String name, Integer age, Long expectedVersion) {
+        long changeSeq = allocateChangeSeqs(1)[0];
+        StringBuilder update = new StringBuilder("update Student s set s.version = s.version + 1, s.changeSeq = :changeSeq");
+        if (name != null) {
+            update.append(", s.name = :name");
+        }
+        if (age != null) {
+            update.append(", s.age = :age");
+        }
+        update.append(" where s.id = :id");
+        if (expectedVersion != null) {
+            update.append(" and s.version = :version");
+        }
+        Query query = entityManager.createQuery(update.toString())
+                .setParameter("changeSeq", changeSeq)
+                .setParameter("id", id);
+        if (name != null) {
+            query.setParameter("name", name);
+        }
+        if (age != null) {
+            query.setParameter("age", age);
+        }
+        if (expectedVersion != null) {
+            query.setParameter("version", expectedVersion);
+        }
+        return query.executeUpdate();
+    }
+
+    @Override
+    public int nextId() {
+        SessionFactoryImplementor sessionFactory = entityManager.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class);
+        IdentifierGenerator generator = sessionFactory.getMetamodel().entityPersister(Student.class).getIdentifierGenerator();
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            return ((Number) generator.generate((SharedSessionContractImplementor) session, null)).intValue();
+        }
+    }
+
+    @Override
+    @Transactional
+    public void insertAll(List<StudentDTO> students) {
+        long[] changeSeqs = allocateChangeSeqs(students.size());
+        entityManager.unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement insert = connection.prepareStatement("insert into student (id, name, age, change_seq) values (?, ?, ?, ?)")) {
+                for (int i = 0; i < students.size(); i++) {
+                    StudentDTO student = students.get(i);
+                    insert.setInt(1, student.id());
+                    insert.setString(2, student.name());
+                    insert.setObject(3, student.age(), Types.INTEGER);
+                    insert.setLong(4, changeSeqs[i]);
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+        });
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<StudentChange> findChangesAfter(long changeSeq, int afterId, long throughChangeSeq, int limit) {
+        List<StudentChange> changes = new ArrayList<>(entityManager.createQuery(
+                        "select new com.khanivorous.studentservice.student.model.StudentChange(s.changeSeq, s.id, s.name, s.age, s.version)"
+                                + " from Student s where (s.changeSeq > :changeSeq or (s.changeSeq = :changeSeq and s.id > :id))"
+                                + " and s.changeSeq <= :through order by s.changeSeq, s.id",
+                        StudentChange.class)
+                .setParameter("changeSeq", changeSeq)
+                .setParameter("id", afterId)
+                .setParameter("through", throughChangeSeq)
+                .setMaxResults(limit)
+                .getResultList());
+        changes.addAll(entityManager.createQuery(
+                        "select new com.khanivorous.studentservice.student.model.StudentChange(t.changeSeq, t.studentId)"
+                                + " from StudentTombstone t where t.changeSeq > :changeSeq and t.changeSeq <= :through order by t.changeSeq",
+                        StudentChange.class)
+                .setParameter("changeSeq", changeSeq)
+                .setParameter("through", throughChangeSeq)
+                .setMaxResults(limit)
+                .getResultList());
+        changes.sort(CHANGE_ORDER);
+        return changes.size() > limit ? changes.subList(0, limit) : changes;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long lastChangeSeq() {
+        // both are the last entry of an index on the change sequence
+        Long lastWritten = entityManager.createQuery("select max(s.changeSeq) from Student s", Long.class).getSingleResult();
+        Long lastDeleted = entityManager.createQuery("select max(t.changeSeq) from StudentTombstone t", Long.class).getSingleResult();
+        long lastCommitted = Math.max(lastWritten == null ? 0 : lastWritten, lastDeleted == null ? 0 : lastDeleted);
+        return changeWatermark.committedThrough(lastCommitted);
+    }
+
+    @Override
+    @Transactional
+    public void createChangeSequence() {
+        if (entityManager.find(StudentChangeSequence.class, StudentChangeSequence.ID) == null) {
+            entityManager.persist(new StudentChangeSequence());
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long compactedChangeSeq() {
+        return entityManager.createQuery("select c.compactedThrough from StudentChangeSequence c where c.id = :id", Long.class)
+                .setParameter("id", StudentChangeSequence.ID)
+                .getResultStream()
+                .findFirst()
+                .orElse(0L);
+    }
+
+    @Override
+    @Transactional
+    public int compactTombstones(Instant deletedBefore) {
+        Long through = entityManager.createQuery(
+                        "select max(t.changeSeq) from StudentTombstone t where t.deletedAt < :deletedBefore", Long.class)
+                .setParameter("deletedBefore", deletedBefore)
+                .getSingleResult();
+        if (through == null) {
+            return 0;
+        }
+        entityManager.createQuery("update StudentChangeSequence c set c.compactedThrough = :through"
+                        + " where c.id = :id and c.compactedThrough < :through")
+                .setParameter("through", through)
+                .setParameter("id", StudentChangeSequence.ID)
+                .executeUpdate();
+        return entityManager.createQuery("delete from StudentTombstone t where t.changeSeq <= :through")
+                .setParameter("through", through)
+                .executeUpdate();
+    }
+
+    /**
+     * Takes the next {@code count} change sequence numbers from the pooled sequence. No lock is held on the database,
+     * the numbers are held back from {@link #lastChangeSeq()} until this transaction completes instead.
+     */
+    private long[] allocateChangeSeqs(int count) {
+        SharedSessionContractImplementor session = entityManager.unwrap(SharedSessionContractImplementor.class);
+        IdentifierGenerator generator = session.getFactory().getMetamodel().entityPersister(StudentChangeNumber.class).getIdentifierGenerator();
+        return changeWatermark.take(count, () -> ((Number) generator.generate(session, null)).longValue());
+    }
+}
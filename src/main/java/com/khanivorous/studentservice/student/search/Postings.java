@@ -0,0 +1,62 @@
+package com.khanivorous.studentservice.student.search;
+
+import java.util.Arrays;
+
+/**
+ * Sorted, distinct index slots of the students whose names contain one trigram, kept in a growable int array. New
+ * slots are handed out in increasing order, so adding a student is an append unless it reuses the slot of a removed
+ * one.
+ */
+final class Postings {
+
+    private int[] slots = new int[4];
+
+    private int size;
+
+    void add(int slot) {
+        if (size == 0 || slot > slots[size - 1]) {
+            grow();
+            slots[size++] = slot;
+            return;
+        }
+        int index = Arrays.binarySearch(slots, 0, size, slot);
+        if (index >= 0) {
+            return;
+        }
+        int insertAt = -index - 1;
+        grow();
+        System.arraycopy(slots, insertAt, slots, insertAt + 1, size - insertAt);
+        slots[insertAt] = slot;
+        size++;
+    }
+
+    void remove(int slot) {
+        int index = Arrays.binarySearch(slots, 0, size, slot);
+        if (index >= 0) {
+            System.arraycopy(slots, index + 1, slots, index, size - index - 1);
+            size--;
+        }
+    }
+
+    boolean contains(int slot) {
+        return Arrays.binarySearch(slots, 0, size, slot) >= 0;
+    }
+
+    int get(int index) {
+        return slots[index];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    private void grow() {
+        if (size == slots.length) {
+            slots = Arrays.copyOf(slots, size + (size >> 1) + 1);
+        }
+    }
+}
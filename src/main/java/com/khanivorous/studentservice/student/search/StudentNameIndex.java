@@ -0,0 +1,433 @@
+package com.khanivorous.studentservice.student.search;
+
+import com.khanivorous.studentservice.student.events.StudentCreatedEvent;
+import com.khanivorous.studentservice.student.events.StudentDeletedEvent;
+import com.khanivorous.studentservice.student.events.StudentUpdatedEvent;
+import com.khanivorous.studentservice.student.events.StudentVersion;
+import com.khanivorous.studentservice.student.model.StudentDTO;
+import com.khanivorous.studentservice.student.model.StudentMatch;
+import com.khanivorous.studentservice.student.repository.StudentRepository;
+import com.khanivorous.studentservice.student.sharding.StudentShards;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-process trigram index over student names for typo tolerant, search-as-you-type lookups.
+ * <p>
+ * A student matches when its name contains at least half of the trigrams of the query, and matches are ranked by the
+ * Jaccard similarity of the two trigram sets. Names are bucketed by their number of trigrams, every indexed student
+ * gets a dense slot number within its bucket, and posting lists of sorted slots are kept per trigram and bucket. The
+ * best score a name of a given length can reach is known up front, so lengths are searched best first and the search
+ * stops as soon as no remaining length can beat the matches already found. Within one length, only the shortest lists
+ * are scanned and the few names hit often enough are then looked up in the longer lists. The scanned lists are walked
+ * side by side a block of slots at a time, so hits are counted in a small reusable array that stays cached.
+ * <p>
+ * The index is built from the table when the application starts and follows the created, updated and deleted events
+ * after each commit.
+ */
+@Component
+@Profile("!reactive")
+public class StudentNameIndex implements SmartInitializingSingleton {
+
+    static final double MIN_QUERY_COVERAGE = 0.5;
+
+    /**
+     * How many lists beyond the minimum are scanned per length. Each one raises the number of hits a name needs in the
+     * scanned lists by one, which rules out most names before they are looked up in the longer lists.
+     */
+    static final int EXTRA_SCANNED_LISTS = 3;
+
+    static final int MAX_QUERY_LENGTH = 256;
+
+    // 8 KB of hit counters
+    private static final int BLOCK_SLOTS = 4096;
+
+    private static final int MAX_LENGTH = 0xFFFF;
+
+    private static final Comparator<StudentMatch> RANKING = Comparator.comparingDouble(StudentMatch::score).reversed()
+            .thenComparing(match -> match.student().id());
+
+    private final StudentRepository studentRepository;
+
+    private final StudentShards studentShards;
+
+    // by trigram, then by number of trigrams in the name; a trigram keeps its array once all its names are gone
+    private final Map<Long, Postings[]> postings = new HashMap<>();
+
+    private final Map<Integer, Entry> students = new HashMap<>();
+
+    // by number of trigrams
+    private Bucket[] buckets = new Bucket[0];
+
+    private final ConcurrentLinkedQueue<Scratch> scratches = new ConcurrentLinkedQueue<>();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private int longestName;
+
+    // writes that arrive while the table is read, applied once it has been, guarded by the write lock
+    private List<Runnable> whileBuilding;
+
+    public StudentNameIndex(StudentRepository studentRepository, StudentShards studentShards) {
+        this.studentRepository = studentRepository;
+        this.studentShards = studentShards;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        rebuild();
+    }
+
+    /**
+     * Reindexes every student in the table. Writes committed meanwhile are applied afterwards, so a row the read saw
+     * before it changed does not win over the change.
+     */
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            students.clear();
+            buckets = new Bucket[0];
+            longestName = 0;
+            whileBuilding = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        studentShards.forEachShard(() -> studentRepository.forEachStudent(this::index));
+        lock.writeLock().lock();
+        try {
+            List<Runnable> pending = whileBuilding;
+            whileBuilding = null;
+            pending.forEach(Runnable::run);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Order(StudentVersion.READ_STATE_ORDER)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCreated(StudentCreatedEvent event) {
+        add(event.student());
+    }
+
+    @Order(StudentVersion.READ_STATE_ORDER)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUpdated(StudentUpdatedEvent event) {
+        add(event.student());
+    }
+
+    @Order(StudentVersion.READ_STATE_ORDER)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDeleted(StudentDeletedEvent event) {
+        remove(event.id());
+    }
+
+    /**
+     * Indexes the student, or reindexes the one with its id. A student without a name is taken out of the index.
+     */
+    public void add(StudentDTO student) {
+        long[] trigrams = trigrams(student);
+        lock.writeLock().lock();
+        try {
+            if (whileBuilding != null) {
+                whileBuilding.add(() -> add(student));
+                return;
+            }
+            putLocked(student, trigrams);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int id) {
+        lock.writeLock().lock();
+        try {
+            if (whileBuilding != null) {
+                whileBuilding.add(() -> remove(id));
+                return;
+            }
+            removeLocked(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return students.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns up to limit students whose name is similar to the query, best match first.
+     */
+    public List<StudentMatch> search(String query, int limit) {
+        long[] trigrams = Trigrams.of(query.length() > MAX_QUERY_LENGTH ? query.substring(0, MAX_QUERY_LENGTH) : query, true);
+        if (trigrams.length == 0) {
+            return List.of();
+        }
+        int queryLength = trigrams.length;
+        int required = Math.max(1, (int) Math.ceil(queryLength * MIN_QUERY_COVERAGE));
+
+        Scratch scratch = scratches.poll();
+        if (scratch == null) {
+            scratch = new Scratch();
+        }
+        lock.readLock().lock();
+        try {
+            Postings[][] lists = new Postings[queryLength][];
+            for (int i = 0; i < queryLength; i++) {
+                lists[i] = postings.get(trigrams[i]);
+            }
+            PriorityQueue<StudentMatch> best = new PriorityQueue<>(limit + 1, RANKING.reversed());
+            // a name of n trigrams scores at most min(n, q) / max(n, q) against a query of q trigrams, so lengths are
+            // visited outwards from q, taking whichever of the next shorter and next longer length can score higher
+            int shorter = Math.min(queryLength, longestName);
+            int longer = queryLength + 1;
+            while (shorter >= required || longer <= longestName) {
+                double shorterBound = shorter >= required ? (double) shorter / queryLength : 0;
+                double longerBound = longer <= longestName ? (double) queryLength / longer : 0;
+                int length = longerBound > shorterBound ? longer++ : shorter--;
+                double bound = Math.max(shorterBound, longerBound);
+                int matches = required;
+                if (best.size() == limit) {
+                    double worst = best.peek().score();
+                    if (worst >= bound) {
+                        break;
+                    }
+                    // to beat a score s a name of n trigrams has to share m >= s * (q + n) / (1 + s) of them
+                    matches = Math.max(required, (int) Math.ceil(worst * (queryLength + length) / (1 + worst)));
+                }
+                collect(lists, length, matches, bound, limit, best, scratch);
+            }
+            List<StudentMatch> matched = new ArrayList<>(best);
+            matched.sort(RANKING);
+            return matched;
+        } finally {
+            lock.readLock().unlock();
+            scratches.offer(scratch);
+        }
+    }
+
+    /**
+     * Adds the names of the given length that share at least required trigrams with the query to the best matches
+     * found so far.
+     */
+    private void collect(Postings[][] byLength, int length, int required, double bound, int limit,
+                         PriorityQueue<StudentMatch> best, Scratch scratch) {
+        Bucket bucket = buckets[length];
+        if (bucket == null) {
+            return;
+        }
+        Postings[] lists = new Postings[byLength.length];
+        for (int i = 0; i < byLength.length; i++) {
+            lists[i] = byLength[i] == null || byLength[i].length <= length ? null : byLength[i][length];
+        }
+        Arrays.sort(lists, Comparator.comparingInt(list -> list == null ? 0 : list.size()));
+        // a name that shares required trigrams misses at most q - required of them, so it is hit at least
+        // scanned - (q - required) times in the scanned lists
+        int scanned = Math.min(lists.length, lists.length - required + 1 + EXTRA_SCANNED_LISTS);
+        int scannedRequired = required - (lists.length - scanned);
+
+        // hits are counted a block of slots at a time, walking the sorted lists side by side, so the counters stay
+        // in the first level cache however many names have this length
+        short[] counts = scratch.counts;
+        int[] cursors = scratch.cursors(scanned);
+        while (true) {
+            int blockStart = Integer.MAX_VALUE;
+            for (int i = 0; i < scanned; i++) {
+                if (lists[i] != null && cursors[i] < lists[i].size()) {
+                    blockStart = Math.min(blockStart, lists[i].get(cursors[i]));
+                }
+            }
+            if (blockStart == Integer.MAX_VALUE) {
+                return;
+            }
+            int blockEnd = blockStart + BLOCK_SLOTS;
+            int candidates = 0;
+            for (int i = 0; i < scanned; i++) {
+                Postings list = lists[i];
+                if (list == null) {
+                    continue;
+                }
+                int j = cursors[i];
+                for (int slot; j < list.size() && (slot = list.get(j)) < blockEnd; j++) {
+                    // a name is noted once, when it has been hit often enough
+                    if (++counts[slot - blockStart] == scannedRequired) {
+                        candidates = scratch.note(candidates, slot);
+                    }
+                }
+                cursors[i] = j;
+            }
+
+            int[] candidateSlots = scratch.candidates;
+            for (int c = 0; c < candidates; c++) {
+                int slot = candidateSlots[c];
+                int matched = counts[slot - blockStart];
+                for (int i = scanned; i < lists.length && matched + lists.length - i >= required; i++) {
+                    if (lists[i] != null && lists[i].contains(slot)) {
+                        matched++;
+                    }
+                }
+                if (matched < required) {
+                    continue;
+                }
+                double score = (double) matched / (lists.length + length - matched);
+                if (best.size() == limit && score <= best.peek().score()) {
+                    continue;
+                }
+                best.add(new StudentMatch(bucket.slots[slot].student(), score));
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+            Arrays.fill(counts, 0, Math.min(BLOCK_SLOTS, bucket.slotCount - blockStart), (short) 0);
+        }
+    }
+
+    // a student read from the table while it is being rebuilt
+    private void index(StudentDTO student) {
+        long[] trigrams = trigrams(student);
+        lock.writeLock().lock();
+        try {
+            putLocked(student, trigrams);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static long[] trigrams(StudentDTO student) {
+        return student.name() == null ? null : Trigrams.of(student.name(), false);
+    }
+
+    private void putLocked(StudentDTO student, long[] trigrams) {
+        removeLocked(student.id());
+        if (trigrams == null) {
+            return;
+        }
+        int length = Math.min(trigrams.length, MAX_LENGTH);
+        if (length >= buckets.length) {
+            buckets = Arrays.copyOf(buckets, Math.max(length + 1, buckets.length * 2));
+        }
+        if (buckets[length] == null) {
+            buckets[length] = new Bucket();
+        }
+        Entry entry = buckets[length].add(student, length);
+        int slot = entry.slot();
+        students.put(student.id(), entry);
+        longestName = Math.max(longestName, length);
+        for (long trigram : trigrams) {
+            Postings[] byLength = postings.get(trigram);
+            if (byLength == null || byLength.length <= length) {
+                byLength = byLength == null ? new Postings[length + 1] : Arrays.copyOf(byLength, length + 1);
+                postings.put(trigram, byLength);
+            }
+            if (byLength[length] == null) {
+                byLength[length] = new Postings();
+            }
+            byLength[length].add(slot);
+        }
+    }
+
+    private void removeLocked(int id) {
+        Entry entry = students.remove(id);
+        if (entry == null) {
+            return;
+        }
+        for (long trigram : Trigrams.of(entry.student().name(), false)) {
+            Postings[] byLength = postings.get(trigram);
+            byLength[entry.length()].remove(entry.slot());
+            if (byLength[entry.length()].isEmpty()) {
+                byLength[entry.length()] = null;
+            }
+        }
+        buckets[entry.length()].remove(entry.slot());
+    }
+
+    private record Entry(StudentDTO student, int length, int slot) {
+    }
+
+    /**
+     * The students whose names have one number of trigrams, by slot. The slots of removed students are reused.
+     */
+    private static final class Bucket {
+
+        private Entry[] slots = new Entry[16];
+
+        private int slotCount;
+
+        private int[] freeSlots = new int[16];
+
+        private int freeSlotCount;
+
+        private Entry add(StudentDTO student, int length) {
+            int slot;
+            if (freeSlotCount > 0) {
+                slot = freeSlots[--freeSlotCount];
+            } else {
+                if (slotCount == slots.length) {
+                    slots = Arrays.copyOf(slots, slotCount * 2);
+                }
+                slot = slotCount++;
+            }
+            Entry entry = new Entry(student, length, slot);
+            slots[slot] = entry;
+            return entry;
+        }
+
+        private void remove(int slot) {
+            slots[slot] = null;
+            if (freeSlotCount == freeSlots.length) {
+                freeSlots = Arrays.copyOf(freeSlots, freeSlotCount * 2);
+            }
+            freeSlots[freeSlotCount++] = slot;
+        }
+    }
+
+    /**
+     * Per search hit counters for one block of slots, reset after each block, and the positions reached in the scanned
+     * lists, pooled so searches do not allocate them.
+     */
+    private static final class Scratch {
+
+        private final short[] counts = new short[BLOCK_SLOTS];
+
+        private int[] cursors = new int[16];
+
+        private int[] candidates = new int[1024];
+
+        private int[] cursors(int lists) {
+            if (cursors.length < lists) {
+                cursors = new int[lists];
+            } else {
+                Arrays.fill(cursors, 0, lists, 0);
+            }
+            return cursors;
+        }
+
+        private int note(int count, int slot) {
+            if (count == candidates.length) {
+                candidates = Arrays.copyOf(candidates, count * 2);
+            }
+            candidates[count] = slot;
+            return count + 1;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.khanivorous.studentservice.student.search;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Splits names into trigrams the way they are indexed. Names are lower cased, stripped of accents and split into
+ * words on anything that is not a letter or digit. Each word is padded with two spaces in front and one behind, so
+ * the start and end of a word are trigrams of their own. A trigram is packed into a long, 16 bits per char.
+ */
+final class Trigrams {
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private Trigrams() {
+    }
+
+    static String normalize(String name) {
+        String stripped = MARKS.matcher(Normalizer.normalize(name, Normalizer.Form.NFD)).replaceAll("");
+        return SEPARATORS.matcher(stripped.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+
+    /**
+     * The distinct trigrams of a name in ascending order.
+     *
+     * @param partialLastWord leaves the last word open ended, for text that is still being typed
+     */
+    static long[] of(String name, boolean partialLastWord) {
+        String normalized = normalize(name);
+        if (normalized.isEmpty()) {
+            return new long[0];
+        }
+        String[] words = normalized.split(" ");
+        long[] trigrams = new long[normalized.length() + 2 * words.length];
+        int count = 0;
+        for (int w = 0; w < words.length; w++) {
+            String padded = "  " + words[w] + (partialLastWord && w == words.length - 1 ? "" : " ");
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                trigrams[count++] = pack(padded.charAt(i), padded.charAt(i + 1), padded.charAt(i + 2));
+            }
+        }
+        Arrays.sort(trigrams, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || trigrams[i] != trigrams[distinct - 1]) {
+                trigrams[distinct++] = trigrams[i];
+            }
+        }
+        return Arrays.copyOf(trigrams, distinct);
+    }
+
+    private static long pack(char first, char second, char third) {
+        return ((long) first << 32) | ((long) second << 16) | third;
+    }
+}
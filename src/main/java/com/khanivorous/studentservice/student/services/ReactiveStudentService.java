@@ -0,0 +1,29 @@
+package com.khanivorous.studentservice.student.services;
+
+import com.khanivorous.studentservice.student.model.StudentDTO;
+import com.khanivorous.studentservice.student.model.StudentPage;
+import com.khanivorous.studentservice.student.model.StudentQuery;
+import com.khanivorous.studentservice.student.model.StudentStats;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * The non-blocking counterpart of {@link StudentService}, used when the application runs with the reactive profile.
+ */
+public interface ReactiveStudentService {
+
+    Mono<StudentDTO> getStudentById(int id);
+
+    Flux<StudentDTO> getAllStudents();
+
+    Mono<StudentPage> getStudentPage(String after, int limit);
+
+    Mono<StudentPage> getStudentPage(StudentQuery query, String after, int limit);
+
+    Mono<StudentStats> getStudentStats(int bucketSize);
+
+    Mono<StudentDTO> addNewStudent(String name, int age);
+
+    Mono<Void> deleteStudentById(int id);
+
+}
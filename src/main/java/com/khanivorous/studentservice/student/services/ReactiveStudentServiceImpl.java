@@ -0,0 +1,91 @@
+package com.khanivorous.studentservice.student.services;
+
+import com.khanivorous.studentservice.student.InvalidPageRequestException;
+import com.khanivorous.studentservice.student.NoSuchIdException;
+import com.khanivorous.studentservice.student.events.StudentCreatedEvent;
+import com.khanivorous.studentservice.student.events.StudentDeletedEvent;
+import com.khanivorous.studentservice.student.model.StudentCursor;
+import com.khanivorous.studentservice.student.model.StudentDTO;
+import com.khanivorous.studentservice.student.model.StudentPage;
+import com.khanivorous.studentservice.student.model.StudentQuery;
+import com.khanivorous.studentservice.student.model.StudentSort;
+import com.khanivorous.studentservice.student.model.StudentStats;
+import com.khanivorous.studentservice.student.repository.ReactiveStudentRepository;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Optional;
+
+@Service
+@Profile("reactive")
+public class ReactiveStudentServiceImpl implements ReactiveStudentService {
+
+    private ReactiveStudentRepository studentRepository;
+
+    private ApplicationEventPublisher eventPublisher;
+
+    public ReactiveStudentServiceImpl(ReactiveStudentRepository studentRepository, ApplicationEventPublisher eventPublisher) {
+        this.studentRepository = studentRepository;
+        this.eventPublisher = eventPublisher;
+    }
+
+    public Mono<StudentDTO> getStudentById(int id) {
+        return studentRepository.findDTOById(id)
+                .switchIfEmpty(Mono.error(() -> new NoSuchIdException(id)));
+    }
+
+    public Flux<StudentDTO> getAllStudents() {
+        return studentRepository.findAllDTOs();
+    }
+
+    public Mono<StudentPage> getStudentPage(String after, int limit) {
+        return getStudentPage(StudentQuery.ALL, after, limit);
+    }
+
+    public Mono<StudentPage> getStudentPage(StudentQuery query, String after, int limit) {
+        if (limit < 1 || limit > StudentServiceImpl.MAX_PAGE_SIZE) {
+            return Mono.error(new InvalidPageRequestException("limit must be between 1 and " + StudentServiceImpl.MAX_PAGE_SIZE));
+        }
+        if (query.minAge() != null && query.maxAge() != null && query.minAge() > query.maxAge()) {
+            return Mono.error(new InvalidPageRequestException("minAge must not be greater than maxAge"));
+        }
+        Mono<List<StudentDTO>> students;
+        if (!query.isFiltered() && query.sort() == StudentSort.ID) {
+            students = Mono.fromCallable(() -> after == null ? 0 : StudentCursor.decode(after))
+                    .flatMap(afterId -> studentRepository.findDTOsByIdGreaterThan(afterId, limit + 1).collectList());
+        } else {
+            students = Mono.fromCallable(() -> Optional.ofNullable(after).map(cursor -> StudentCursor.decode(cursor, query.sort())))
+                    .flatMap(last -> studentRepository.findDTOs(query, last.orElse(null), limit + 1).collectList());
+        }
+        return students.map(rows -> {
+            if (rows.size() <= limit) {
+                return new StudentPage(rows, null);
+            }
+            List<StudentDTO> page = rows.subList(0, limit);
+            return new StudentPage(page, StudentCursor.encode(query.sort(), page.get(limit - 1)));
+        });
+    }
+
+    public Mono<StudentStats> getStudentStats(int bucketSize) {
+        if (bucketSize < 1 || bucketSize > StudentServiceImpl.MAX_AGE_BUCKET_SIZE) {
+            return Mono.error(new InvalidPageRequestException("bucketSize must be between 1 and " + StudentServiceImpl.MAX_AGE_BUCKET_SIZE));
+        }
+        return studentRepository.countByAge().collectList().map(ageCounts -> StudentStats.of(ageCounts, bucketSize));
+    }
+
+    public Mono<StudentDTO> addNewStudent(String name, int age) {
+        return studentRepository.insert(name, age)
+                .doOnNext(student -> eventPublisher.publishEvent(new StudentCreatedEvent(student)));
+    }
+
+    public Mono<Void> deleteStudentById(int id) {
+        return studentRepository.deleteStudentById(id)
+                .flatMap(deleted -> deleted == 0
+                        ? Mono.<Void>error(new NoSuchIdException(id))
+                        : Mono.fromRunnable(() -> eventPublisher.publishEvent(new StudentDeletedEvent(id))));
+    }
+}
@@ -1,10 +1,22 @@
 package com.khanivorous.studentservice.student.services;
 
 import com.khanivorous.studentservice.student.entities.Student;
+import com.khanivorous.studentservice.student.model.StudentBatchResult;
+import com.khanivorous.studentservice.student.model.StudentBulkDeleteResult;
+import com.khanivorous.studentservice.student.model.StudentChanges;
+import com.khanivorous.studentservice.student.model.StudentCreationDTO;
+import com.khanivorous.studentservice.student.model.StudentCreationResult;
 import com.khanivorous.studentservice.student.model.StudentDTO;
+import com.khanivorous.studentservice.student.model.StudentMatch;
+import com.khanivorous.studentservice.student.model.StudentPage;
+import com.khanivorous.studentservice.student.model.StudentQuery;
+import com.khanivorous.studentservice.student.model.StudentStats;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 @Service
 public interface StudentService {
@@ -13,8 +25,28 @@ public interface StudentService {
 
     List<StudentDTO> getAllStudents();
 
+    StudentPage getStudentPage(String after, int limit);
+
+    StudentPage getStudentPage(StudentQuery query, String after, int limit);
+
+    StudentStats getStudentStats(int bucketSize);
+
+    StudentChanges getChangesSince(String since, int limit);
+
+    List<StudentMatch> searchStudents(String query, int limit);
+
+    void exportStudents(Consumer<StudentDTO> consumer);
+
     StudentDTO addNewStudent(String name, int age);
 
+    StudentCreationResult addNewStudent(String name, int age, String idempotencyKey);
+
+    StudentBatchResult addNewStudents(Map<Integer, StudentCreationDTO> studentsByIndex);
+
+    StudentDTO updateStudent(int id, String name, Integer age, Long expectedVersion);
+
     void deleteStudentById(int id);
 
+    StudentBulkDeleteResult deleteStudentsByIds(Collection<Integer> ids);
+
 }
@@ -1,47 +1,390 @@
 package com.khanivorous.studentservice.student.services;
 
+import com.khanivorous.studentservice.student.ChangeTokenExpiredException;
+import com.khanivorous.studentservice.student.InvalidPageRequestException;
 import com.khanivorous.studentservice.student.NoSuchIdException;
+import com.khanivorous.studentservice.student.ShardingUnsupportedException;
+import com.khanivorous.studentservice.student.config.ReplicaRoutingDataSource;
+import com.khanivorous.studentservice.student.config.StudentCacheConfig;
 import com.khanivorous.studentservice.student.entities.Student;
+import com.khanivorous.studentservice.student.events.StudentCreatedEvent;
+import com.khanivorous.studentservice.student.events.StudentDeletedEvent;
+import com.khanivorous.studentservice.student.events.StudentRecentChanges;
+import com.khanivorous.studentservice.student.events.StudentUpdatedEvent;
+import com.khanivorous.studentservice.student.idempotency.StudentIdempotencyStore;
 import com.khanivorous.studentservice.student.mapper.StudentMapper;
+import com.khanivorous.studentservice.student.model.StudentBatchError;
+import com.khanivorous.studentservice.student.model.StudentBatchResult;
+import com.khanivorous.studentservice.student.model.StudentBulkDeleteResult;
+import com.khanivorous.studentservice.student.model.StudentAgeCount;
+import com.khanivorous.studentservice.student.model.StudentChange;
+import com.khanivorous.studentservice.student.model.StudentChangeToken;
+import com.khanivorous.studentservice.student.model.StudentChanges;
+import com.khanivorous.studentservice.student.model.StudentCreationDTO;
+import com.khanivorous.studentservice.student.model.StudentCreationResult;
+import com.khanivorous.studentservice.student.model.StudentCursor;
 import com.khanivorous.studentservice.student.model.StudentDTO;
+import com.khanivorous.studentservice.student.model.StudentMatch;
+import com.khanivorous.studentservice.student.model.StudentPage;
+import com.khanivorous.studentservice.student.model.StudentQuery;
+import com.khanivorous.studentservice.student.model.StudentSort;
+import com.khanivorous.studentservice.student.model.StudentStats;
 import com.khanivorous.studentservice.student.repository.StudentRepository;
+import com.khanivorous.studentservice.student.search.StudentNameIndex;
+import com.khanivorous.studentservice.student.sharding.StudentShards;
+import com.khanivorous.studentservice.student.snapshot.StudentSnapshot;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 @Service
+@Profile("!reactive")
 public class StudentServiceImpl implements StudentService {
 
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    public static final int BATCH_CHUNK_SIZE = 500;
+
+    public static final int DELETE_CHUNK_SIZE = 1000;
+
+    public static final int MAX_SEARCH_RESULTS = 100;
+
+    public static final int MAX_AGE_BUCKET_SIZE = 100;
+
     private StudentRepository studentRepository;
 
     private StudentMapper studentMapper;
 
-    public StudentServiceImpl(StudentRepository studentRepository, StudentMapper studentMapper) {
+    private ApplicationEventPublisher eventPublisher;
+
+    private StudentNameIndex studentNameIndex;
+
+    private StudentIdempotencyStore studentIdempotencyStore;
+
+    private StudentShards studentShards;
+
+    private StudentSnapshot studentSnapshot;
+
+    private StudentRecentChanges studentRecentChanges;
+
+    public StudentServiceImpl(StudentRepository studentRepository, StudentMapper studentMapper, ApplicationEventPublisher eventPublisher,
+                              StudentNameIndex studentNameIndex, StudentIdempotencyStore studentIdempotencyStore, StudentShards studentShards,
+                              Optional<StudentSnapshot> studentSnapshot, StudentRecentChanges studentRecentChanges) {
         this.studentRepository = studentRepository;
         this.studentMapper = studentMapper;
+        this.eventPublisher = eventPublisher;
+        this.studentNameIndex = studentNameIndex;
+        this.studentIdempotencyStore = studentIdempotencyStore;
+        this.studentShards = studentShards;
+        this.studentSnapshot = studentSnapshot.orElse(null);
+        this.studentRecentChanges = studentRecentChanges;
     }
 
+    @Cacheable(cacheNames = StudentCacheConfig.STUDENT_CACHE, key = "#id", sync = true)
+    @Transactional(readOnly = true)
     public StudentDTO getStudentById(int id) {
-        Student student = studentRepository.findById(id).orElseThrow(() -> new NoSuchIdException(id));
-        return studentMapper.toDTO(student);
+        Supplier<Optional<StudentDTO>> read = () -> studentShards.onShardOf(id, () -> studentRepository.findDTOById(id));
+        // every client is served from the cache, so a student that a replica may not show the last change of yet is
+        // read from the primary
+        return (studentRecentChanges.changedRecently(id) ? ReplicaRoutingDataSource.readFromPrimary(read) : read.get())
+                .orElseThrow(() -> new NoSuchIdException(id));
     }
 
+    @Transactional(readOnly = true)
     public List<StudentDTO> getAllStudents() {
-        return studentMapper.toDTOList(studentRepository.findAll());
+        if (studentSnapshot != null) {
+            return studentSnapshot.all();
+        }
+        return StudentShards.merge(studentShards.scatter(studentRepository::findAllDTOs), StudentSort.ID.comparator(), Integer.MAX_VALUE);
+    }
+
+    @Transactional(readOnly = true)
+    public StudentPage getStudentPage(String after, int limit) {
+        return getStudentPage(StudentQuery.ALL, after, limit);
+    }
+
+    @Transactional(readOnly = true)
+    public StudentPage getStudentPage(StudentQuery query, String after, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new InvalidPageRequestException("limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        if (query.minAge() != null && query.maxAge() != null && query.minAge() > query.maxAge()) {
+            throw new InvalidPageRequestException("minAge must not be greater than maxAge");
+        }
+        List<Slice<StudentDTO>> slices;
+        if (!query.isFiltered() && query.sort() == StudentSort.ID) {
+            int afterId = after == null ? 0 : StudentCursor.decode(after);
+            if (studentSnapshot != null) {
+                StudentSnapshot.Rows rows = studentSnapshot.page(afterId, limit);
+                return new StudentPage(rows, rows.hasMore() ? StudentCursor.encode(rows.lastId()) : null);
+            }
+            slices = studentShards.scatter(() -> studentRepository.findDTOsByIdGreaterThan(afterId, PageRequest.ofSize(limit)));
+        } else {
+            StudentDTO afterStudent = after == null ? null : StudentCursor.decode(after, query.sort());
+            slices = studentShards.scatter(() -> studentRepository.findDTOs(query, afterStudent, limit));
+        }
+        // every shard reads a whole page, so the first page of the merge is complete
+        List<StudentDTO> students = StudentShards.merge(slices.stream().map(Slice::getContent).toList(), query.sort().comparator(), limit);
+        boolean hasNext = slices.stream().anyMatch(Slice::hasNext)
+                || slices.stream().mapToInt(Slice::getNumberOfElements).sum() > students.size();
+        String nextCursor = hasNext ? StudentCursor.encode(query.sort(), students.get(students.size() - 1)) : null;
+        return new StudentPage(students, nextCursor);
+    }
+
+    @Transactional(readOnly = true)
+    public StudentStats getStudentStats(int bucketSize) {
+        if (bucketSize < 1 || bucketSize > MAX_AGE_BUCKET_SIZE) {
+            throw new InvalidPageRequestException("bucketSize must be between 1 and " + MAX_AGE_BUCKET_SIZE);
+        }
+        List<List<StudentAgeCount>> counts = studentShards.scatter(studentRepository::countByAge);
+        if (counts.size() == 1) {
+            return StudentStats.of(counts.get(0), bucketSize);
+        }
+        Map<Integer, Long> byAge = new TreeMap<>(Comparator.nullsFirst(Comparator.<Integer>naturalOrder()));
+        counts.forEach(shard -> shard.forEach(count -> byAge.merge(count.age(), count.count(), Long::sum)));
+        List<StudentAgeCount> merged = new ArrayList<>(byAge.size());
+        byAge.forEach((age, count) -> merged.add(new StudentAgeCount(age, count)));
+        return StudentStats.of(merged, bucketSize);
+    }
+
+    /**
+     * Reads what changed after the token, in the order the changes were committed. The last committed change sequence
+     * number is read first, so a client that has read everything up to it is given a token past the numbers that were
+     * taken by writes that never committed.
+     *
+     * @throws ChangeTokenExpiredException when deletions after the token have already been compacted away
+     * @throws ShardingUnsupportedException when students are sharded, each shard numbers its own changes
+     */
+    @Transactional(readOnly = true)
+    public StudentChanges getChangesSince(String since, int limit) {
+        if (studentShards.isSharded()) {
+            throw new ShardingUnsupportedException("GET /students/changes");
+        }
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new InvalidPageRequestException("limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        StudentChangeToken position = since == null ? StudentChangeToken.START : StudentChangeToken.decode(since);
+        long lastChangeSeq = studentRepository.lastChangeSeq();
+        List<StudentChange> changes = studentRepository.findChangesAfter(position.changeSeq(), position.id(), lastChangeSeq, limit + 1);
+        // checked after reading, so tombstones compacted while they were being read are not missed
+        if (since != null && position.changeSeq() < studentRepository.compactedChangeSeq()) {
+            throw new ChangeTokenExpiredException(since);
+        }
+        boolean hasMore = changes.size() > limit;
+        List<StudentDTO> changed = new ArrayList<>();
+        List<Integer> deleted = new ArrayList<>();
+        StudentChangeToken next = position;
+        for (StudentChange change : hasMore ? changes.subList(0, limit) : changes) {
+            if (change.deleted()) {
+                deleted.add(change.id());
+            } else {
+                changed.add(change.student());
+            }
+            next = new StudentChangeToken(change.changeSeq(), change.id());
+        }
+        if (!hasMore && lastChangeSeq > next.changeSeq()) {
+            next = new StudentChangeToken(lastChangeSeq, 0);
+        }
+        return new StudentChanges(changed, deleted, next.encode(), hasMore);
+    }
+
+    public List<StudentMatch> searchStudents(String query, int limit) {
+        if (limit < 1 || limit > MAX_SEARCH_RESULTS) {
+            throw new InvalidPageRequestException("limit must be between 1 and " + MAX_SEARCH_RESULTS);
+        }
+        return studentNameIndex.search(query, limit);
+    }
+
+    /**
+     * Streams every student, in id order unless students are sharded, then shard by shard.
+     */
+    public void exportStudents(Consumer<StudentDTO> consumer) {
+        studentShards.forEachShard(() -> studentRepository.forEachStudent(consumer));
     }
 
     public StudentDTO addNewStudent(String name, int age) {
+        StudentDTO student = studentShards.isSharded()
+                ? insertStudent(studentShards.nextId(), name, age)
+                : saveStudent(name, age);
+        eventPublisher.publishEvent(new StudentCreatedEvent(student));
+        return student;
+    }
+
+    /**
+     * Creates the student only if no student was created before with the same idempotency key, the student and the key
+     * are committed together.
+     */
+    public StudentCreationResult addNewStudent(String name, int age, String idempotencyKey) {
+        if (idempotencyKey.isEmpty() || idempotencyKey.length() > StudentIdempotencyStore.MAX_KEY_LENGTH) {
+            throw new InvalidPageRequestException("Idempotency-Key must be between 1 and " + StudentIdempotencyStore.MAX_KEY_LENGTH + " characters");
+        }
+        // both ways publish the created event, which is what puts the student in the cache, so calling addNewStudent
+        // past the proxy misses nothing
+        if (!studentShards.isSharded()) {
+            return studentIdempotencyStore.createOnce(idempotencyKey, name, age, () -> addNewStudent(name, age));
+        }
+        // the key is stored on the home shard, the student goes there too so both commit together
+        return studentIdempotencyStore.createOnce(idempotencyKey, name, age, () -> {
+            StudentDTO student = insertStudent(studentShards.nextId(StudentShards.HOME_SHARD), name, age);
+            eventPublisher.publishEvent(new StudentCreatedEvent(student));
+            return student;
+        });
+    }
+
+    public StudentBatchResult addNewStudents(Map<Integer, StudentCreationDTO> studentsByIndex) {
+        List<StudentDTO> created = new ArrayList<>(studentsByIndex.size());
+        List<StudentBatchError> errors = new ArrayList<>();
+        List<Map.Entry<Integer, StudentCreationDTO>> entries = new ArrayList<>(studentsByIndex.entrySet());
+        for (int from = 0; from < entries.size(); from += BATCH_CHUNK_SIZE) {
+            List<Map.Entry<Integer, StudentCreationDTO>> chunk = entries.subList(from, Math.min(from + BATCH_CHUNK_SIZE, entries.size()));
+            if (studentShards.isSharded()) {
+                insertStudentsOnShards(chunk, created, errors);
+                continue;
+            }
+            List<Student> newStudents = new ArrayList<>(chunk.size());
+            for (Map.Entry<Integer, StudentCreationDTO> entry : chunk) {
+                Student newStudent = new Student();
+                newStudent.setName(entry.getValue().name());
+                newStudent.setAge(entry.getValue().age());
+                newStudents.add(newStudent);
+            }
+            List<StudentDTO> savedStudents;
+            try {
+                savedStudents = studentMapper.toDTOList(studentRepository.saveAll(newStudents));
+            } catch (DataAccessException ex) {
+                for (Map.Entry<Integer, StudentCreationDTO> entry : chunk) {
+                    errors.add(new StudentBatchError(entry.getKey(), Map.of("student", "could not be saved")));
+                }
+                continue;
+            }
+            savedStudents.forEach(student -> eventPublisher.publishEvent(new StudentCreatedEvent(student)));
+            created.addAll(savedStudents);
+        }
+        return new StudentBatchResult(created, errors);
+    }
+
+    /**
+     * Updates the given fields in one update statement without reading the student first. The student is only read
+     * back when the update does not already say what it looks like now, or to tell a missing student from a conflict.
+     *
+     * @throws ObjectOptimisticLockingFailureException when the student is no longer at the expected version
+     */
+    @Transactional
+    public StudentDTO updateStudent(int id, String name, Integer age, Long expectedVersion) {
+        if (name == null && age == null) {
+            throw new InvalidPageRequestException("name or age must be given");
+        }
+        StudentDTO student = studentShards.onShardOf(id, () -> updateOnShard(id, name, age, expectedVersion));
+        eventPublisher.publishEvent(new StudentUpdatedEvent(student));
+        return student;
+    }
+
+    private StudentDTO updateOnShard(int id, String name, Integer age, Long expectedVersion) {
+        if (studentRepository.updateStudent(id, name, age, expectedVersion) == 0) {
+            if (expectedVersion != null && studentRepository.existsById(id)) {
+                throw new ObjectOptimisticLockingFailureException(Student.class, id);
+            }
+            throw new NoSuchIdException(id);
+        }
+        return name != null && age != null && expectedVersion != null
+                ? new StudentDTO(id, name, age, expectedVersion + 1)
+                : studentRepository.findDTOById(id).orElseThrow(() -> new NoSuchIdException(id));
+    }
+
+    public void deleteStudentById(int id) {
+        if (studentShards.onShardOf(id, () -> studentRepository.deleteStudentById(id)) == 0) {
+            throw new NoSuchIdException(id);
+        }
+        eventPublisher.publishEvent(new StudentDeletedEvent(id));
+    }
+
+    public StudentBulkDeleteResult deleteStudentsByIds(Collection<Integer> ids) {
+        List<Integer> distinctIds = ids.stream().filter(Objects::nonNull).distinct().toList();
+        Set<Integer> deleted = new HashSet<>();
+        for (Map.Entry<Integer, List<Integer>> shard : studentShards.groupByShard(distinctIds, Integer::intValue).entrySet()) {
+            List<Integer> shardIds = shard.getValue();
+            for (int from = 0; from < shardIds.size(); from += DELETE_CHUNK_SIZE) {
+                List<Integer> chunk = shardIds.subList(from, Math.min(from + DELETE_CHUNK_SIZE, shardIds.size()));
+                deleted.addAll(studentShards.onShard(shard.getKey(), () -> studentRepository.deleteExistingByIdIn(chunk)));
+            }
+        }
+        List<Integer> deletedIds = new ArrayList<>(deleted.size());
+        List<Integer> missingIds = new ArrayList<>();
+        for (Integer id : distinctIds) {
+            if (deleted.contains(id)) {
+                deletedIds.add(id);
+                eventPublisher.publishEvent(new StudentDeletedEvent(id));
+            } else {
+                missingIds.add(id);
+            }
+        }
+        return new StudentBulkDeleteResult(deletedIds, missingIds);
+    }
+
+    private StudentDTO saveStudent(String name, int age) {
         Student newStudent = new Student();
         newStudent.setName(name);
         newStudent.setAge(age);
-        return  studentMapper.toDTO(studentRepository.save(newStudent));
+        return studentMapper.toDTO(studentRepository.save(newStudent));
     }
 
-    public void deleteStudentById(int id) {
-        if (studentRepository.existsById(id)) {
-            studentRepository.deleteById(id);
-        } else {
-            throw new NoSuchIdException(id);
+    /**
+     * Inserts a student whose id has already been allocated, on the shard the id names.
+     */
+    private StudentDTO insertStudent(int id, String name, int age) {
+        StudentDTO student = new StudentDTO(id, name, age, 0L);
+        studentShards.onShardOf(id, () -> {
+            studentRepository.insertAll(List.of(student));
+            return student;
+        });
+        return student;
+    }
+
+    /**
+     * Inserts one chunk of a batch with one statement batch per shard. A shard that fails the insert fails only the
+     * students of the chunk that were to be stored on it.
+     */
+    private void insertStudentsOnShards(List<Map.Entry<Integer, StudentCreationDTO>> chunk, List<StudentDTO> created,
+                                        List<StudentBatchError> errors) {
+        Map<Integer, StudentDTO> studentsByIndex = new TreeMap<>();
+        for (Map.Entry<Integer, StudentCreationDTO> entry : chunk) {
+            studentsByIndex.put(entry.getKey(), new StudentDTO(studentShards.nextId(), entry.getValue().name(), entry.getValue().age(), 0L));
+        }
+        for (Map.Entry<Integer, List<Map.Entry<Integer, StudentDTO>>> shard
+                : studentShards.groupByShard(studentsByIndex.entrySet(), entry -> entry.getValue().id()).entrySet()) {
+            List<StudentDTO> students = shard.getValue().stream().map(Map.Entry::getValue).toList();
+            try {
+                studentShards.onShard(shard.getKey(), () -> {
+                    studentRepository.insertAll(students);
+                    return students;
+                });
+            } catch (DataAccessException ex) {
+                for (Map.Entry<Integer, StudentDTO> entry : shard.getValue()) {
+                    errors.add(new StudentBatchError(entry.getKey(), Map.of("student", "could not be saved")));
+                }
+                continue;
+            }
+            students.forEach(student -> eventPublisher.publishEvent(new StudentCreatedEvent(student)));
+            created.addAll(students);
         }
     }
 }
@@ -0,0 +1,124 @@
+package com.khanivorous.studentservice.student.sharding;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.jpa.boot.internal.EntityManagerFactoryBuilderImpl;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.hibernate.tool.schema.spi.SchemaManagementToolCoordinator;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Spreads the students over several databases when {@code student.shards.urls} lists the shards besides the home
+ * shard, which is the database configured by {@code spring.datasource}. The home shard also keeps the id sequence and
+ * the idempotency keys. Each shard has its own pool and gets the same schema as the home shard when the application
+ * starts. The shards use the home shard's credentials unless they are given their own.
+ */
+@Configuration
+@Profile("!reactive")
+@ConditionalOnProperty(name = "student.shards.urls")
+public class StudentShardConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource homeShardDataSource(DataSourceProperties properties) {
+        HikariDataSource home = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        home.setPoolName("shard-0");
+        return home;
+    }
+
+    @Bean(destroyMethod = "close")
+    public StudentShardRoutingDataSource studentShardRoutingDataSource(@Qualifier("homeShardDataSource") DataSource homeShardDataSource,
+                                                                       DataSourceProperties properties,
+                                                                       @Value("${student.shards.urls}") List<String> urls,
+                                                                       @Value("${student.shards.username:}") String username,
+                                                                       @Value("${student.shards.password:}") String password,
+                                                                       @Value("${student.shards.pool-size:10}") int poolSize,
+                                                                       @Value("${student.datasource.replicas.urls:}") String replicaUrls) {
+        if (StringUtils.hasText(replicaUrls)) {
+            throw new IllegalStateException("student.shards.urls and student.datasource.replicas.urls cannot be combined");
+        }
+        List<DataSource> shards = new ArrayList<>();
+        shards.add(homeShardDataSource);
+        for (String url : urls) {
+            HikariDataSource shard = new HikariDataSource();
+            shard.setPoolName("shard-" + shards.size());
+            shard.setJdbcUrl(url.trim());
+            shard.setUsername(StringUtils.hasText(username) ? username : properties.determineUsername());
+            shard.setPassword(StringUtils.hasText(username) ? password : properties.determinePassword());
+            shard.setMaximumPoolSize(poolSize);
+            shards.add(shard);
+        }
+        return new StudentShardRoutingDataSource(shards);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(StudentShardRoutingDataSource studentShardRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(studentShardRoutingDataSource);
+    }
+
+    /**
+     * Binds the pools of the shards other than the home shard, whose pool is a bean Boot binds itself.
+     */
+    @Bean
+    public MeterBinder shardMetrics(StudentShardRoutingDataSource studentShardRoutingDataSource) {
+        return registry -> {
+            List<DataSource> shards = studentShardRoutingDataSource.shardDataSources();
+            for (DataSource shard : shards.subList(1, shards.size())) {
+                if (shard instanceof HikariDataSource hikari) {
+                    hikari.setMetricRegistry(registry);
+                }
+            }
+        };
+    }
+
+    /**
+     * Hibernate only manages the schema of the database it starts on, the home shard. This applies the same
+     * {@code spring.jpa.hibernate.ddl-auto} action to every other shard while the entity manager factory is built.
+     */
+    @Bean
+    public HibernatePropertiesCustomizer shardSchemaCustomizer(StudentShardRoutingDataSource studentShardRoutingDataSource) {
+        Integrator shardSchema = new Integrator() {
+            @Override
+            public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+                Map<?, ?> settings = serviceRegistry.getService(ConfigurationService.class).getSettings();
+                for (int shard = 1; shard < studentShardRoutingDataSource.shardCount(); shard++) {
+                    Integer previous = StudentShardRoutingDataSource.bind(shard);
+                    try {
+                        // create-drop only drops the home shard on shutdown
+                        SchemaManagementToolCoordinator.process(metadata, serviceRegistry, settings, action -> {
+                        });
+                    } finally {
+                        StudentShardRoutingDataSource.bind(previous);
+                    }
+                }
+            }
+
+            @Override
+            public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+            }
+        };
+        return properties -> properties.put(EntityManagerFactoryBuilderImpl.INTEGRATOR_PROVIDER, (IntegratorProvider) () -> List.of(shardSchema));
+    }
+}
@@ -0,0 +1,79 @@
+package com.khanivorous.studentservice.student.sharding;
+
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Hands out connections from the shard bound to the current thread, or from the home shard when none is bound.
+ * <p>
+ * Like the replica routing this has to sit behind a {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy},
+ * so a transaction takes its connection at its first statement, by which time {@link StudentShards} has bound the
+ * shard. A transaction keeps the connection it took, binding another shard afterwards does not move it.
+ */
+public class StudentShardRoutingDataSource extends AbstractDataSource implements AutoCloseable {
+
+    private static final ThreadLocal<Integer> boundShard = new ThreadLocal<>();
+
+    private final List<DataSource> shards;
+
+    public StudentShardRoutingDataSource(List<DataSource> shards) {
+        if (shards.isEmpty() || shards.size() > StudentShards.MAX_SHARDS) {
+            throw new IllegalArgumentException("between 1 and " + StudentShards.MAX_SHARDS + " shards are supported, got " + shards.size());
+        }
+        this.shards = List.copyOf(shards);
+    }
+
+    /**
+     * Binds the shard to the current thread, or unbinds it when null.
+     *
+     * @return the shard that was bound before, to be bound again afterwards
+     */
+    static Integer bind(Integer shard) {
+        Integer previous = boundShard.get();
+        if (shard == null) {
+            boundShard.remove();
+        } else {
+            boundShard.set(shard);
+        }
+        return previous;
+    }
+
+    public int shardCount() {
+        return shards.size();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return currentShard().getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return currentShard().getConnection(username, password);
+    }
+
+    List<DataSource> shardDataSources() {
+        return shards;
+    }
+
+    /**
+     * Closes the pools of the shards other than the home shard, which is left to its owner.
+     */
+    @Override
+    public void close() throws Exception {
+        for (DataSource shard : shards.subList(1, shards.size())) {
+            if (shard instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    private DataSource currentShard() {
+        Integer shard = boundShard.get();
+        return shards.get(shard == null ? StudentShards.HOME_SHARD : shard);
+    }
+}
@@ -0,0 +1,246 @@
+package com.khanivorous.studentservice.student.sharding;
+
+import com.khanivorous.studentservice.student.NoSuchIdException;
+import com.khanivorous.studentservice.student.repository.StudentRepository;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Routes student reads and writes to the shard that holds them, enabled by listing more shards in
+ * {@code student.shards.urls}, see {@link StudentShardConfig}. Without it there is one shard and every method simply
+ * runs what it is given.
+ * <p>
+ * A sharded student id carries its shard in its lowest {@value #SHARD_BITS} bits, above them is the next value of the
+ * id sequence kept on the home shard, so ids stay unique across shards and a student never moves. Operations on one id
+ * go straight to its shard, reads of every student are sent to all shards at once and their sorted results merged.
+ * The shard has to be chosen before the transaction it runs in takes its connection, so these methods are called
+ * before any statement of the transaction, or outside one.
+ */
+@Component
+@Profile("!reactive")
+public class StudentShards implements DisposableBean {
+
+    public static final int MAX_SHARDS = 16;
+
+    public static final int HOME_SHARD = 0;
+
+    private static final int SHARD_BITS = 4;
+
+    private static final long MAX_SEQUENCE_VALUE = Integer.MAX_VALUE >> SHARD_BITS;
+
+    private final StudentRepository studentRepository;
+
+    private final int shardCount;
+
+    private final TransactionTemplate readOnlyTransaction;
+
+    private final ExecutorService scatterExecutor;
+
+    public StudentShards(StudentRepository studentRepository, Optional<StudentShardRoutingDataSource> routing,
+                         Optional<PlatformTransactionManager> transactionManager,
+                         @Value("${student.shards.scatter-threads:16}") int scatterThreads) {
+        this.studentRepository = studentRepository;
+        this.shardCount = routing.map(StudentShardRoutingDataSource::shardCount).orElse(1);
+        if (shardCount > 1) {
+            this.readOnlyTransaction = new TransactionTemplate(transactionManager.orElseThrow());
+            this.readOnlyTransaction.setReadOnly(true);
+            AtomicInteger threads = new AtomicInteger();
+            this.scatterExecutor = Executors.newFixedThreadPool(scatterThreads, task -> {
+                Thread thread = new Thread(task, "student-shard-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            this.readOnlyTransaction = null;
+            this.scatterExecutor = null;
+        }
+    }
+
+    public boolean isSharded() {
+        return shardCount > 1;
+    }
+
+    public int shardCount() {
+        return shardCount;
+    }
+
+    /**
+     * The shard a student with this id lives on, which may be one that is not configured for an id that was never
+     * handed out.
+     */
+    public int shardOf(int id) {
+        return isSharded() ? id & (MAX_SHARDS - 1) : HOME_SHARD;
+    }
+
+    /**
+     * Allocates the id of a new student and with it the shard it is stored on, spread evenly over the shards.
+     */
+    public int nextId() {
+        if (!isSharded()) {
+            return studentRepository.nextId();
+        }
+        int sequenceValue = sequenceValue();
+        return encode(sequenceValue, sequenceValue % shardCount);
+    }
+
+    /**
+     * Allocates the id of a new student stored on the given shard.
+     */
+    public int nextId(int shard) {
+        if (!isSharded()) {
+            return studentRepository.nextId();
+        }
+        return encode(sequenceValue(), shard);
+    }
+
+    /**
+     * Runs the action against the shard of the student with this id.
+     *
+     * @throws NoSuchIdException when the id names a shard that does not exist, so no such student can either
+     */
+    public <T> T onShardOf(int id, Supplier<T> action) {
+        int shard = shardOf(id);
+        if (shard >= shardCount) {
+            throw new NoSuchIdException(id);
+        }
+        return onShard(shard, action);
+    }
+
+    public <T> T onShard(int shard, Supplier<T> action) {
+        if (!isSharded()) {
+            return action.get();
+        }
+        Integer previous = StudentShardRoutingDataSource.bind(shard);
+        try {
+            return action.get();
+        } finally {
+            StudentShardRoutingDataSource.bind(previous);
+        }
+    }
+
+    /**
+     * Runs the read on every shard at the same time, each in its own read-only transaction on its own thread.
+     *
+     * @return the result of each shard, in shard order
+     */
+    public <T> List<T> scatter(Supplier<T> read) {
+        if (!isSharded()) {
+            return List.of(read.get());
+        }
+        List<CompletableFuture<T>> results = new ArrayList<>(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            int target = shard;
+            results.add(CompletableFuture.supplyAsync(
+                    () -> onShard(target, () -> readOnlyTransaction.execute(status -> read.get())), scatterExecutor));
+        }
+        try {
+            return results.stream().map(CompletableFuture::join).toList();
+        } catch (CompletionException ex) {
+            throw ex.getCause() instanceof RuntimeException cause ? cause : ex;
+        }
+    }
+
+    /**
+     * Runs the action on each shard in turn, for work that streams what it reads or writes on every shard.
+     *
+     * @return the result of each shard, in shard order
+     */
+    public <T> List<T> onEachShard(Supplier<T> action) {
+        List<T> results = new ArrayList<>(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            results.add(onShard(shard, action));
+        }
+        return results;
+    }
+
+    public void forEachShard(Runnable action) {
+        onEachShard(() -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * Groups the items by the shard of their student id, in shard order. Ids naming a shard that does not exist are
+     * left out, no such student can exist.
+     */
+    public <T> Map<Integer, List<T>> groupByShard(Collection<T> items, ToIntFunction<T> id) {
+        Map<Integer, List<T>> byShard = new TreeMap<>();
+        for (T item : items) {
+            int shard = shardOf(id.applyAsInt(item));
+            if (shard < shardCount) {
+                byShard.computeIfAbsent(shard, key -> new ArrayList<>()).add(item);
+            }
+        }
+        return byShard;
+    }
+
+    /**
+     * Merges lists that are each sorted in the given order into the first {@code limit} elements in that order.
+     */
+    public static <T> List<T> merge(List<List<T>> sorted, Comparator<? super T> order, int limit) {
+        if (sorted.size() == 1) {
+            List<T> only = sorted.get(0);
+            return only.size() > limit ? only.subList(0, limit) : only;
+        }
+        // each entry is a list and the position of its next element
+        PriorityQueue<int[]> heads = new PriorityQueue<>(sorted.size(),
+                (a, b) -> order.compare(sorted.get(a[0]).get(a[1]), sorted.get(b[0]).get(b[1])));
+        int total = 0;
+        for (int i = 0; i < sorted.size(); i++) {
+            if (!sorted.get(i).isEmpty()) {
+                heads.add(new int[]{i, 0});
+                total += sorted.get(i).size();
+            }
+        }
+        List<T> merged = new ArrayList<>(Math.min(total, limit));
+        while (merged.size() < limit && !heads.isEmpty()) {
+            int[] head = heads.poll();
+            List<T> list = sorted.get(head[0]);
+            merged.add(list.get(head[1]));
+            if (++head[1] < list.size()) {
+                heads.add(head);
+            }
+        }
+        return merged;
+    }
+
+    @Override
+    public void destroy() {
+        if (scatterExecutor != null) {
+            scatterExecutor.shutdown();
+        }
+    }
+
+    private int sequenceValue() {
+        int sequenceValue = onShard(HOME_SHARD, studentRepository::nextId);
+        if (sequenceValue > MAX_SEQUENCE_VALUE) {
+            throw new IllegalStateException("student ids are exhausted, the id sequence passed " + MAX_SEQUENCE_VALUE);
+        }
+        return sequenceValue;
+    }
+
+    private static int encode(int sequenceValue, int shard) {
+        return sequenceValue << SHARD_BITS | shard;
+    }
+}
@@ -0,0 +1,630 @@
+package com.khanivorous.studentservice.student.snapshot;
+
+import com.khanivorous.studentservice.student.events.StudentCreatedEvent;
+import com.khanivorous.studentservice.student.events.StudentDeletedEvent;
+import com.khanivorous.studentservice.student.events.StudentUpdatedEvent;
+import com.khanivorous.studentservice.student.events.StudentVersion;
+import com.khanivorous.studentservice.student.model.StudentDTO;
+import com.khanivorous.studentservice.student.repository.StudentRepository;
+import com.khanivorous.studentservice.student.sharding.StudentShards;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.RandomAccess;
+
+/**
+ * Every student held in memory in columns, so the unfiltered list reads are served without the database. Enabled with
+ * {@code student.snapshot.enabled}.
+ * <p>
+ * Students are kept in id order in segments of up to {@code student.snapshot.segment-size} students. A segment holds an
+ * {@code int[]} of ids, an {@code int[]} of ages, a {@code long[]} of versions and the names packed into one UTF-8 byte
+ * array, with the offset each name ends at. Segments are never changed. A write copies the one segment it touches and publishes a new array of
+ * segments, so a read keeps the segments it started with and takes no lock. A page is a {@link Rows} view over them,
+ * which the JSON converter writes straight from the arrays without creating a {@code StudentDTO} per student.
+ * <p>
+ * Like the name index, the snapshot is built from the table when the application starts and follows the created,
+ * updated and deleted events after each commit, so a page can trail a commit by the time its event takes to apply.
+ */
+@Component
+@Profile("!reactive")
+@ConditionalOnProperty(name = "student.snapshot.enabled", havingValue = "true")
+public class StudentSnapshot implements SmartInitializingSingleton {
+
+    /**
+     * Passed to a {@link RowWriter} for a student without an age.
+     */
+    public static final int NO_AGE = Integer.MIN_VALUE;
+
+    private static final Segment[] EMPTY = new Segment[0];
+
+    private final StudentRepository studentRepository;
+
+    private final StudentShards studentShards;
+
+    private final int segmentSize;
+
+    private volatile Segment[] segments = EMPTY;
+
+    // writes that arrive while the table is read, applied once it has been, guarded by this
+    private List<Runnable> whileBuilding;
+
+    public StudentSnapshot(StudentRepository studentRepository, StudentShards studentShards, MeterRegistry meterRegistry,
+                           @Value("${student.snapshot.segment-size:1024}") int segmentSize) {
+        this.studentRepository = studentRepository;
+        this.studentShards = studentShards;
+        this.segmentSize = segmentSize;
+        Gauge.builder("student.snapshot.students", this, StudentSnapshot::size)
+                .description("students held in the snapshot")
+                .register(meterRegistry);
+        Gauge.builder("student.snapshot.memory", this, StudentSnapshot::footprint)
+                .description("approximate heap held by the arrays of the snapshot")
+                .baseUnit(BaseUnits.BYTES)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        rebuild();
+    }
+
+    /**
+     * Reads every student from the table into new segments. Writes committed meanwhile are applied afterwards.
+     */
+    public void rebuild() {
+        synchronized (this) {
+            whileBuilding = new ArrayList<>();
+        }
+        List<List<Segment>> shards = studentShards.onEachShard(() -> {
+            List<Segment> built = new ArrayList<>();
+            Columns columns = new Columns(segmentSize, segmentSize * 16);
+            studentRepository.forEachStudent(student -> {
+                columns.add(student);
+                if (columns.size == segmentSize) {
+                    built.add(columns.build());
+                    columns.clear();
+                }
+            });
+            if (columns.size > 0) {
+                built.add(columns.build());
+            }
+            return built;
+        });
+        Segment[] built = shards.size() == 1 ? shards.get(0).toArray(EMPTY) : merge(shards);
+        synchronized (this) {
+            segments = built;
+            List<Runnable> pending = whileBuilding;
+            whileBuilding = null;
+            pending.forEach(Runnable::run);
+        }
+    }
+
+    @Order(StudentVersion.READ_STATE_ORDER)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCreated(StudentCreatedEvent event) {
+        put(event.student());
+    }
+
+    @Order(StudentVersion.READ_STATE_ORDER)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUpdated(StudentUpdatedEvent event) {
+        put(event.student());
+    }
+
+    @Order(StudentVersion.READ_STATE_ORDER)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDeleted(StudentDeletedEvent event) {
+        remove(event.id());
+    }
+
+    /**
+     * Adds the student, or replaces the one with its id.
+     */
+    public synchronized void put(StudentDTO student) {
+        if (whileBuilding != null) {
+            whileBuilding.add(() -> put(student));
+            return;
+        }
+        Segment[] current = segments;
+        if (current.length == 0) {
+            segments = new Segment[]{Segment.EMPTY.with(student, -1)};
+            return;
+        }
+        int index = segmentFor(current, student.id());
+        Segment segment = current[index];
+        int at = Arrays.binarySearch(segment.ids, student.id());
+        if (~at == segment.size() && index == current.length - 1 && segment.size() >= segmentSize) {
+            // appending to a full last segment starts a new one instead of copying it
+            Segment[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = Segment.EMPTY.with(student, -1);
+            segments = updated;
+            return;
+        }
+        Segment replacement = segment.with(student, at);
+        Segment[] updated;
+        if (replacement.size() > 2 * segmentSize) {
+            int half = replacement.size() / 2;
+            updated = new Segment[current.length + 1];
+            System.arraycopy(current, 0, updated, 0, index);
+            updated[index] = replacement.slice(0, half);
+            updated[index + 1] = replacement.slice(half, replacement.size());
+            System.arraycopy(current, index + 1, updated, index + 2, current.length - index - 1);
+        } else {
+            updated = current.clone();
+            updated[index] = replacement;
+        }
+        segments = updated;
+    }
+
+    public synchronized void remove(int id) {
+        if (whileBuilding != null) {
+            whileBuilding.add(() -> remove(id));
+            return;
+        }
+        Segment[] current = segments;
+        if (current.length == 0) {
+            return;
+        }
+        int index = segmentFor(current, id);
+        Segment segment = current[index];
+        int at = Arrays.binarySearch(segment.ids, id);
+        if (at < 0) {
+            return;
+        }
+        if (segment.size() == 1) {
+            Segment[] updated = new Segment[current.length - 1];
+            System.arraycopy(current, 0, updated, 0, index);
+            System.arraycopy(current, index + 1, updated, index, current.length - index - 1);
+            segments = updated;
+        } else {
+            Segment[] updated = current.clone();
+            updated[index] = segment.without(at);
+            segments = updated;
+        }
+    }
+
+    /**
+     * The first {@code limit} students with an id greater than {@code afterId}, in id order.
+     */
+    public Rows page(int afterId, int limit) {
+        Segment[] current = segments;
+        List<Segment> runs = new ArrayList<>();
+        List<int[]> bounds = new ArrayList<>();
+        int size = 0;
+        int index = current.length == 0 ? 0 : segmentFor(current, afterId);
+        int start = 0;
+        if (index < current.length) {
+            int at = Arrays.binarySearch(current[index].ids, afterId);
+            start = at >= 0 ? at + 1 : ~at;
+        }
+        for (; index < current.length && size < limit; index++, start = 0) {
+            Segment segment = current[index];
+            int end = Math.min(segment.size(), start + limit - size);
+            if (end > start) {
+                runs.add(segment);
+                bounds.add(new int[]{start, end});
+                size += end - start;
+            }
+            if (end < segment.size()) {
+                return new Rows(runs, bounds, size, true);
+            }
+        }
+        return new Rows(runs, bounds, size, index < current.length);
+    }
+
+    public Rows all() {
+        return page(Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * The heap held by the segments, counting the arrays and their headers but not the array of segments.
+     */
+    public long footprint() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            bytes += segment.footprint();
+        }
+        return bytes;
+    }
+
+    private Segment[] merge(List<List<Segment>> shards) {
+        // each entry is a shard, a segment of it and a position in that segment
+        PriorityQueue<int[]> heads = new PriorityQueue<>((a, b) ->
+                Integer.compare(shards.get(a[0]).get(a[1]).ids[a[2]], shards.get(b[0]).get(b[1]).ids[b[2]]));
+        for (int shard = 0; shard < shards.size(); shard++) {
+            if (!shards.get(shard).isEmpty()) {
+                heads.add(new int[]{shard, 0, 0});
+            }
+        }
+        List<Segment> merged = new ArrayList<>();
+        Columns columns = new Columns(segmentSize, segmentSize * 16);
+        while (!heads.isEmpty()) {
+            int[] head = heads.poll();
+            List<Segment> shard = shards.get(head[0]);
+            Segment segment = shard.get(head[1]);
+            columns.copy(segment, head[2], head[2] + 1);
+            if (columns.size == segmentSize) {
+                merged.add(columns.build());
+                columns.clear();
+            }
+            if (++head[2] == segment.size()) {
+                head[2] = 0;
+                head[1]++;
+            }
+            if (head[1] < shard.size()) {
+                heads.add(head);
+            }
+        }
+        if (columns.size > 0) {
+            merged.add(columns.build());
+        }
+        return merged.toArray(EMPTY);
+    }
+
+    /**
+     * The last segment starting at or before the id, or the first one.
+     */
+    private static int segmentFor(Segment[] segments, int id) {
+        int low = 0;
+        int high = segments.length - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (segments[middle].ids[0] <= id) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Receives the columns of one student of a page.
+     */
+    @FunctionalInterface
+    public interface RowWriter {
+
+        /**
+         * @param row        the position of the student in the page
+         * @param names      the bytes holding the name, UTF-8 except that an unpaired surrogate is encoded on its own
+         *                   in three bytes
+         * @param nameOffset where the name starts in {@code names}
+         * @param nameLength the length of the name in bytes, or -1 when the student has no name
+         * @param age        the age, or {@link #NO_AGE}
+         * @param version    the version the student was at when it was put in the snapshot
+         */
+        void write(int row, int id, byte[] names, int nameOffset, int nameLength, int age, long version) throws IOException;
+    }
+
+    /**
+     * A page of the snapshot, a view over the segments it was read from. Reading it as a list creates each
+     * {@code StudentDTO} on demand; {@link #writeTo(RowWriter)} hands out the columns instead.
+     */
+    public static final class Rows extends AbstractList<StudentDTO> implements RandomAccess {
+
+        private final Segment[] runs;
+
+        private final int[] starts;
+
+        private final int[] ends;
+
+        private final int size;
+
+        private final boolean hasMore;
+
+        private Rows(List<Segment> runs, List<int[]> bounds, int size, boolean hasMore) {
+            this.runs = runs.toArray(EMPTY);
+            this.starts = bounds.stream().mapToInt(bound -> bound[0]).toArray();
+            this.ends = bounds.stream().mapToInt(bound -> bound[1]).toArray();
+            this.size = size;
+            this.hasMore = hasMore;
+        }
+
+        /**
+         * Whether students with a greater id than the last of this page were in the snapshot when it was read.
+         */
+        public boolean hasMore() {
+            return hasMore;
+        }
+
+        public int lastId() {
+            int last = runs.length - 1;
+            return runs[last].ids[ends[last] - 1];
+        }
+
+        @Override
+        public StudentDTO get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            for (int run = 0; ; run++) {
+                int length = ends[run] - starts[run];
+                if (index < length) {
+                    return runs[run].student(starts[run] + index);
+                }
+                index -= length;
+            }
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        public void writeTo(RowWriter writer) throws IOException {
+            int row = 0;
+            for (int run = 0; run < runs.length; run++) {
+                Segment segment = runs[run];
+                for (int i = starts[run]; i < ends[run]; i++) {
+                    int nameStart = segment.nameStart(i);
+                    int nameLength = segment.hasName(i) ? segment.nameEnd(i) - nameStart : -1;
+                    writer.write(row++, segment.ids[i], segment.names, nameStart, nameLength, segment.ages[i],
+                            segment.versions[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Students in id order, in columns. A name that is null is stored as the complement of its end offset.
+     */
+    private static final class Segment {
+
+        private static final Segment EMPTY = new Segment(new int[0], new int[0], new long[0], new int[0], new byte[0]);
+
+        // object header and reference fields, and the header of each of the five arrays
+        private static final int OVERHEAD = 32 + 5 * 16;
+
+        private final int[] ids;
+
+        private final int[] ages;
+
+        private final long[] versions;
+
+        private final int[] nameEnds;
+
+        private final byte[] names;
+
+        private Segment(int[] ids, int[] ages, long[] versions, int[] nameEnds, byte[] names) {
+            this.ids = ids;
+            this.ages = ages;
+            this.versions = versions;
+            this.nameEnds = nameEnds;
+            this.names = names;
+        }
+
+        private int size() {
+            return ids.length;
+        }
+
+        private boolean hasName(int i) {
+            return nameEnds[i] >= 0;
+        }
+
+        private int nameStart(int i) {
+            return i == 0 ? 0 : nameEnd(i - 1);
+        }
+
+        private int nameEnd(int i) {
+            int end = nameEnds[i];
+            return end < 0 ? ~end : end;
+        }
+
+        private StudentDTO student(int i) {
+            String name = hasName(i) ? Names.decode(names, nameStart(i), nameEnd(i)) : null;
+            return new StudentDTO(ids[i], name, ages[i] == NO_AGE ? null : ages[i], versions[i]);
+        }
+
+        /**
+         * A copy with the student put at {@code at}, the result of searching for its id.
+         */
+        private Segment with(StudentDTO student, int at) {
+            int insertAt = at >= 0 ? at : ~at;
+            int nameBytes = student.name() == null ? 0 : Names.maxLength(student.name());
+            Columns columns = new Columns(at >= 0 ? size() : size() + 1, names.length + nameBytes);
+            columns.copy(this, 0, insertAt);
+            columns.add(student);
+            columns.copy(this, at >= 0 ? at + 1 : insertAt, size());
+            return columns.build();
+        }
+
+        private Segment without(int at) {
+            Columns columns = new Columns(size() - 1, names.length);
+            columns.copy(this, 0, at);
+            columns.copy(this, at + 1, size());
+            return columns.build();
+        }
+
+        private Segment slice(int from, int to) {
+            Columns columns = new Columns(to - from, nameStart(to) - nameStart(from));
+            columns.copy(this, from, to);
+            return columns.build();
+        }
+
+        private long footprint() {
+            return OVERHEAD + 20L * ids.length + names.length;
+        }
+    }
+
+    /**
+     * The growing columns of a segment being built.
+     */
+    private static final class Columns {
+
+        private int[] ids;
+
+        private int[] ages;
+
+        private long[] versions;
+
+        private int[] nameEnds;
+
+        private byte[] names;
+
+        private int size;
+
+        private int namesLength;
+
+        private Columns(int capacity, int nameCapacity) {
+            this.ids = new int[capacity];
+            this.ages = new int[capacity];
+            this.versions = new long[capacity];
+            this.nameEnds = new int[capacity];
+            this.names = new byte[nameCapacity];
+        }
+
+        private void add(StudentDTO student) {
+            if (size == ids.length) {
+                grow(Math.max(16, size * 2));
+            }
+            String name = student.name();
+            if (name == null) {
+                nameEnds[size] = ~namesLength;
+            } else {
+                int maxLength = Names.maxLength(name);
+                if (namesLength + maxLength > names.length) {
+                    names = Arrays.copyOf(names, Math.max(names.length * 2, namesLength + maxLength));
+                }
+                namesLength = Names.encode(name, names, namesLength);
+                nameEnds[size] = namesLength;
+            }
+            ids[size] = student.id();
+            ages[size] = student.age() == null ? NO_AGE : student.age();
+            versions[size] = student.version() == null ? 0 : student.version();
+            size++;
+        }
+
+        private void copy(Segment from, int start, int end) {
+            if (end <= start) {
+                return;
+            }
+            int count = end - start;
+            if (size + count > ids.length) {
+                grow(Math.max(size + count, size * 2));
+            }
+            int nameStart = from.nameStart(start);
+            int nameLength = from.nameStart(end) - nameStart;
+            if (namesLength + nameLength > names.length) {
+                names = Arrays.copyOf(names, Math.max(names.length * 2, namesLength + nameLength));
+            }
+            System.arraycopy(from.ids, start, ids, size, count);
+            System.arraycopy(from.ages, start, ages, size, count);
+            System.arraycopy(from.versions, start, versions, size, count);
+            System.arraycopy(from.names, nameStart, names, namesLength, nameLength);
+            int shift = namesLength - nameStart;
+            for (int i = 0; i < count; i++) {
+                int nameEnd = from.nameEnds[start + i];
+                nameEnds[size + i] = nameEnd < 0 ? ~(~nameEnd + shift) : nameEnd + shift;
+            }
+            size += count;
+            namesLength += nameLength;
+        }
+
+        private void grow(int capacity) {
+            ids = Arrays.copyOf(ids, capacity);
+            ages = Arrays.copyOf(ages, capacity);
+            versions = Arrays.copyOf(versions, capacity);
+            nameEnds = Arrays.copyOf(nameEnds, capacity);
+        }
+
+        private Segment build() {
+            return new Segment(
+                    size == ids.length ? ids : Arrays.copyOf(ids, size),
+                    size == ages.length ? ages : Arrays.copyOf(ages, size),
+                    size == versions.length ? versions : Arrays.copyOf(versions, size),
+                    size == nameEnds.length ? nameEnds : Arrays.copyOf(nameEnds, size),
+                    namesLength == names.length ? names : Arrays.copyOf(names, namesLength));
+        }
+
+        private void clear() {
+            ids = new int[ids.length];
+            ages = new int[ages.length];
+            versions = new long[versions.length];
+            nameEnds = new int[nameEnds.length];
+            names = new byte[names.length];
+            size = 0;
+            namesLength = 0;
+        }
+    }
+
+    /**
+     * Names as UTF-8, except that a surrogate without its pair is encoded on its own in three bytes so that every
+     * {@code String} comes back the same.
+     */
+    private static final class Names {
+
+        private static int maxLength(String name) {
+            return 3 * name.length();
+        }
+
+        /**
+         * @return the offset after the name
+         */
+        private static int encode(String name, byte[] bytes, int offset) {
+            int length = name.length();
+            for (int i = 0; i < length; i++) {
+                char c = name.charAt(i);
+                if (c < 0x80) {
+                    bytes[offset++] = (byte) c;
+                } else if (c < 0x800) {
+                    bytes[offset++] = (byte) (0xC0 | c >> 6);
+                    bytes[offset++] = (byte) (0x80 | c & 0x3F);
+                } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(name.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, name.charAt(++i));
+                    bytes[offset++] = (byte) (0xF0 | codePoint >> 18);
+                    bytes[offset++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                    bytes[offset++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                    bytes[offset++] = (byte) (0x80 | codePoint & 0x3F);
+                } else {
+                    bytes[offset++] = (byte) (0xE0 | c >> 12);
+                    bytes[offset++] = (byte) (0x80 | c >> 6 & 0x3F);
+                    bytes[offset++] = (byte) (0x80 | c & 0x3F);
+                }
+            }
+            return offset;
+        }
+
+        private static String decode(byte[] bytes, int start, int end) {
+            StringBuilder name = new StringBuilder(end - start);
+            for (int i = start; i < end; ) {
+                int b = bytes[i] & 0xFF;
+                if (b < 0x80) {
+                    name.append((char) b);
+                    i++;
+                } else if (b < 0xE0) {
+                    name.append((char) ((b & 0x1F) << 6 | bytes[i + 1] & 0x3F));
+                    i += 2;
+                } else if (b < 0xF0) {
+                    name.append((char) ((b & 0x0F) << 12 | (bytes[i + 1] & 0x3F) << 6 | bytes[i + 2] & 0x3F));
+                    i += 3;
+                } else {
+                    name.appendCodePoint((b & 0x07) << 18 | (bytes[i + 1] & 0x3F) << 12
+                            | (bytes[i + 2] & 0x3F) << 6 | bytes[i + 3] & 0x3F);
+                    i += 4;
+                }
+            }
+            return name.toString();
+        }
+    }
+}
@@ -0,0 +1,6 @@
+-- The tables hibernate creates for Student, for the reactive profile which runs without JPA. It is a database of its
+-- own, without the change sequence numbers and tombstones the JPA profile keeps, and cannot be shared with it.
+create sequence if not exists student_id_seq start with 1 increment by 50;
+create table if not exists student (id integer not null, age integer, name varchar(255), version bigint default 0 not null, primary key (id));
+create index if not exists idx_student_name_id on student (name, id);
+create index if not exists idx_student_age_id on student (age, id);
@@ -0,0 +1,8 @@
+-- Run once against a MySQL database that already holds students, before starting a version that takes ids from
+-- student_id_seq. Hibernate emulates the sequence with a one row table on MySQL, and ddl-auto would create it starting
+-- at 1, below the existing ids. The stored value is the next free id, 50 ids are reserved from it at a time.
+-- When sharded, run it on the home shard (spring.datasource) with the highest id of every shard in place of max(id),
+-- an id there is the sequence value shifted past the shard bits, so any value above it is free on all shards.
+create table if not exists student_id_seq (next_val bigint) engine=InnoDB;
+delete from student_id_seq;
+insert into student_id_seq (next_val) select coalesce(max(id), 0) + 1 from student;
@@ -0,0 +1,221 @@
+package com.khanivorous.studentservice.applicationtests;
+
+import com.khanivorous.studentservice.student.controllers.StudentController;
+import com.khanivorous.studentservice.student.events.StudentChangeFeed;
+import com.khanivorous.studentservice.student.model.StudentCreationDTO;
+import com.khanivorous.studentservice.student.model.StudentCursor;
+import com.khanivorous.studentservice.student.model.StudentDTO;
+import com.khanivorous.studentservice.student.model.StudentStats;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.r2dbc.url=r2dbc:h2:mem:///reactive?options=DB_CLOSE_DELAY=-1")
+@ActiveProfiles("reactive")
+public class ReactiveStudentApplicationTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @BeforeEach
+    public void clearStudents() {
+        databaseClient.sql("delete from student").fetch().rowsUpdated().block();
+    }
+
+    @Test
+    public void testAddAndGetStudent() {
+        StudentDTO created = addStudent("Ben", 28);
+
+        webTestClient.get().uri("/students/{id}", created.id())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(StudentDTO.class).isEqualTo(new StudentDTO(created.id(), "Ben", 28, 0L));
+    }
+
+    @Test
+    public void testIdsAreHandedOutFromBlocksOfTheSequence() {
+        int first = addStudent("Ben", 28).id();
+
+        // every block of 50 starts where the previous one ended, so no ids are skipped between inserts
+        assertEquals(first + 1, addStudent("Andy", 22).id());
+        assertEquals(first + 2, addStudent("Tom", 30).id());
+    }
+
+    @Test
+    public void testUnknownIdReturnsError() {
+        webTestClient.get().uri("/students/{id}", 123)
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody(String.class).isEqualTo("Could not find student with id 123");
+    }
+
+    @Test
+    public void testInvalidStudentReturnsError() {
+        webTestClient.post().uri("/students")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new StudentCreationDTO("", 12))
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.name").isEqualTo("name must not be empty")
+                .jsonPath("$.age").isEqualTo("age cannot be less than 17 years old");
+    }
+
+    @Test
+    public void testGetStudentsPagesWithCursor() {
+        StudentDTO first = addStudent("Ben", 28);
+        StudentDTO second = addStudent("Andy", 22);
+        StudentDTO third = addStudent("Tom", 30);
+
+        String cursor = webTestClient.get().uri("/students?limit=2")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().exists(HttpHeaders.LINK)
+                .expectBodyList(StudentDTO.class).isEqualTo(List.of(first, second))
+                .returnResult()
+                .getResponseHeaders()
+                .getFirst(StudentController.NEXT_CURSOR_HEADER);
+        assertEquals(StudentCursor.encode(second.id()), cursor);
+
+        webTestClient.get().uri("/students?limit=2&after={cursor}", cursor)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().doesNotExist(StudentController.NEXT_CURSOR_HEADER)
+                .expectBodyList(StudentDTO.class).isEqualTo(List.of(third));
+    }
+
+    @Test
+    public void testGetStudentsFiltersAndPagesInNameOrder() {
+        StudentDTO ben = addStudent("Ben", 28);
+        addStudent("Andy", 22);
+        StudentDTO bob = addStudent("Bob", 25);
+        addStudent("Bea", 40);
+
+        String cursor = webTestClient.get().uri("/students?limit=1&namePrefix=B&maxAge=30&sort=name")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(StudentDTO.class).isEqualTo(List.of(ben))
+                .returnResult()
+                .getResponseHeaders()
+                .getFirst(StudentController.NEXT_CURSOR_HEADER);
+
+        webTestClient.get().uri("/students?limit=1&namePrefix=B&maxAge=30&sort=name&after={cursor}", cursor)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().doesNotExist(StudentController.NEXT_CURSOR_HEADER)
+                .expectBodyList(StudentDTO.class).isEqualTo(List.of(bob));
+    }
+
+    @Test
+    public void testGetStudentStatsAggregatesInDatabase() {
+        addStudent("Ben", 28);
+        addStudent("Andy", 22);
+        addStudent("Bob", 25);
+
+        webTestClient.get().uri("/students/stats?bucketSize=5")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(StudentStats.class).isEqualTo(new StudentStats(3, 22, 28, 25.0,
+                        List.of(new StudentStats.AgeBucket(20, 24, 1), new StudentStats.AgeBucket(25, 29, 2))));
+    }
+
+    @Test
+    public void testGetStudentsWithInvalidLimitReturnsBadRequest() {
+        webTestClient.get().uri("/students?limit=0")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void testStreamStudentsAsNdjson() {
+        StudentDTO first = addStudent("Ben", 28);
+        StudentDTO second = addStudent("Andy", 22);
+
+        webTestClient.get().uri("/students")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .expectBodyList(StudentDTO.class).isEqualTo(List.of(first, second));
+    }
+
+    @Test
+    public void testUnchangedStudentReturnsNotModified() {
+        StudentDTO created = addStudent("Ben", 28);
+
+        String eTag = webTestClient.get().uri("/students/{id}", created.id())
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(StudentDTO.class)
+                .getResponseHeaders()
+                .getETag();
+
+        webTestClient.get().uri("/students/{id}", created.id())
+                .ifNoneMatch(eTag)
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectBody().isEmpty();
+    }
+
+    @Test
+    public void testDeleteStudent() {
+        StudentDTO created = addStudent("Ben", 28);
+
+        webTestClient.delete().uri("/students/{id}", created.id())
+                .exchange()
+                .expectStatus().isNoContent();
+        webTestClient.delete().uri("/students/{id}", created.id())
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    public void testChangesAreStreamedAsServerSentEvents() {
+        Flux<ServerSentEvent<StudentDTO>> events = webTestClient.get().uri("/students/events")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(new ParameterizedTypeReference<ServerSentEvent<StudentDTO>>() {})
+                .getResponseBody()
+                .filter(event -> event.event() != null);
+
+        StepVerifier.create(events)
+                .then(() -> addStudent("Ben", 28))
+                .assertNext(event -> {
+                    assertEquals(StudentChangeFeed.CREATED_EVENT, event.event());
+                    assertEquals("Ben", event.data().name());
+                })
+                .thenCancel()
+                .verify(Duration.ofSeconds(10));
+    }
+
+    private StudentDTO addStudent(String name, int age) {
+        return webTestClient.post().uri("/students")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new StudentCreationDTO(name, age))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(StudentDTO.class)
+                .returnResult()
+                .getResponseBody();
+    }
+}
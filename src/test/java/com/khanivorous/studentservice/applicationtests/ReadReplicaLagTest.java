@@ -0,0 +1,116 @@
+package com.khanivorous.studentservice.applicationtests;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.khanivorous.studentservice.student.config.StudentCacheConfig;
+import com.khanivorous.studentservice.student.model.StudentCreationDTO;
+import com.khanivorous.studentservice.student.model.StudentDTO;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.Matchers.not;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Runs against two H2 databases, the replica lags behind the primary and never catches up. Reads, the ones answered
+ * under an ETag included, go to the replica, only a student changed within the time a replica is given to catch up in
+ * fills the shared cache from the primary.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:lag-primary;DB_CLOSE_DELAY=-1",
+        "student.datasource.replicas.urls=" + ReadReplicaLagTest.REPLICA_URL + ";IFEXISTS=TRUE",
+        "student.datasource.replicas.health-check-interval=PT1H"})
+@AutoConfigureMockMvc
+public class ReadReplicaLagTest {
+
+    static final String REPLICA_URL = "jdbc:h2:mem:lag-replica;DB_CLOSE_DELAY=-1";
+
+    static {
+        try (Connection connection = DriverManager.getConnection(REPLICA_URL, "sa", "sa");
+             Statement statement = connection.createStatement()) {
+            statement.execute("create table student (id integer not null, age integer, name varchar(255), "
+                    + "version bigint default 0 not null, change_seq bigint default 0 not null, primary key (id))");
+            statement.execute("create table student_tombstone (student_id integer not null, change_seq bigint not null, "
+                    + "deleted_at timestamp not null, primary key (student_id))");
+            statement.execute("create table student_change_sequence (id integer not null, compacted_through bigint not null, "
+                    + "primary key (id))");
+            statement.execute("insert into student (id, age, name, change_seq) values (1000, 30, 'Ben', 1), (1001, 40, 'Gone', 2)");
+        } catch (SQLException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    public void testReadsGoToTheReplica() throws Exception {
+        mockMvc.perform(get("/students/{id}", 1000))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Ben"));
+        String eTag = mockMvc.perform(get("/students"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].name", hasItems("Ben", "Gone")))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        mockMvc.perform(get("/students/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.count").value(2));
+        mockMvc.perform(get("/students/changes"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.changed[*].name", hasItem("Ben")));
+
+        mockMvc.perform(get("/students").header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified());
+        // the ETag is the replica's rows, so it changes when they do
+        updateReplica("update student set name = 'Went', version = 1 where id = 1001");
+        mockMvc.perform(get("/students").header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].name", hasItem("Went")));
+    }
+
+    @Test
+    public void testStudentChangedRecentlyFillsTheCacheFromThePrimary() throws Exception {
+        StudentDTO created = objectMapper.readValue(mockMvc.perform(post("/students")
+                        .content(objectMapper.writeValueAsString(new StudentCreationDTO("Carl", 20)))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString(), StudentDTO.class);
+        cacheManager.getCache(StudentCacheConfig.STUDENT_CACHE).clear();
+
+        // the replica has not caught up with the create yet
+        mockMvc.perform(get("/students"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].name", not(hasItem("Carl"))));
+        mockMvc.perform(get("/students/{id}", created.id()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Carl"));
+    }
+
+    private static void updateReplica(String sql) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(REPLICA_URL, "sa", "sa");
+             Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.khanivorous.studentservice.applicationtests;
+
+import com.khanivorous.studentservice.student.config.ReadYourWritesFilter;
+import com.khanivorous.studentservice.student.config.ReplicaRoutingDataSource;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.servlet.http.Cookie;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.cookie;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Runs against two H2 databases, the replica is created up front with a student the primary does not have, so the
+ * test can tell which one served a read. The replica is shut down by the last test. ETags are off, reads answered
+ * under one always go to the primary, see {@link ReadReplicaLagTest}.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:primary;DB_CLOSE_DELAY=-1",
+        "student.datasource.replicas.urls=" + ReadReplicaRoutingTest.REPLICA_URL + ";IFEXISTS=TRUE",
+        "student.datasource.replicas.health-check-interval=PT1H",
+        "student.etag.enabled=false"})
+@AutoConfigureMockMvc
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class ReadReplicaRoutingTest {
+
+    static final String REPLICA_URL = "jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1";
+
+    static {
+        try (Connection connection = DriverManager.getConnection(REPLICA_URL, "sa", "sa");
+             Statement statement = connection.createStatement()) {
+            statement.execute("create table student (id integer not null, age integer, name varchar(255), "
+                    + "version bigint default 0 not null, change_seq bigint default 0 not null, primary key (id))");
+            statement.execute("insert into student (id, age, name) values (1000, 30, 'Replica')");
+        } catch (SQLException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ReplicaRoutingDataSource replicaRoutingDataSource;
+
+    @Test
+    @Order(1)
+    public void testReadsUseReplicaUntilClientWrites() throws Exception {
+        mockMvc.perform(get("/students"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].name", hasItem("Replica")));
+
+        Cookie readYourWrites = mockMvc.perform(post("/students")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"Ben\",\"age\":28}"))
+                .andExpect(status().isCreated())
+                .andExpect(cookie().exists(ReadYourWritesFilter.COOKIE_NAME))
+                .andReturn().getResponse().getCookie(ReadYourWritesFilter.COOKIE_NAME);
+
+        mockMvc.perform(get("/students"))
+                .andExpect(jsonPath("$[*].name", not(hasItem("Ben"))));
+        mockMvc.perform(get("/students").cookie(readYourWrites))
+                .andExpect(jsonPath("$[*].name", hasItem("Ben")))
+                .andExpect(jsonPath("$[*].name", not(hasItem("Replica"))));
+    }
+
+    @Test
+    @Order(2)
+    @DirtiesContext
+    public void testReadsFailOverToPrimaryWhenReplicaIsEjected() throws Exception {
+        mockMvc.perform(post("/students")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"Andy\",\"age\":22}"))
+                .andExpect(status().isCreated());
+
+        try (Connection connection = DriverManager.getConnection(REPLICA_URL, "sa", "sa");
+             Statement statement = connection.createStatement()) {
+            statement.execute("shutdown");
+        }
+        replicaRoutingDataSource.checkReplicas();
+
+        assertEquals(0, replicaRoutingDataSource.healthyReplicas());
+        mockMvc.perform(get("/students"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].name", hasItem("Andy")));
+    }
+}
@@ -2,19 +2,27 @@ package com.khanivorous.studentservice.applicationtests;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.khanivorous.studentservice.student.NoSuchIdException;
+import com.khanivorous.studentservice.student.controllers.StudentController;
 import com.khanivorous.studentservice.student.entities.Student;
 import com.khanivorous.studentservice.student.model.StudentCreationDTO;
+import com.khanivorous.studentservice.student.model.StudentCursor;
+import com.khanivorous.studentservice.student.model.StudentDTO;
 import com.khanivorous.studentservice.student.repository.StudentRepository;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
-import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
 import static org.hamcrest.Matchers.is;
@@ -33,18 +41,20 @@ public class StudentApplicationTest {
     @MockBean
     private StudentRepository studentRepository;
 
+    @Autowired
+    private CacheManager cacheManager;
+
+    @BeforeEach
+    public void clearCaches() {
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+    }
+
     @Test
     public void testGetAllUsers() throws Exception {
 
-        Student student1 = new Student();
-        student1.setId(1);
-        student1.setName("Ben");
-        student1.setAge(28);
+        List<StudentDTO> studentList = List.of(new StudentDTO(1, "Ben", 28));
 
-        ArrayList<Student> studentList = new ArrayList<>();
-        studentList.add(student1);
-
-        when(studentRepository.findAll()).thenReturn(studentList);
+        when(studentRepository.findDTOsByIdGreaterThan(eq(0), any(Pageable.class))).thenReturn(new SliceImpl<>(studentList));
 
         mockMvc.perform(MockMvcRequestBuilders.get("/students"))
                 .andExpect(status().isOk())
@@ -55,14 +65,31 @@ public class StudentApplicationTest {
     }
 
     @Test
-    public void testGetUserById() throws Exception {
+    public void testGetAllUsersReturnsNextCursorWhenMoreStudentsExist() throws Exception {
 
-        Student student1 = new Student();
-        student1.setId(1);
-        student1.setName("Ben");
-        student1.setAge(28);
+        List<StudentDTO> studentList = List.of(new StudentDTO(1, "Ben", 28));
+
+        when(studentRepository.findDTOsByIdGreaterThan(eq(0), any(Pageable.class)))
+                .thenReturn(new SliceImpl<>(studentList, PageRequest.ofSize(1), true));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/students?limit=1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(StudentController.NEXT_CURSOR_HEADER, StudentCursor.encode(1)))
+                .andExpect(jsonPath("$[0].id", is(1)));
+    }
+
+    @Test
+    public void testGetAllUsersWithInvalidCursorReturnsBadRequest() throws Exception {
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/students?after=not-a-cursor"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Invalid cursor not-a-cursor"));
+    }
+
+    @Test
+    public void testGetUserById() throws Exception {
 
-        when(studentRepository.findById(1)).thenReturn(Optional.of(student1));
+        when(studentRepository.findDTOById(1)).thenReturn(Optional.of(new StudentDTO(1, "Ben", 28)));
 
         mockMvc.perform(MockMvcRequestBuilders.get("/students/1"))
                 .andExpect(status().isOk())
@@ -145,7 +172,7 @@ public class StudentApplicationTest {
     @Test
     public void testDeleteStudent() throws Exception {
 
-        when(studentRepository.existsById(1)).thenReturn(true);
+        when(studentRepository.deleteStudentById(1)).thenReturn(1);
         mockMvc.perform(delete("/students/1"))
                 .andExpect(status().isNoContent());
     }
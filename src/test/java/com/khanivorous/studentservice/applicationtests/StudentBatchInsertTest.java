@@ -0,0 +1,134 @@
+package com.khanivorous.studentservice.applicationtests;
+
+import com.khanivorous.studentservice.student.model.StudentBatchResult;
+import com.khanivorous.studentservice.student.model.StudentCreationDTO;
+import com.khanivorous.studentservice.student.repository.StudentRepository;
+import com.khanivorous.studentservice.student.services.StudentService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE,
+        properties = "spring.datasource.url=jdbc:h2:mem:batch-insert;DB_CLOSE_DELAY=-1")
+public class StudentBatchInsertTest {
+
+    private static final List<String> executedStatements = new CopyOnWriteArrayList<>();
+
+    // only the statements of the test thread are counted, scheduled jobs of the context run their own
+    private static volatile Thread countedThread;
+
+    @Autowired
+    private StudentService studentService;
+
+    @Autowired
+    private StudentRepository studentRepository;
+
+    @BeforeEach
+    public void setUp() {
+        studentRepository.deleteAll();
+        executedStatements.clear();
+        countedThread = Thread.currentThread();
+    }
+
+    @Test
+    public void testBatchOfStudentsIsInsertedWithJdbcBatches() {
+        int students = 1200;
+        Map<Integer, StudentCreationDTO> studentsByIndex = new LinkedHashMap<>();
+        for (int i = 0; i < students; i++) {
+            studentsByIndex.put(i, new StudentCreationDTO("Student" + i, 18 + i % 40));
+        }
+
+        StudentBatchResult result = studentService.addNewStudents(studentsByIndex);
+
+        assertTrue(result.errors().isEmpty());
+        assertEquals(students, result.created().size());
+        // a jdbc batch size and id and change number allocation sizes of 50 mean one insert batch, one id sequence call
+        // and one change number sequence call per 50 students, and no lock taken on a counter row
+        assertEquals(24, count("insert into student "));
+        assertEquals(24, count("student_id_seq"));
+        assertEquals(24, count("student_change_number_seq"));
+        assertEquals(0, count("student_change_sequence"));
+        assertEquals(72, executedStatements.size());
+        assertEquals(students, studentRepository.count());
+    }
+
+    private static long count(String sqlFragment) {
+        return executedStatements.stream().filter(sql -> sql.toLowerCase().contains(sqlFragment)).count();
+    }
+
+    /**
+     * Records one entry per statement sent to the database, so a jdbc batch counts once however many rows it holds.
+     */
+    @TestConfiguration
+    static class StatementCountingConfiguration {
+
+        @Bean
+        static BeanPostProcessor statementCountingDataSourcePostProcessor() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (!(bean instanceof DataSource dataSource)) {
+                        return bean;
+                    }
+                    return proxy(DataSource.class, dataSource, (target, method, args) -> {
+                        Object result = invoke(target, method, args);
+                        return result instanceof Connection connection ? countingConnection(connection) : result;
+                    });
+                }
+            };
+        }
+
+        private static Connection countingConnection(Connection connection) {
+            return proxy(Connection.class, connection, (target, method, args) -> {
+                Object result = invoke(target, method, args);
+                if (result instanceof PreparedStatement statement && method.getName().equals("prepareStatement")) {
+                    String sql = (String) args[0];
+                    return proxy(PreparedStatement.class, statement, (statementTarget, statementMethod, statementArgs) -> {
+                        if (statementMethod.getName().startsWith("execute") && Thread.currentThread() == countedThread) {
+                            executedStatements.add(sql);
+                        }
+                        return invoke(statementTarget, statementMethod, statementArgs);
+                    });
+                }
+                return result;
+            });
+        }
+
+        private interface TargetInvocationHandler<T> {
+            Object invoke(T target, Method method, Object[] args) throws Throwable;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T proxy(Class<T> type, T target, TargetInvocationHandler<T> handler) {
+            InvocationHandler invocationHandler = (proxy, method, args) -> handler.invoke(target, method, args);
+            return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, invocationHandler);
+        }
+
+        private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException ex) {
+                throw ex.getCause();
+            }
+        }
+    }
+}
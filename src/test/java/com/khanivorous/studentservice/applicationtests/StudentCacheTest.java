@@ -0,0 +1,135 @@
+package com.khanivorous.studentservice.applicationtests;
+
+import com.khanivorous.studentservice.student.NoSuchIdException;
+import com.khanivorous.studentservice.student.config.StudentCacheConfig;
+import com.khanivorous.studentservice.student.entities.Student;
+import com.khanivorous.studentservice.student.events.StudentVersion;
+import com.khanivorous.studentservice.student.model.StudentDTO;
+import com.khanivorous.studentservice.student.repository.StudentRepository;
+import com.khanivorous.studentservice.student.services.StudentService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.cache.CacheManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@AutoConfigureMetrics
+public class StudentCacheTest {
+
+    @MockBean
+    private StudentRepository studentRepository;
+
+    @Autowired
+    private StudentService studentService;
+
+    @SpyBean
+    private StudentVersion studentVersion;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void clearCache() {
+        cacheManager.getCache(StudentCacheConfig.STUDENT_CACHE).clear();
+    }
+
+    @Test
+    public void testGetStudentByIdIsReadThrough() {
+        when(studentRepository.findDTOById(1)).thenReturn(Optional.of(new StudentDTO(1, "Ben", 28)));
+        double hitsBefore = cacheGets("hit");
+
+        studentService.getStudentById(1);
+        studentService.getStudentById(1);
+
+        verify(studentRepository, times(1)).findDTOById(1);
+        assertEquals(hitsBefore + 1, cacheGets("hit"));
+    }
+
+    @Test
+    public void testAddNewStudentPopulatesCache() {
+        when(studentRepository.save(any(Student.class))).thenReturn(newStudent(2, "Andy", 22));
+
+        studentService.addNewStudent("Andy", 22);
+
+        assertEquals("Andy", studentService.getStudentById(2).name());
+        verify(studentRepository, never()).findDTOById(anyInt());
+    }
+
+    @Test
+    public void testDeleteStudentByIdEvictsCachedStudent() {
+        when(studentRepository.findDTOById(3)).thenReturn(Optional.of(new StudentDTO(3, "Tom", 30)));
+        when(studentRepository.deleteStudentById(3)).thenReturn(1);
+        studentService.getStudentById(3);
+
+        studentService.deleteStudentById(3);
+        when(studentRepository.findDTOById(3)).thenReturn(Optional.empty());
+
+        assertThrows(NoSuchIdException.class, () -> studentService.getStudentById(3));
+        verify(studentRepository, times(2)).findDTOById(3);
+    }
+
+    @Test
+    public void testDeleteStudentsByIdsEvictsCachedStudents() {
+        when(studentRepository.findDTOById(4)).thenReturn(Optional.of(new StudentDTO(4, "Sam", 19)));
+        when(studentRepository.deleteExistingByIdIn(List.of(4))).thenReturn(List.of(4));
+        studentService.getStudentById(4);
+
+        studentService.deleteStudentsByIds(List.of(4));
+
+        studentService.getStudentById(4);
+        verify(studentRepository, times(2)).findDTOById(4);
+    }
+
+    @Test
+    public void testETagMovesOnOnlyOnceTheCacheHoldsTheChange() {
+        when(studentRepository.save(any(Student.class))).thenReturn(newStudent(5, "Eve", 31));
+        when(studentRepository.deleteStudentById(5)).thenReturn(1);
+        List<String> cachedWhenBumped = new ArrayList<>();
+        doAnswer(invocation -> {
+            StudentDTO cached = cacheManager.getCache(StudentCacheConfig.STUDENT_CACHE).get(5, StudentDTO.class);
+            cachedWhenBumped.add(cached == null ? null : cached.name());
+            return invocation.callRealMethod();
+        }).when(studentVersion).onCreated(any());
+        doAnswer(invocation -> {
+            cachedWhenBumped.add(cacheManager.getCache(StudentCacheConfig.STUDENT_CACHE).get(5) == null ? "evicted" : "cached");
+            return invocation.callRealMethod();
+        }).when(studentVersion).onDeleted(any());
+
+        studentService.addNewStudent("Eve", 31);
+        studentService.deleteStudentById(5);
+
+        assertEquals(List.of("Eve", "evicted"), cachedWhenBumped);
+    }
+
+    private double cacheGets(String result) {
+        return meterRegistry.get("cache.gets")
+                .tag("cache", StudentCacheConfig.STUDENT_CACHE)
+                .tag("result", result)
+                .functionCounter()
+                .count();
+    }
+
+    private static Student newStudent(int id, String name, int age) {
+        Student student = new Student();
+        student.setId(id);
+        student.setName(name);
+        student.setAge(age);
+        return student;
+    }
+}
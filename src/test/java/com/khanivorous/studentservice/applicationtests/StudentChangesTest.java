@@ -0,0 +1,163 @@
+package com.khanivorous.studentservice.applicationtests;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.khanivorous.studentservice.student.changes.StudentTombstoneCompactor;
+import com.khanivorous.studentservice.student.model.StudentBulkDeleteResult;
+import com.khanivorous.studentservice.student.model.StudentChanges;
+import com.khanivorous.studentservice.student.model.StudentDTO;
+import com.khanivorous.studentservice.student.repository.StudentRepository;
+import com.khanivorous.studentservice.student.services.StudentService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:changes;DB_CLOSE_DELAY=-1",
+        "student.changes.tombstone-retention=0s"})
+@AutoConfigureMockMvc
+public class StudentChangesTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private StudentService studentService;
+
+    @Autowired
+    private StudentTombstoneCompactor studentTombstoneCompactor;
+
+    @Autowired
+    private StudentRepository studentRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    public void testSyncReturnsOnlyWhatChangedSinceTheToken() throws Exception {
+        StudentDTO ben = studentService.addNewStudent("Ben", 28);
+        StudentDTO andy = studentService.addNewStudent("Andy", 22);
+        String token = syncAll(null);
+
+        StudentChanges none = changes(token, 10);
+        assertTrue(none.changed().isEmpty() && none.deleted().isEmpty());
+        assertEquals(token, none.nextToken());
+
+        StudentDTO benjamin = studentService.updateStudent(ben.id(), "Benjamin", null, null);
+        studentService.deleteStudentById(andy.id());
+        StudentDTO bob = studentService.addNewStudent("Bob", 25);
+
+        StudentChanges changes = changes(token, 10);
+        assertEquals(List.of(benjamin, bob), changes.changed());
+        assertEquals(List.of(andy.id()), changes.deleted());
+        assertFalse(changes.hasMore());
+    }
+
+    @Test
+    public void testChangeCommittedBeforeAnEarlierOneIsHeldBackUntilItCompletes() throws Exception {
+        StudentDTO ben = studentService.addNewStudent("Ben", 28);
+        StudentDTO andy = studentService.addNewStudent("Andy", 22);
+        String token = changes(null, 1000).nextToken();
+        CountDownLatch updated = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> slow = CompletableFuture.runAsync(() -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            studentRepository.updateStudent(ben.id(), "Benjamin", null, null);
+            updated.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        updated.await();
+        studentService.updateStudent(andy.id(), "Andrew", null, null);
+
+        StudentChanges during = changes(token, 10);
+        assertTrue(during.changed().isEmpty());
+        assertEquals(token, during.nextToken());
+
+        release.countDown();
+        slow.join();
+        StudentChanges after = changes(token, 10);
+        assertEquals(List.of("Benjamin", "Andrew"), after.changed().stream().map(StudentDTO::name).toList());
+    }
+
+    @Test
+    public void testConcurrentBulkDeletesReportEachStudentDeletedOnce() throws Exception {
+        List<Integer> ids = List.of(studentService.addNewStudent("Ben", 28).id(), studentService.addNewStudent("Andy", 22).id());
+        String token = changes(null, 1000).nextToken();
+        CountDownLatch deleted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<List<Integer>> first = CompletableFuture.supplyAsync(() -> new TransactionTemplate(transactionManager).execute(status -> {
+            List<Integer> existing = studentRepository.deleteExistingByIdIn(ids);
+            deleted.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return existing;
+        }));
+        deleted.await();
+        CompletableFuture<StudentBulkDeleteResult> second = CompletableFuture.supplyAsync(() -> studentService.deleteStudentsByIds(ids));
+        Thread.sleep(200);
+        release.countDown();
+
+        assertEquals(ids, first.join());
+        assertEquals(List.of(), second.join().deleted());
+        assertEquals(ids, second.join().missing());
+        assertEquals(ids, changes(token, 10).deleted());
+    }
+
+    @Test
+    public void testTokenOlderThanCompactedTombstonesIsGone() throws Exception {
+        StudentDTO ben = studentService.addNewStudent("Ben", 28);
+        String token = syncAll(null);
+        studentService.deleteStudentById(ben.id());
+
+        studentTombstoneCompactor.compact();
+
+        mockMvc.perform(get("/students/changes").param("since", token))
+                .andExpect(status().isGone());
+    }
+
+    @Test
+    public void testInvalidTokenIsRejected() throws Exception {
+        mockMvc.perform(get("/students/changes").param("since", "%%"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private String syncAll(String since) throws Exception {
+        StudentChanges changes;
+        do {
+            changes = changes(since, 1);
+            since = changes.nextToken();
+        } while (changes.hasMore());
+        return since;
+    }
+
+    private StudentChanges changes(String since, int limit) throws Exception {
+        String body = mockMvc.perform(since == null
+                        ? get("/students/changes").param("limit", String.valueOf(limit))
+                        : get("/students/changes").param("since", since).param("limit", String.valueOf(limit)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readValue(body, StudentChanges.class);
+    }
+}
@@ -0,0 +1,143 @@
+package com.khanivorous.studentservice.applicationtests;
+
+import com.khanivorous.studentservice.student.IdempotencyKeyReusedException;
+import com.khanivorous.studentservice.student.config.StudentCacheConfig;
+import com.khanivorous.studentservice.student.entities.IdempotencyKey;
+import com.khanivorous.studentservice.student.idempotency.StudentIdempotencyStore;
+import com.khanivorous.studentservice.student.model.StudentCreationResult;
+import com.khanivorous.studentservice.student.model.StudentDTO;
+import com.khanivorous.studentservice.student.repository.IdempotencyKeyRepository;
+import com.khanivorous.studentservice.student.repository.StudentRepository;
+import com.khanivorous.studentservice.student.services.StudentService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE,
+        properties = "spring.datasource.url=jdbc:h2:mem:idempotency;DB_CLOSE_DELAY=-1")
+public class StudentIdempotencyTest {
+
+    @Autowired
+    private StudentService studentService;
+
+    @Autowired
+    private StudentIdempotencyStore studentIdempotencyStore;
+
+    @Autowired
+    private StudentRepository studentRepository;
+
+    @Autowired
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @BeforeEach
+    public void setUp() {
+        idempotencyKeyRepository.deleteAll();
+        studentRepository.deleteAll();
+    }
+
+    @Test
+    public void testRepeatedKeyReturnsOriginalStudent() {
+        StudentCreationResult first = studentService.addNewStudent("Ben", 28, "key-repeated");
+        StudentCreationResult retry = studentService.addNewStudent("Ben", 28, "key-repeated");
+
+        assertFalse(first.replayed());
+        assertTrue(retry.replayed());
+        assertEquals(first.student(), retry.student());
+        assertEquals(1, studentRepository.count());
+    }
+
+    @Test
+    public void testKeyedCreatePutsStudentInCache() {
+        StudentDTO created = studentService.addNewStudent("Ben", 28, "key-cached").student();
+
+        assertEquals(created, cacheManager.getCache(StudentCacheConfig.STUDENT_CACHE).get(created.id(), StudentDTO.class));
+    }
+
+    @Test
+    public void testKeyIsFoundInTableAfterCacheIsLost() {
+        StudentDTO created = studentService.addNewStudent("Ben", 28, "key-stored").student();
+
+        assertEquals(created, idempotencyKeyRepository.findById("key-stored").orElseThrow().getStudent());
+    }
+
+    @Test
+    public void testKeyReusedForDifferentStudentIsRejected() {
+        studentService.addNewStudent("Ben", 28, "key-reused");
+
+        assertThrows(IdempotencyKeyReusedException.class, () -> studentService.addNewStudent("Andy", 22, "key-reused"));
+        assertEquals(1, studentRepository.count());
+    }
+
+    @Test
+    public void testConcurrentRequestsWithSameKeyCreateOneStudent() throws Exception {
+        int requests = 4;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(requests);
+        try {
+            List<Future<StudentCreationResult>> results = new ArrayList<>();
+            for (int i = 0; i < requests; i++) {
+                Callable<StudentCreationResult> request = () -> {
+                    start.await();
+                    return studentService.addNewStudent("Ben", 28, "key-concurrent");
+                };
+                results.add(executor.submit(request));
+            }
+            start.countDown();
+
+            List<StudentCreationResult> created = new ArrayList<>();
+            for (Future<StudentCreationResult> result : results) {
+                created.add(result.get());
+            }
+            assertEquals(1, created.stream().map(StudentCreationResult::student).distinct().count());
+            assertEquals(1, created.stream().filter(result -> !result.replayed()).count());
+            assertEquals(1, studentRepository.count());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testExpiredKeyCreatesNewStudent() {
+        IdempotencyKey expired = new IdempotencyKey("key-expired", Instant.now().minus(Duration.ofDays(2)));
+        expired.setStudent(new StudentDTO(-1, "Ben", 28));
+        idempotencyKeyRepository.save(expired);
+
+        StudentCreationResult result = studentService.addNewStudent("Ben", 28, "key-expired");
+
+        assertFalse(result.replayed());
+        assertNotEquals(-1, result.student().id());
+        assertEquals(1, studentRepository.count());
+    }
+
+    @Test
+    public void testPurgeDeletesOnlyExpiredKeys() {
+        IdempotencyKey expired = new IdempotencyKey("key-old", Instant.now().minus(Duration.ofDays(2)));
+        expired.setStudent(new StudentDTO(-1, "Ben", 28));
+        idempotencyKeyRepository.save(expired);
+        studentService.addNewStudent("Andy", 22, "key-new");
+
+        assertEquals(1, studentIdempotencyStore.purgeExpired());
+        assertEquals(List.of("key-new"), idempotencyKeyRepository.findAll().stream().map(IdempotencyKey::getId).toList());
+    }
+}
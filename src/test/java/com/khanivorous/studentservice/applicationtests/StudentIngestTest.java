@@ -0,0 +1,95 @@
+package com.khanivorous.studentservice.applicationtests;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.khanivorous.studentservice.student.model.StudentCreationDTO;
+import com.khanivorous.studentservice.student.model.StudentDTO;
+import com.khanivorous.studentservice.student.model.StudentIngestStatus;
+import com.khanivorous.studentservice.student.repository.StudentRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:ingest;DB_CLOSE_DELAY=-1",
+        "student.ingest.async=true",
+        "student.ingest.flush-interval=10ms"})
+@AutoConfigureMockMvc
+public class StudentIngestTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private StudentRepository studentRepository;
+
+    @Test
+    public void testQueuedStudentIsAcceptedThenWritten() throws Exception {
+        MvcResult result = mockMvc.perform(post("/students")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new StudentCreationDTO("Ben", 28))))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.name", is("Ben")))
+                .andReturn();
+        StudentDTO accepted = objectMapper.readValue(result.getResponse().getContentAsString(), StudentDTO.class);
+        String location = result.getResponse().getHeader(HttpHeaders.LOCATION);
+        assertEquals("http://localhost/students/ingest/" + accepted.id(), location);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        StudentIngestStatus status;
+        do {
+            Thread.sleep(10);
+            status = objectMapper.readValue(mockMvc.perform(get(location))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString(), StudentIngestStatus.class);
+        } while (status.state() == StudentIngestStatus.State.QUEUED && System.nanoTime() < deadline);
+
+        assertEquals(StudentIngestStatus.State.WRITTEN, status.state());
+        assertEquals(accepted, studentRepository.findDTOById(accepted.id()).orElseThrow());
+        mockMvc.perform(get("/students/search?q=ben"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].student.id", is(accepted.id())));
+    }
+
+    @Test
+    public void testInvalidStudentIsRejectedBeforeQueueing() throws Exception {
+        mockMvc.perform(post("/students")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new StudentCreationDTO("", 28))))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testStudentsGetDistinctIdsFromTheEntityGenerator() {
+        List<Integer> ids = List.of(studentRepository.nextId(), studentRepository.nextId(), studentRepository.nextId());
+
+        assertEquals(3, ids.stream().distinct().count());
+        assertTrue(ids.stream().noneMatch(studentRepository::existsById));
+    }
+
+    @Test
+    public void testUnknownIngestIdReturnsNotFound() throws Exception {
+        mockMvc.perform(get("/students/ingest/{id}", Integer.MAX_VALUE))
+                .andExpect(status().isNotFound())
+                .andExpect(header().doesNotExist(HttpHeaders.LOCATION));
+    }
+}
@@ -0,0 +1,43 @@
+package com.khanivorous.studentservice.applicationtests;
+
+import com.khanivorous.studentservice.student.model.StudentCreationDTO;
+import com.khanivorous.studentservice.student.model.StudentDTO;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:metrics;DB_CLOSE_DELAY=-1",
+        "management.endpoints.web.exposure.include=prometheus"})
+@AutoConfigureMetrics
+public class StudentMetricsTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Test
+    public void testPrometheusExposesEndpointRepositoryAndPoolMetrics() {
+        StudentDTO student = restTemplate.postForObject("/students", new StudentCreationDTO("Ben", 28), StudentDTO.class);
+        restTemplate.getForEntity("/students/{id}", String.class, student.id());
+
+        ResponseEntity<String> scrape = restTemplate.getForEntity("/actuator/prometheus", String.class);
+
+        assertEquals(HttpStatus.OK, scrape.getStatusCode());
+        String metrics = scrape.getBody();
+        assertThat(metrics, containsString("http_server_requests_seconds_bucket{application=\"student-service\",exception=\"None\",method=\"GET\",outcome=\"SUCCESS\",status=\"200\",uri=\"/students/{id}\","));
+        assertThat(metrics, containsString("http_server_requests_seconds_count{application=\"student-service\",exception=\"None\",method=\"POST\",outcome=\"SUCCESS\",status=\"201\",uri=\"/students\",}"));
+        assertThat(metrics, containsString("spring_data_repository_invocations_seconds_bucket{application=\"student-service\",exception=\"None\",method=\"save\",repository=\"StudentRepository\",state=\"SUCCESS\","));
+        assertThat(metrics, containsString("hikaricp_connections_active{application=\"student-service\",pool="));
+        assertThat(metrics, containsString("hikaricp_connections_idle{application=\"student-service\",pool="));
+        assertThat(metrics, containsString("hikaricp_connections_pending{application=\"student-service\",pool="));
+        assertThat(metrics, containsString("hikaricp_connections_acquire_seconds_bucket{application=\"student-service\",pool="));
+    }
+}
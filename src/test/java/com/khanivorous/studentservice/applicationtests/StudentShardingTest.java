@@ -0,0 +1,179 @@
+package com.khanivorous.studentservice.applicationtests;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.khanivorous.studentservice.student.config.StudentCacheConfig;
+import com.khanivorous.studentservice.student.controllers.StudentController;
+import com.khanivorous.studentservice.student.model.StudentDTO;
+import com.khanivorous.studentservice.student.sharding.StudentShards;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Runs against three H2 databases, checking each student is written to the shard its id names and only there.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=" + StudentShardingTest.SHARD_0_URL,
+        "student.shards.urls=" + StudentShardingTest.SHARD_1_URL + "," + StudentShardingTest.SHARD_2_URL})
+@AutoConfigureMockMvc
+public class StudentShardingTest {
+
+    static final String SHARD_0_URL = "jdbc:h2:mem:shard0;DB_CLOSE_DELAY=-1";
+
+    static final String SHARD_1_URL = "jdbc:h2:mem:shard1;DB_CLOSE_DELAY=-1";
+
+    static final String SHARD_2_URL = "jdbc:h2:mem:shard2;DB_CLOSE_DELAY=-1";
+
+    private static final List<String> SHARD_URLS = List.of(SHARD_0_URL, SHARD_1_URL, SHARD_2_URL);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private StudentShards studentShards;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Test
+    public void testStudentsAreSpreadOverShardsAndReadBackInIdOrder() throws Exception {
+        List<Integer> ids = new ArrayList<>();
+        Set<Integer> shards = new HashSet<>();
+        for (String name : List.of("Ben", "Andy", "Cara", "Dev", "Eve", "Finn")) {
+            int id = create(name, 20 + ids.size());
+            ids.add(id);
+            shards.add(studentShards.shardOf(id));
+            assertEquals(List.of(studentShards.shardOf(id)), shardsHolding(id));
+        }
+        assertEquals(Set.of(0, 1, 2), shards);
+
+        String all = mockMvc.perform(get("/students").param("limit", "1000"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        List<Integer> listed = List.of(objectMapper.readValue(all, StudentDTO[].class)).stream().map(StudentDTO::id).toList();
+        assertTrue(listed.containsAll(ids));
+        assertEquals(listed.stream().sorted().toList(), listed);
+
+        String cursor = mockMvc.perform(get("/students").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()", is(2)))
+                .andReturn().getResponse().getHeader(StudentController.NEXT_CURSOR_HEADER);
+        mockMvc.perform(get("/students").param("limit", "2").param("after", cursor))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id", is(listed.get(2))))
+                .andExpect(jsonPath("$[1].id", is(listed.get(3))));
+    }
+
+    @Test
+    public void testPointOperationsGoToShardOfId() throws Exception {
+        int id = create("Gus", 31);
+
+        mockMvc.perform(get("/students/{id}", id))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name", is("Gus")));
+
+        mockMvc.perform(delete("/students/{id}", id))
+                .andExpect(status().isNoContent());
+        assertEquals(List.of(), shardsHolding(id));
+        mockMvc.perform(get("/students/{id}", id))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void testKeyedCreateGoesToHomeShardAndIntoCache() throws Exception {
+        String created = mockMvc.perform(post("/students")
+                        .header(StudentController.IDEMPOTENCY_KEY_HEADER, "key-sharded")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"Hal\",\"age\":33}"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        StudentDTO student = objectMapper.readValue(created, StudentDTO.class);
+
+        assertEquals(List.of(StudentShards.HOME_SHARD), shardsHolding(student.id()));
+        assertEquals(student, cacheManager.getCache(StudentCacheConfig.STUDENT_CACHE).get(student.id(), StudentDTO.class));
+    }
+
+    @Test
+    public void testIdOfMissingShardIsNotFound() throws Exception {
+        mockMvc.perform(get("/students/{id}", 5 << 4 | 7))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void testKeyedCreateIsStoredOnHomeShard() throws Exception {
+        String body = mockMvc.perform(post("/students")
+                        .header(StudentController.IDEMPOTENCY_KEY_HEADER, "sharded-key")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"Hal\",\"age\":40}"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        int id = objectMapper.readValue(body, StudentDTO.class).id();
+
+        assertEquals(List.of(StudentShards.HOME_SHARD), shardsHolding(id));
+        mockMvc.perform(post("/students")
+                        .header(StudentController.IDEMPOTENCY_KEY_HEADER, "sharded-key")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"Hal\",\"age\":40}"))
+                .andExpect(header().string(StudentController.IDEMPOTENT_REPLAYED_HEADER, "true"))
+                .andExpect(jsonPath("$.id", is(id)));
+    }
+
+    @Test
+    public void testChangesAreNotAvailableWhileSharded() throws Exception {
+        mockMvc.perform(get("/students/changes"))
+                .andExpect(status().isNotImplemented());
+    }
+
+    private int create(String name, int age) throws Exception {
+        String body = mockMvc.perform(post("/students")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"" + name + "\",\"age\":" + age + "}"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readValue(body, StudentDTO.class).id();
+    }
+
+    private static List<Integer> shardsHolding(int id) throws SQLException {
+        List<Integer> holding = new ArrayList<>();
+        for (int shard = 0; shard < SHARD_URLS.size(); shard++) {
+            try (Connection connection = DriverManager.getConnection(SHARD_URLS.get(shard), "sa", "sa");
+                 PreparedStatement statement = connection.prepareStatement("select count(*) from student where id = ?")) {
+                statement.setInt(1, id);
+                try (ResultSet count = statement.executeQuery()) {
+                    count.next();
+                    if (count.getInt(1) > 0) {
+                        holding.add(shard);
+                    }
+                }
+            }
+        }
+        return holding;
+    }
+}
@@ -0,0 +1,95 @@
+package com.khanivorous.studentservice.applicationtests;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.khanivorous.studentservice.student.controllers.StudentController;
+import com.khanivorous.studentservice.student.model.StudentDTO;
+import com.khanivorous.studentservice.student.snapshot.StudentSnapshot;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Serves the list from the snapshot over three H2 shards, so building it has to merge what each shard holds.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:snapshot0;DB_CLOSE_DELAY=-1",
+        "student.shards.urls=jdbc:h2:mem:snapshot1;DB_CLOSE_DELAY=-1,jdbc:h2:mem:snapshot2;DB_CLOSE_DELAY=-1",
+        "student.snapshot.enabled=true",
+        "student.snapshot.segment-size=2",
+        "management.endpoints.web.exposure.include=metrics"})
+@AutoConfigureMockMvc
+public class StudentSnapshotModeTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private StudentSnapshot studentSnapshot;
+
+    @Test
+    public void testListIsServedFromTheSnapshotAndFollowsWritesAndItsFootprintIsReported() throws Exception {
+        List<Integer> ids = new ArrayList<>();
+        for (String name : List.of("Ben", "Andy", "Cara", "Dev", "Eve", "Finn", "Gus")) {
+            ids.add(create(name, 20 + ids.size()));
+        }
+        mockMvc.perform(delete("/students/{id}", ids.remove(3))).andExpect(status().isNoContent());
+        assertEquals(ids.stream().sorted().toList(), listed());
+
+        studentSnapshot.rebuild();
+        assertEquals(ids.stream().sorted().toList(), listed());
+        mockMvc.perform(get("/students").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].version").value(0));
+
+        String next = mockMvc.perform(get("/students").param("limit", "4"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(4))
+                .andReturn().getResponse().getHeader(StudentController.NEXT_CURSOR_HEADER);
+        mockMvc.perform(get("/students").param("limit", "4").param("after", next))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(header().doesNotExist(StudentController.NEXT_CURSOR_HEADER));
+
+        mockMvc.perform(get("/actuator/metrics/student.snapshot.students"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.measurements[0].value").value(6.0));
+        mockMvc.perform(get("/actuator/metrics/student.snapshot.memory"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.baseUnit").value("bytes"))
+                .andExpect(jsonPath("$.measurements[0].value").value(greaterThan(0.0)));
+    }
+
+    private int create(String name, int age) throws Exception {
+        String created = mockMvc.perform(post("/students")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"" + name + "\",\"age\":" + age + "}"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readValue(created, StudentDTO.class).id();
+    }
+
+    private List<Integer> listed() throws Exception {
+        String all = mockMvc.perform(get("/students").param("limit", "1000"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return List.of(objectMapper.readValue(all, StudentDTO[].class)).stream().map(StudentDTO::id).toList();
+    }
+}
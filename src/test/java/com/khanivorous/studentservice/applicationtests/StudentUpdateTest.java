@@ -0,0 +1,101 @@
+package com.khanivorous.studentservice.applicationtests;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.khanivorous.studentservice.student.model.StudentDTO;
+import com.khanivorous.studentservice.student.services.StudentService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:update;DB_CLOSE_DELAY=-1")
+@AutoConfigureMockMvc
+public class StudentUpdateTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private StudentService studentService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    public void testConcurrentUpdatesAtSameVersionConflict() throws Exception {
+        StudentDTO created = studentService.addNewStudent("Ben", 28);
+        assertEquals(0L, created.version());
+
+        mockMvc.perform(patch("/students/{id}", created.id())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"age\":29,\"version\":0}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name", is("Ben")))
+                .andExpect(jsonPath("$.age", is(29)))
+                .andExpect(jsonPath("$.version", is(1)));
+
+        mockMvc.perform(patch("/students/{id}", created.id())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"Benjamin\",\"version\":0}"))
+                .andExpect(status().isConflict());
+
+        mockMvc.perform(get("/students/{id}", created.id()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name", is("Ben")))
+                .andExpect(jsonPath("$.version", is(1)));
+    }
+
+    @Test
+    public void testListsCarryTheSameVersionAsTheStudentOnItsOwn() throws Exception {
+        StudentDTO created = studentService.addNewStudent("Cleo", 31);
+        studentService.updateStudent(created.id(), null, 32, 0L);
+
+        mockMvc.perform(get("/students/{id}", created.id()))
+                .andExpect(jsonPath("$.version", is(1)));
+        mockMvc.perform(get("/students").param("limit", "1000"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[?(@.id == %s)].version", created.id()).value(contains(1)));
+        mockMvc.perform(get("/students").param("namePrefix", "Cleo").param("sort", "name"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id", is(created.id())))
+                .andExpect(jsonPath("$[0].version", is(1)));
+    }
+
+    @Test
+    public void testReplaceWithoutVersionOverwritesAndUpdatesCacheAndSearch() throws Exception {
+        StudentDTO created = studentService.addNewStudent("Andy", 22);
+        mockMvc.perform(get("/students/{id}", created.id())).andExpect(status().isOk());
+
+        String body = objectMapper.writeValueAsString(new StudentDTO(null, "Zephyrine", 23, null));
+        mockMvc.perform(put("/students/{id}", created.id())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.version", is(1)));
+
+        mockMvc.perform(get("/students/{id}", created.id()))
+                .andExpect(jsonPath("$.name", is("Zephyrine")))
+                .andExpect(jsonPath("$.age", is(23)));
+        mockMvc.perform(get("/students/search?q=zephyrine"))
+                .andExpect(jsonPath("$[0].student.id", is(created.id())));
+    }
+
+    @Test
+    public void testUpdateMissingStudentReturnsNotFound() throws Exception {
+        mockMvc.perform(put("/students/{id}", Integer.MAX_VALUE)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"Ben\",\"age\":28,\"version\":0}"))
+                .andExpect(status().isNotFound());
+    }
+}
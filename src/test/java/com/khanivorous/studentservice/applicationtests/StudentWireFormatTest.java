@@ -0,0 +1,107 @@
+package com.khanivorous.studentservice.applicationtests;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.khanivorous.studentservice.student.controllers.StudentController;
+import com.khanivorous.studentservice.student.model.StudentCreationDTO;
+import com.khanivorous.studentservice.student.model.StudentDTO;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hamcrest.Matchers.hasItem;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:wire-format;DB_CLOSE_DELAY=-1")
+@AutoConfigureMockMvc
+public class StudentWireFormatTest {
+
+    private static final MediaType SMILE = MediaType.parseMediaType(StudentController.SMILE_VALUE);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    public void testStudentIsCreatedAndReadInCbor() throws Exception {
+        roundTrip(new CBORMapper(), MediaType.APPLICATION_CBOR, "Cara");
+    }
+
+    @Test
+    public void testStudentIsCreatedAndReadInSmile() throws Exception {
+        roundTrip(new SmileMapper(), SMILE, "Sam");
+    }
+
+    @Test
+    public void testJsonIsStillTheDefault() throws Exception {
+        mockMvc.perform(get("/students"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    public void testEachFormatHasItsOwnETagAndVariesOnAccept() throws Exception {
+        for (String path : List.of("/students", "/students/stats")) {
+            String jsonETag = mockMvc.perform(get(path).accept(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andExpect(header().stringValues(HttpHeaders.VARY, hasItem(HttpHeaders.ACCEPT)))
+                    .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+            String cborETag = mockMvc.perform(get(path).accept(MediaType.APPLICATION_CBOR))
+                    .andExpect(status().isOk())
+                    .andExpect(header().stringValues(HttpHeaders.VARY, hasItem(HttpHeaders.ACCEPT)))
+                    .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+            assertNotEquals(jsonETag, cborETag);
+
+            mockMvc.perform(get(path).accept(MediaType.APPLICATION_CBOR).header(HttpHeaders.IF_NONE_MATCH, jsonETag))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentType(MediaType.APPLICATION_CBOR));
+            mockMvc.perform(get(path).accept(MediaType.APPLICATION_CBOR).header(HttpHeaders.IF_NONE_MATCH, cborETag))
+                    .andExpect(status().isNotModified())
+                    .andExpect(header().stringValues(HttpHeaders.VARY, hasItem(HttpHeaders.ACCEPT)));
+            mockMvc.perform(get(path).header(HttpHeaders.IF_NONE_MATCH, jsonETag))
+                    .andExpect(status().isNotModified());
+        }
+        mockMvc.perform(get("/students/search").param("q", "ben").accept(SMILE))
+                .andExpect(status().isOk())
+                .andExpect(header().stringValues(HttpHeaders.VARY, hasItem(HttpHeaders.ACCEPT)));
+    }
+
+    private void roundTrip(ObjectMapper mapper, MediaType mediaType, String name) throws Exception {
+        byte[] created = mockMvc.perform(post("/students")
+                        .contentType(mediaType)
+                        .accept(mediaType)
+                        .content(mapper.writeValueAsBytes(new StudentCreationDTO(name, 30))))
+                .andExpect(status().isCreated())
+                .andExpect(content().contentType(mediaType))
+                .andReturn().getResponse().getContentAsByteArray();
+        StudentDTO student = mapper.readValue(created, StudentDTO.class);
+        assertEquals(name, student.name());
+
+        byte[] found = mockMvc.perform(get("/students/{id}", student.id()).accept(mediaType))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(mediaType))
+                .andReturn().getResponse().getContentAsByteArray();
+        assertEquals(student, mapper.readValue(found, StudentDTO.class));
+
+        byte[] all = mockMvc.perform(get("/students").accept(mediaType))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(mediaType))
+                .andReturn().getResponse().getContentAsByteArray();
+        List<Integer> ids = Stream.of(mapper.readValue(all, StudentDTO[].class)).map(StudentDTO::id).toList();
+        assertTrue(ids.contains(student.id()));
+    }
+}
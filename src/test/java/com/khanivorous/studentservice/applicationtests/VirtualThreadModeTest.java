@@ -0,0 +1,71 @@
+package com.khanivorous.studentservice.applicationtests;
+
+import com.khanivorous.studentservice.student.config.ConnectionLimitingDataSource;
+import com.khanivorous.studentservice.student.export.StudentExporter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIf;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.embedded.tomcat.TomcatWebServer;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Runs only on Java 21 or later, e.g. {@code mvn test -Pjdk21} with a Java 21 JDK.
+ */
+@EnabledIf("runsOnJava21")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "student.threads.virtual=true",
+        "spring.datasource.url=jdbc:h2:mem:virtual-threads;DB_CLOSE_DELAY=-1"})
+public class VirtualThreadModeTest {
+
+    @Autowired
+    private ServletWebServerApplicationContext context;
+
+    @Autowired
+    private ExecutorService virtualThreadExecutor;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    static boolean runsOnJava21() {
+        return Runtime.version().feature() >= 21;
+    }
+
+    @Test
+    public void testRequestsAreServedOnVirtualThreads() {
+        TomcatWebServer webServer = (TomcatWebServer) context.getWebServer();
+
+        assertSame(virtualThreadExecutor, webServer.getTomcat().getConnector().getProtocolHandler().getExecutor());
+        assertInstanceOf(ConnectionLimitingDataSource.class, dataSource);
+        assertEquals(HttpStatus.OK, restTemplate.getForEntity("/students", String.class).getStatusCode());
+    }
+
+    @Test
+    public void testExportRunsOnVirtualThreadExecutor() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(List.of(MediaType.parseMediaType(StudentExporter.CSV_VALUE)));
+
+        ResponseEntity<String> response = restTemplate.exchange("/students/export", HttpMethod.GET, new HttpEntity<>(headers), String.class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("id,name,age\n", response.getBody());
+    }
+}
@@ -0,0 +1,128 @@
+package com.khanivorous.studentservice.benchmarks;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Streams the export endpoint over a large table and reports the peak live heap, as measured after each garbage
+ * collection, while doing so. Run with {@code mvn test -Pbenchmark}, the row count can be changed with {@code -Dbenchmark.export.rows}.
+ */
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:export-benchmark;DB_CLOSE_DELAY=-1;LAZY_QUERY_EXECUTION=1",
+        "logging.level.org.hibernate.SQL=off"})
+public class StudentExportBenchmarkTest {
+
+    private static final int ROWS = Integer.getInteger("benchmark.export.rows", 1_000_000);
+
+    private static final long MAX_LIVE_HEAP_GROWTH = 64L * 1024 * 1024;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    public void populate() {
+        jdbcTemplate.update("delete from student");
+        List<Object[]> batch = new ArrayList<>(10_000);
+        for (int id = 1; id <= ROWS; id++) {
+            batch.add(new Object[]{id, "Student " + id, 17 + id % 60});
+            if (batch.size() == 10_000) {
+                jdbcTemplate.batchUpdate("insert into student (id, name, age) values (?, ?, ?)", batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            jdbcTemplate.batchUpdate("insert into student (id, name, age) values (?, ?, ?)", batch);
+        }
+    }
+
+    @Test
+    public void exportNdjson() throws Exception {
+        measure("application/x-ndjson", ROWS);
+    }
+
+    @Test
+    public void exportCsv() throws Exception {
+        measure("text/csv", ROWS + 1);
+    }
+
+    private void measure(String mediaType, long expectedLines) throws Exception {
+        System.gc();
+        long baseline = liveHeap();
+        AtomicLong peakLiveHeap = new AtomicLong(baseline);
+        AtomicBoolean streaming = new AtomicBoolean(true);
+        Thread sampler = new Thread(() -> {
+            while (streaming.get()) {
+                peakLiveHeap.accumulateAndGet(liveHeap(), Math::max);
+                LockSupport.parkNanos(10_000_000);
+            }
+        });
+        sampler.start();
+
+        long start = System.nanoTime();
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + "/students/export").openConnection();
+        connection.setRequestProperty("Accept", mediaType);
+        long lines = 0;
+        long bytes = 0;
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream body = connection.getInputStream()) {
+            int read;
+            while ((read = body.read(buffer)) != -1) {
+                bytes += read;
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] == '\n') {
+                        lines++;
+                    }
+                }
+            }
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        streaming.set(false);
+        sampler.join();
+        long peakGrowth = peakLiveHeap.get() - baseline;
+
+        System.out.printf("export %s: %d rows, %d MB, %d ms, peak live heap growth %d MB%n",
+                mediaType, ROWS, bytes / (1024 * 1024), elapsedMillis, peakGrowth / (1024 * 1024));
+        assertEquals(expectedLines, lines);
+        assertTrue(peakGrowth < MAX_LIVE_HEAP_GROWTH, "live heap grew by " + peakGrowth + " bytes");
+    }
+
+    private static List<MemoryPoolMXBean> heapPools() {
+        return ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .toList();
+    }
+
+    private static long liveHeap() {
+        return heapPools().stream()
+                .map(MemoryPoolMXBean::getCollectionUsage)
+                .filter(Objects::nonNull)
+                .mapToLong(MemoryUsage::getUsed)
+                .sum();
+    }
+}
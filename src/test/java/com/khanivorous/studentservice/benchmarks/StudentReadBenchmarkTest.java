@@ -0,0 +1,128 @@
+package com.khanivorous.studentservice.benchmarks;
+
+import com.khanivorous.studentservice.student.entities.Student;
+import com.khanivorous.studentservice.student.mapper.StudentMapper;
+import com.khanivorous.studentservice.student.model.StudentDTO;
+import com.khanivorous.studentservice.student.repository.StudentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares reading students as managed entities in a read-write transaction, as the service used to, with the
+ * {@link StudentDTO} projections it reads in read-only transactions now. Reports the bytes allocated and the time
+ * taken per read. Run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "spring.datasource.url=jdbc:h2:mem:read-benchmark;DB_CLOSE_DELAY=-1",
+        "logging.level.org.hibernate.SQL=off"})
+public class StudentReadBenchmarkTest {
+
+    private static final int ROWS = 10_000;
+
+    private static final int PAGE_SIZE = 100;
+
+    private static final int WARMUP = 2_000;
+
+    private static final int ITERATIONS = 5_000;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private StudentRepository studentRepository;
+
+    @Autowired
+    private StudentMapper studentMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate readWrite;
+
+    private TransactionTemplate readOnly;
+
+    @BeforeEach
+    public void populate() {
+        readWrite = new TransactionTemplate(transactionManager);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        jdbcTemplate.update("delete from student");
+        List<Object[]> rows = new ArrayList<>(ROWS);
+        for (int id = 1; id <= ROWS; id++) {
+            rows.add(new Object[]{id, "Student " + id, 17 + id % 60});
+        }
+        jdbcTemplate.batchUpdate("insert into student (id, name, age) values (?, ?, ?)", rows);
+    }
+
+    @Test
+    public void readById() {
+        Result entities = measure("by id, entity", i -> readWrite.execute(status ->
+                List.of(studentMapper.toDTO(entityManager.find(Student.class, 1 + i % ROWS)))));
+        Result projections = measure("by id, projection", i -> readOnly.execute(status ->
+                List.of(studentRepository.findDTOById(1 + i % ROWS).orElseThrow())));
+
+        assertEquals(entities.sample(), projections.sample());
+    }
+
+    @Test
+    public void readPage() {
+        Result entities = measure("page, entity", i -> readWrite.execute(status ->
+                studentMapper.toDTOList(entityManager
+                        .createQuery("select s from Student s where s.id > :after order by s.id", Student.class)
+                        .setParameter("after", i % (ROWS - PAGE_SIZE))
+                        .setMaxResults(PAGE_SIZE + 1)
+                        .getResultList()
+                        .subList(0, PAGE_SIZE))));
+        Result projections = measure("page, projection", i -> readOnly.execute(status ->
+                studentRepository.findDTOsByIdGreaterThan(i % (ROWS - PAGE_SIZE), PageRequest.ofSize(PAGE_SIZE)).getContent()));
+
+        assertEquals(entities.sample(), projections.sample());
+        assertTrue(projections.bytesPerRead() < entities.bytesPerRead(),
+                "projection allocated " + projections.bytesPerRead() + " bytes per page, entities " + entities.bytesPerRead());
+    }
+
+    private static Result measure(String label, IntFunction<List<StudentDTO>> read) {
+        for (int i = 0; i < WARMUP; i++) {
+            read.apply(i);
+        }
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = THREADS.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            read.apply(i);
+        }
+        long elapsed = System.nanoTime() - start;
+        long bytesPerRead = (THREADS.getThreadAllocatedBytes(threadId) - allocatedBefore) / ITERATIONS;
+
+        System.out.printf("read %s: %d bytes allocated, %d us per read%n", label, bytesPerRead, elapsed / ITERATIONS / 1_000);
+        return new Result(bytesPerRead, read.apply(42));
+    }
+
+    private record Result(long bytesPerRead, List<StudentDTO> sample) {
+    }
+}
@@ -0,0 +1,223 @@
+package com.khanivorous.studentservice.benchmarks;
+
+import com.khanivorous.studentservice.StudentServiceApplication;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Starts the application once on Tomcat's platform thread pool and once with {@code student.threads.virtual=true},
+ * drives each with the same number of concurrent closed-loop clients and reports throughput and latency percentiles.
+ * Every statement sleeps for a simulated database round trip while holding its connection, so requests spend their
+ * time blocked rather than on the cpu of the test machine. Run with {@code mvn test -Pbenchmark,jdk21} on Java 21,
+ * the load can be changed with {@code -Dbenchmark.threads.clients}, {@code -Dbenchmark.threads.seconds},
+ * {@code -Dbenchmark.threads.jdbc-latency-ms} and {@code -Dbenchmark.threads.pool-size}.
+ */
+@Tag("benchmark")
+public class StudentVirtualThreadBenchmarkTest {
+
+    private static final int CLIENTS = Integer.getInteger("benchmark.threads.clients", 1_000);
+
+    private static final int SECONDS = Integer.getInteger("benchmark.threads.seconds", 20);
+
+    private static final long JDBC_LATENCY_MS = Long.getLong("benchmark.threads.jdbc-latency-ms", 10);
+
+    private static final int POOL_SIZE = Integer.getInteger("benchmark.threads.pool-size", 100);
+
+    private static final int WARMUP_SECONDS = 5;
+
+    private static final long BUCKET_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private static final int BUCKETS = 600_000;
+
+    @Test
+    public void comparePlatformAndVirtualThreads() throws Exception {
+        assumeTrue(Runtime.version().feature() >= 21, "virtual threads need Java 21");
+
+        Result platform = run(false);
+        Result virtual = run(true);
+
+        System.out.printf("%d clients, %d ms per statement, %d connections%n", CLIENTS, JDBC_LATENCY_MS, POOL_SIZE);
+        System.out.println(platform.describe("platform threads"));
+        System.out.println(virtual.describe("virtual threads"));
+        assertEquals(0, platform.errors());
+        assertEquals(0, virtual.errors());
+    }
+
+    private static Result run(boolean virtual) throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(StudentServiceApplication.class)
+                .properties(
+                        "server.port=0",
+                        "student.threads.virtual=" + virtual,
+                        "spring.datasource.url=jdbc:h2:mem:threads-" + virtual + ";DB_CLOSE_DELAY=-1",
+                        "spring.datasource.hikari.maximum-pool-size=" + POOL_SIZE,
+                        "server.tomcat.max-connections=" + (CLIENTS * 2),
+                        "server.tomcat.accept-count=" + CLIENTS,
+                        "logging.level.root=warn")
+                .initializers(applicationContext -> applicationContext.getBeanFactory().addBeanPostProcessor(slowStatements()))
+                .run()) {
+            populate(context.getBean(JdbcTemplate.class));
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            return load(URI.create("http://localhost:" + port + "/students?limit=20"));
+        }
+    }
+
+    private static void populate(JdbcTemplate jdbcTemplate) {
+        List<Object[]> rows = new ArrayList<>();
+        for (int id = 1; id <= 1_000; id++) {
+            rows.add(new Object[]{id, "Student " + id, 17 + id % 60});
+        }
+        jdbcTemplate.batchUpdate("insert into student (id, name, age) values (?, ?, ?)", rows);
+    }
+
+    private static Result load(URI uri) throws InterruptedException {
+        ExecutorService clientExecutor = Executors.newFixedThreadPool(4);
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(clientExecutor)
+                .build();
+        HttpRequest request = HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(60)).GET().build();
+        AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+        LongAdder errors = new LongAdder();
+        long measureFrom = System.nanoTime() + TimeUnit.SECONDS.toNanos(WARMUP_SECONDS);
+        long measureUntil = measureFrom + TimeUnit.SECONDS.toNanos(SECONDS);
+        CountDownLatch finished = new CountDownLatch(CLIENTS);
+
+        for (int i = 0; i < CLIENTS; i++) {
+            new Client(client, request, histogram, errors, measureFrom, measureUntil, finished).next();
+        }
+        finished.await();
+        clientExecutor.shutdown();
+        return Result.of(histogram, errors.sum(), SECONDS);
+    }
+
+    private record Client(HttpClient client, HttpRequest request, AtomicLongArray histogram, LongAdder errors,
+                          long measureFrom, long measureUntil, CountDownLatch finished) {
+
+        void next() {
+            long start = System.nanoTime();
+            if (start >= measureUntil) {
+                finished.countDown();
+                return;
+            }
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, failure) -> {
+                if (start >= measureFrom) {
+                    if (failure != null || response.statusCode() != 200) {
+                        errors.increment();
+                    } else {
+                        histogram.incrementAndGet((int) Math.min((System.nanoTime() - start) / BUCKET_NANOS, BUCKETS - 1));
+                    }
+                }
+                next();
+            });
+        }
+    }
+
+    private record Result(long requests, long errors, double throughput, double p50Millis, double p99Millis,
+                          double maxMillis) {
+
+        static Result of(AtomicLongArray histogram, long errors, int seconds) {
+            long requests = 0;
+            for (int i = 0; i < histogram.length(); i++) {
+                requests += histogram.get(i);
+            }
+            return new Result(requests, errors, (double) requests / seconds, percentile(histogram, requests, 0.50),
+                    percentile(histogram, requests, 0.99), percentile(histogram, requests, 1.0));
+        }
+
+        private static double percentile(AtomicLongArray histogram, long requests, double percentile) {
+            long rank = (long) Math.ceil(requests * percentile);
+            long seen = 0;
+            for (int i = 0; i < histogram.length(); i++) {
+                seen += histogram.get(i);
+                if (seen >= rank && seen > 0) {
+                    return (i + 1) * BUCKET_NANOS / 1_000_000.0;
+                }
+            }
+            return 0;
+        }
+
+        String describe(String mode) {
+            return String.format("%-16s %8.0f req/s  p50 %7.1f ms  p99 %7.1f ms  max %7.1f ms  (%d requests, %d errors)",
+                    mode, throughput, p50Millis, p99Millis, maxMillis, requests, errors);
+        }
+    }
+
+    private static BeanPostProcessor slowStatements() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof HikariDataSource hikari) {
+                    DataSource driver = new DriverManagerDataSource(hikari.getJdbcUrl(), hikari.getUsername(), hikari.getPassword());
+                    hikari.setDataSource(proxy(DataSource.class, driver, (target, method, args) -> {
+                        Object result = invoke(target, method, args);
+                        return result instanceof Connection connection ? slowConnection(connection) : result;
+                    }));
+                }
+                return bean;
+            }
+        };
+    }
+
+    private static Connection slowConnection(Connection connection) {
+        return proxy(Connection.class, connection, (target, method, args) -> {
+            Object result = invoke(target, method, args);
+            if (result instanceof PreparedStatement statement) {
+                return proxy(PreparedStatement.class, statement, (statementTarget, statementMethod, statementArgs) -> {
+                    if (statementMethod.getName().startsWith("execute")) {
+                        Thread.sleep(JDBC_LATENCY_MS);
+                    }
+                    return invoke(statementTarget, statementMethod, statementArgs);
+                });
+            }
+            return result;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, T target, ProxyHandler<T> handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> handler.invoke(target, method, args));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException ex) {
+            throw ex.getTargetException();
+        }
+    }
+
+    private interface ProxyHandler<T> {
+        Object invoke(T target, Method method, Object[] args) throws Throwable;
+    }
+}
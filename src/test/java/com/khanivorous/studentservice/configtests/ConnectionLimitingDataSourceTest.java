@@ -0,0 +1,68 @@
+package com.khanivorous.studentservice.configtests;
+
+import com.khanivorous.studentservice.student.config.ConnectionLimitingDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ConnectionLimitingDataSourceTest {
+
+    @Mock
+    private DataSource dataSource;
+
+    @Mock
+    private Connection connection;
+
+    private ConnectionLimitingDataSource dataSourceUnderTest;
+
+    @BeforeEach
+    public void setUp() {
+        this.dataSourceUnderTest = new ConnectionLimitingDataSource(dataSource, 1, Duration.ofMillis(50));
+    }
+
+    @Test
+    public void testClosingConnectionReleasesPermit() throws SQLException {
+        when(dataSource.getConnection()).thenReturn(connection);
+
+        Connection first = dataSourceUnderTest.getConnection();
+        assertEquals(0, dataSourceUnderTest.availablePermits());
+        first.close();
+        first.close();
+
+        assertEquals(1, dataSourceUnderTest.availablePermits());
+        verify(connection, atLeastOnce()).close();
+    }
+
+    @Test
+    public void testWaitingLongerThanTimeoutThrowsError() throws SQLException {
+        when(dataSource.getConnection()).thenReturn(connection);
+        dataSourceUnderTest.getConnection();
+
+        Exception exception = assertThrows(SQLTransientConnectionException.class, () -> dataSourceUnderTest.getConnection());
+
+        assertEquals("No connection became available within 50ms", exception.getMessage());
+        verify(dataSource, times(1)).getConnection();
+    }
+
+    @Test
+    public void testFailedConnectionReleasesPermit() throws SQLException {
+        when(dataSource.getConnection()).thenThrow(new SQLException("refused"));
+
+        assertThrows(SQLException.class, () -> dataSourceUnderTest.getConnection());
+
+        assertEquals(1, dataSourceUnderTest.availablePermits());
+    }
+}
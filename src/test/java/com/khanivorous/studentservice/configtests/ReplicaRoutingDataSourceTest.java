@@ -0,0 +1,120 @@
+package com.khanivorous.studentservice.configtests;
+
+import com.khanivorous.studentservice.student.config.ReplicaRoutingDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ReplicaRoutingDataSourceTest {
+
+    @Mock
+    private DataSource primary;
+
+    @Mock
+    private DataSource firstReplica;
+
+    @Mock
+    private DataSource secondReplica;
+
+    @Mock
+    private Connection primaryConnection;
+
+    @Mock
+    private Connection firstConnection;
+
+    @Mock
+    private Connection secondConnection;
+
+    private ReplicaRoutingDataSource dataSourceUnderTest;
+
+    @BeforeEach
+    public void setUp() {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        replicas.put("first", firstReplica);
+        replicas.put("second", secondReplica);
+        this.dataSourceUnderTest = new ReplicaRoutingDataSource(primary, replicas, Duration.ofSeconds(1));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        ReplicaRoutingDataSource.setReadFromPrimary(false);
+    }
+
+    @Test
+    public void testReadOnlyTransactionsTakeTurnsOnReplicasAndWritesUsePrimary() throws SQLException {
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        when(firstReplica.getConnection()).thenReturn(firstConnection);
+        when(secondReplica.getConnection()).thenReturn(secondConnection);
+
+        assertSame(primaryConnection, dataSourceUnderTest.getConnection());
+
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        assertSame(firstConnection, dataSourceUnderTest.getConnection());
+        assertSame(secondConnection, dataSourceUnderTest.getConnection());
+        assertSame(firstConnection, dataSourceUnderTest.getConnection());
+    }
+
+    @Test
+    public void testReadFromPrimaryOverridesReadOnlyTransaction() throws SQLException {
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        ReplicaRoutingDataSource.setReadFromPrimary(true);
+
+        assertSame(primaryConnection, dataSourceUnderTest.getConnection());
+        verifyNoInteractions(firstReplica, secondReplica);
+    }
+
+    @Test
+    public void testFailingReplicaIsEjectedUntilHealthCheckPasses() throws SQLException {
+        when(firstReplica.getConnection())
+                .thenThrow(new SQLTransientConnectionException("replica down"))
+                .thenReturn(firstConnection);
+        when(secondReplica.getConnection()).thenReturn(secondConnection);
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        assertSame(primaryConnection, dataSourceUnderTest.getConnection());
+        assertEquals(1, dataSourceUnderTest.healthyReplicas());
+        assertSame(secondConnection, dataSourceUnderTest.getConnection());
+        assertSame(secondConnection, dataSourceUnderTest.getConnection());
+
+        when(firstConnection.isValid(1)).thenReturn(true);
+        when(secondConnection.isValid(1)).thenReturn(true);
+        dataSourceUnderTest.checkReplicas();
+
+        assertEquals(2, dataSourceUnderTest.healthyReplicas());
+    }
+
+    @Test
+    public void testHealthCheckEjectsInvalidReplicas() throws SQLException {
+        when(firstReplica.getConnection()).thenReturn(firstConnection);
+        when(secondReplica.getConnection()).thenThrow(new SQLTransientConnectionException("replica down"));
+        when(firstConnection.isValid(1)).thenReturn(false);
+        when(primary.getConnection()).thenReturn(primaryConnection);
+
+        dataSourceUnderTest.checkReplicas();
+
+        assertEquals(0, dataSourceUnderTest.healthyReplicas());
+        verify(firstConnection).close();
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        assertSame(primaryConnection, dataSourceUnderTest.getConnection());
+    }
+}
@@ -6,22 +6,39 @@ import com.khanivorous.studentservice.StudentServiceApplication;
 import com.khanivorous.studentservice.student.NoSuchIdException;
 import com.khanivorous.studentservice.student.controllers.StudentController;
 import com.khanivorous.studentservice.student.entities.Student;
+import com.khanivorous.studentservice.student.events.StudentChangeFeed;
+import com.khanivorous.studentservice.student.events.StudentRecentChanges;
+import com.khanivorous.studentservice.student.events.StudentVersion;
+import com.khanivorous.studentservice.student.export.StudentExporter;
+import com.khanivorous.studentservice.student.model.StudentCursor;
+import com.khanivorous.studentservice.student.model.StudentDTO;
+import com.khanivorous.studentservice.student.idempotency.StudentIdempotencyStore;
 import com.khanivorous.studentservice.student.mapper.StudentMapper;
 import com.khanivorous.studentservice.student.model.StudentCreationDTO;
 import com.khanivorous.studentservice.student.repository.StudentRepository;
+import com.khanivorous.studentservice.student.search.StudentNameIndex;
 import com.khanivorous.studentservice.student.services.StudentServiceImpl;
+import com.khanivorous.studentservice.student.sharding.StudentShards;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -31,7 +48,13 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 @ContextConfiguration(classes = {
         StudentServiceApplication.class,
         StudentServiceImpl.class,
-        StudentMapper.class})
+        StudentMapper.class,
+        StudentExporter.class,
+        StudentVersion.class,
+        StudentChangeFeed.class,
+        StudentRecentChanges.class,
+        StudentNameIndex.class,
+        StudentShards.class})
 class StudentControllerWithRepositoryMockTests {
 
     @Autowired
@@ -40,18 +63,15 @@ class StudentControllerWithRepositoryMockTests {
     @MockBean
     private StudentRepository studentRepository;
 
+    @MockBean
+    private StudentIdempotencyStore studentIdempotencyStore;
+
     @Test
     public void testGetAllUsers() throws Exception {
 
-        Student student1 = new Student();
-        student1.setId(1);
-        student1.setName("Ben");
-        student1.setAge(28);
-
-        ArrayList<Student> studentList = new ArrayList<>();
-        studentList.add(student1);
+        List<StudentDTO> studentList = List.of(new StudentDTO(1, "Ben", 28));
 
-        when(studentRepository.findAll()).thenReturn(studentList);
+        when(studentRepository.findDTOsByIdGreaterThan(eq(0), any(Pageable.class))).thenReturn(new SliceImpl<>(studentList));
 
         mockMvc.perform(get("/students"))
                 .andExpect(status().isOk())
@@ -61,14 +81,50 @@ class StudentControllerWithRepositoryMockTests {
     }
 
     @Test
-    public void testGetUserById() throws Exception {
+    public void testGetAllUsersReturnsNextCursorWhenMoreStudentsExist() throws Exception {
 
-        Student student1 = new Student();
-        student1.setId(1);
-        student1.setName("Ben");
-        student1.setAge(28);
+        List<StudentDTO> studentList = List.of(new StudentDTO(1, "Ben", 28));
 
-        when(studentRepository.findById(1)).thenReturn(Optional.of(student1));
+        when(studentRepository.findDTOsByIdGreaterThan(eq(0), any(Pageable.class)))
+                .thenReturn(new SliceImpl<>(studentList, PageRequest.ofSize(1), true));
+
+        mockMvc.perform(get("/students?limit=1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(StudentController.NEXT_CURSOR_HEADER, StudentCursor.encode(1)))
+                .andExpect(jsonPath("$[0].id", is(1)));
+    }
+
+    @Test
+    public void testGetAllUsersWithInvalidCursorReturnsBadRequest() throws Exception {
+
+        mockMvc.perform(get("/students?after=not-a-cursor"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Invalid cursor not-a-cursor"));
+    }
+
+    @Test
+    public void testExportStudentsAsNdjson() throws Exception {
+
+        doAnswer(invocation -> {
+            Consumer<StudentDTO> consumer = invocation.getArgument(0);
+            consumer.accept(new StudentDTO(1, "Ben", 28));
+            return null;
+        }).when(studentRepository).forEachStudent(any());
+
+        MvcResult result = mockMvc.perform(get("/students/export").accept(StudentExporter.NDJSON_VALUE))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string("{\"id\":1,\"name\":\"Ben\",\"age\":28}\n"));
+        verify(studentRepository, never()).findAll();
+    }
+
+    @Test
+    public void testGetUserById() throws Exception {
+
+        when(studentRepository.findDTOById(1)).thenReturn(Optional.of(new StudentDTO(1, "Ben", 28)));
 
         mockMvc.perform(get("/students/1"))
                 .andExpect(status().isOk())
@@ -77,6 +133,31 @@ class StudentControllerWithRepositoryMockTests {
                 .andExpect(jsonPath("$.age", is(28)));
     }
 
+    @Test
+    public void testETagChangesWhenAStudentIsAdded() throws Exception {
+
+        Student student1 = new Student();
+        student1.setId(1);
+        student1.setName("Andy");
+        student1.setAge(22);
+
+        when(studentRepository.findDTOsByIdGreaterThan(eq(0), any(Pageable.class))).thenReturn(new SliceImpl<>(new ArrayList<>()));
+        when(studentRepository.save(any(Student.class))).thenReturn(student1);
+
+        String eTag = mockMvc.perform(get("/students"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(post("/students")
+                        .content(new ObjectMapper().writeValueAsString(new StudentCreationDTO("Andy", 22)))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(get("/students").header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, not(eTag)));
+    }
+
     @Test
     public void testUnknownIdReturnsError() throws Exception {
 
@@ -108,6 +189,33 @@ class StudentControllerWithRepositoryMockTests {
                 .andExpect(jsonPath("$.age", is(22)));
     }
 
+    @Test
+    public void testAddNewStudents() throws Exception {
+
+        ObjectMapper mapper = new ObjectMapper();
+        String requestBody = mapper.writeValueAsString(List.of(
+                new StudentCreationDTO("Andy", 22),
+                new StudentCreationDTO("", 22)));
+
+        Student student1 = new Student();
+        student1.setId(1);
+        student1.setName("Andy");
+        student1.setAge(22);
+
+        when(studentRepository.saveAll(anyIterable())).thenReturn(List.of(student1));
+
+        mockMvc.perform(post("/students/batch")
+                        .content(requestBody)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isMultiStatus())
+                .andExpect(jsonPath("$.created[0].id", is(1)))
+                .andExpect(jsonPath("$.created[0].name", is("Andy")))
+                .andExpect(jsonPath("$.errors[0].index", is(1)))
+                .andExpect(jsonPath("$.errors[0].errors.name", is("name must not be empty")));
+        verify(studentRepository, times(1)).saveAll(anyIterable());
+        verify(studentRepository, never()).save(any());
+    }
+
     @Test
     public void validateEmptyNameInRequest() throws Exception {
         ObjectMapper mapper = new ObjectMapper();
@@ -150,10 +258,24 @@ class StudentControllerWithRepositoryMockTests {
     @Test
     public void testDeleteStudentById() throws Exception {
 
-        when(studentRepository.existsById(1)).thenReturn(true);
+        when(studentRepository.deleteStudentById(1)).thenReturn(1);
         mockMvc.perform(delete("/students/1"))
                 .andExpect(status().isNoContent());
-        verify(studentRepository, times(1)).deleteById(1);
+        verify(studentRepository, times(1)).deleteStudentById(1);
+        verify(studentRepository, never()).existsById(anyInt());
+    }
+
+    @Test
+    public void testDeleteStudentsByIds() throws Exception {
+
+        when(studentRepository.deleteExistingByIdIn(List.of(1, 2))).thenReturn(List.of(1));
+
+        mockMvc.perform(delete("/students")
+                        .content("[1,2,2]")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.deleted", is(List.of(1))))
+                .andExpect(jsonPath("$.missing", is(List.of(2))));
     }
 
     @Test
@@ -1,21 +1,41 @@
 package com.khanivorous.studentservice.controllertests;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.khanivorous.studentservice.student.IdempotencyKeyReusedException;
+import com.khanivorous.studentservice.student.InvalidPageRequestException;
 import com.khanivorous.studentservice.student.NoSuchIdException;
 import com.khanivorous.studentservice.student.controllers.StudentController;
+import com.khanivorous.studentservice.student.entities.Student;
+import com.khanivorous.studentservice.student.events.StudentChangeFeed;
+import com.khanivorous.studentservice.student.events.StudentVersion;
+import com.khanivorous.studentservice.student.export.StudentExporter;
 import com.khanivorous.studentservice.student.mapper.StudentMapper;
+import com.khanivorous.studentservice.student.model.StudentBatchResult;
+import com.khanivorous.studentservice.student.model.StudentBulkDeleteResult;
 import com.khanivorous.studentservice.student.model.StudentCreationDTO;
+import com.khanivorous.studentservice.student.model.StudentCreationResult;
 import com.khanivorous.studentservice.student.model.StudentDTO;
+import com.khanivorous.studentservice.student.model.StudentMatch;
+import com.khanivorous.studentservice.student.model.StudentPage;
+import com.khanivorous.studentservice.student.model.StudentQuery;
+import com.khanivorous.studentservice.student.model.StudentSort;
+import com.khanivorous.studentservice.student.model.StudentStats;
 import com.khanivorous.studentservice.student.services.StudentService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 import static org.hamcrest.Matchers.is;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -26,6 +46,7 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(StudentController.class)
+@Import({StudentExporter.class, StudentVersion.class, StudentChangeFeed.class})
 public class StudentControllerWithServiceMockTests {
 
     @Autowired
@@ -45,15 +66,193 @@ public class StudentControllerWithServiceMockTests {
         List<StudentDTO> studentList = new ArrayList<>();
         studentList.add(student1);
 
-        when(studentService.getAllStudents()).thenReturn(studentList);
+        when(studentService.getStudentPage(StudentQuery.ALL, null, 100)).thenReturn(new StudentPage(studentList, null));
 
         mockMvc.perform(get("/students"))
                 .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(StudentController.NEXT_CURSOR_HEADER))
                 .andExpect(jsonPath("$[0].name", is("Ben")))
                 .andExpect(jsonPath("$[0].id", is(1)))
                 .andExpect(jsonPath("$[0].age", is(28)));
     }
 
+    @Test
+    public void testGetAllUsersWithCursorReturnsNextLink() throws Exception {
+
+        StudentDTO student1 = new StudentDTO(2, "Ben", 28);
+
+        List<StudentDTO> studentList = new ArrayList<>();
+        studentList.add(student1);
+
+        when(studentService.getStudentPage(StudentQuery.ALL, "MQ", 1)).thenReturn(new StudentPage(studentList, "Mg"));
+
+        mockMvc.perform(get("/students?limit=1&after=MQ"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(StudentController.NEXT_CURSOR_HEADER, "Mg"))
+                .andExpect(header().string("Link", "<http://localhost/students?limit=1&after=Mg>; rel=\"next\""))
+                .andExpect(jsonPath("$[0].id", is(2)));
+    }
+
+    @Test
+    public void testGetAllUsersWithInvalidLimitReturnsBadRequest() throws Exception {
+        when(studentService.getStudentPage(StudentQuery.ALL, null, 0)).thenThrow(new InvalidPageRequestException("limit must be between 1 and 1000"));
+        mockMvc.perform(get("/students?limit=0"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("limit must be between 1 and 1000"));
+    }
+
+    @Test
+    public void testGetAllUsersPassesFiltersAndSort() throws Exception {
+        StudentQuery query = new StudentQuery("Be", 20, 30, StudentSort.NAME);
+        when(studentService.getStudentPage(query, null, 100)).thenReturn(new StudentPage(List.of(new StudentDTO(1, "Ben", 28)), "bmFtZToxOkJlbg"));
+
+        mockMvc.perform(get("/students?namePrefix=Be&minAge=20&maxAge=30&sort=name"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Link", "<http://localhost/students?namePrefix=Be&minAge=20&maxAge=30&sort=name&after=bmFtZToxOkJlbg>; rel=\"next\""))
+                .andExpect(jsonPath("$[0].name", is("Ben")));
+    }
+
+    @Test
+    public void testGetAllUsersWithUnknownSortReturnsBadRequest() throws Exception {
+        mockMvc.perform(get("/students?sort=email"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("sort must be one of id, name, age"));
+        verifyNoInteractions(studentService);
+    }
+
+    @Test
+    public void testAddNewStudentWithRepeatedIdempotencyKeyReplaysStudent() throws Exception {
+        when(studentService.addNewStudent("Ben", 28, "key-1"))
+                .thenReturn(new StudentCreationResult(new StudentDTO(1, "Ben", 28), true));
+
+        mockMvc.perform(post("/students")
+                        .header(StudentController.IDEMPOTENCY_KEY_HEADER, "key-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"Ben\",\"age\":28}"))
+                .andExpect(status().isCreated())
+                .andExpect(header().string(StudentController.IDEMPOTENT_REPLAYED_HEADER, "true"))
+                .andExpect(jsonPath("$.id", is(1)));
+        verify(studentService, never()).addNewStudent("Ben", 28);
+    }
+
+    @Test
+    public void testAddNewStudentWithReusedIdempotencyKeyReturnsUnprocessableEntity() throws Exception {
+        when(studentService.addNewStudent("Andy", 22, "key-1")).thenThrow(new IdempotencyKeyReusedException("key-1"));
+
+        mockMvc.perform(post("/students")
+                        .header(StudentController.IDEMPOTENCY_KEY_HEADER, "key-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"Andy\",\"age\":22}"))
+                .andExpect(status().isUnprocessableEntity());
+    }
+
+    @Test
+    public void testReplaceStudent() throws Exception {
+        when(studentService.updateStudent(1, "Ben", 29, 3L)).thenReturn(new StudentDTO(1, "Ben", 29, 4L));
+
+        mockMvc.perform(put("/students/1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"Ben\",\"age\":29,\"version\":3}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.age", is(29)))
+                .andExpect(jsonPath("$.version", is(4)));
+    }
+
+    @Test
+    public void testReplaceStudentWithoutAgeReturnsBadRequest() throws Exception {
+        mockMvc.perform(put("/students/1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"Ben\"}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.age", is("age must not be null")));
+        verifyNoInteractions(studentService);
+    }
+
+    @Test
+    public void testPatchStudentAtOtherVersionReturnsConflict() throws Exception {
+        when(studentService.updateStudent(1, null, 29, 3L)).thenThrow(new ObjectOptimisticLockingFailureException(Student.class, 1));
+
+        mockMvc.perform(patch("/students/1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"age\":29,\"version\":3}"))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    public void testPatchStudentWithTooYoungAgeReturnsBadRequest() throws Exception {
+        mockMvc.perform(patch("/students/1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"age\":12}"))
+                .andExpect(status().isBadRequest());
+        verifyNoInteractions(studentService);
+    }
+
+    @Test
+    public void testGetStudentStats() throws Exception {
+        when(studentService.getStudentStats(5)).thenReturn(new StudentStats(3, 18, 42, 26.0,
+                List.of(new StudentStats.AgeBucket(15, 19, 2), new StudentStats.AgeBucket(40, 44, 1))));
+
+        mockMvc.perform(get("/students/stats?bucketSize=5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.count", is(3)))
+                .andExpect(jsonPath("$.meanAge", is(26.0)))
+                .andExpect(jsonPath("$.ageHistogram[0].fromAge", is(15)))
+                .andExpect(jsonPath("$.ageHistogram[0].toAge", is(19)))
+                .andExpect(jsonPath("$.ageHistogram[1].count", is(1)));
+    }
+
+    @Test
+    public void testSearchStudentsReturnsRankedMatches() throws Exception {
+        when(studentService.searchStudents("bne", 10)).thenReturn(List.of(
+                new StudentMatch(new StudentDTO(1, "Ben", 28), 0.4),
+                new StudentMatch(new StudentDTO(2, "Benjamin", 30), 0.25)));
+
+        mockMvc.perform(get("/students/search?q=bne"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].student.name", is("Ben")))
+                .andExpect(jsonPath("$[0].score", is(0.4)))
+                .andExpect(jsonPath("$[1].student.id", is(2)));
+    }
+
+    @Test
+    public void testExportStudentsAsNdjson() throws Exception {
+
+        doAnswer(invocation -> {
+            Consumer<StudentDTO> consumer = invocation.getArgument(0);
+            consumer.accept(new StudentDTO(1, "Ben", 28));
+            consumer.accept(new StudentDTO(2, "Andy", 22));
+            return null;
+        }).when(studentService).exportStudents(any());
+
+        MvcResult result = mockMvc.perform(get("/students/export").accept(StudentExporter.NDJSON_VALUE))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(StudentExporter.NDJSON_VALUE))
+                .andExpect(content().string("{\"id\":1,\"name\":\"Ben\",\"age\":28}\n{\"id\":2,\"name\":\"Andy\",\"age\":22}\n"));
+    }
+
+    @Test
+    public void testExportStudentsAsCsv() throws Exception {
+
+        doAnswer(invocation -> {
+            Consumer<StudentDTO> consumer = invocation.getArgument(0);
+            consumer.accept(new StudentDTO(1, "Ben", 28));
+            consumer.accept(new StudentDTO(2, "Smith, \"Andy\"", 22));
+            return null;
+        }).when(studentService).exportStudents(any());
+
+        MvcResult result = mockMvc.perform(get("/students/export").accept(StudentExporter.CSV_VALUE))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string("id,name,age\n1,Ben,28\n2,\"Smith, \"\"Andy\"\"\",22\n"));
+    }
+
     @Test
     public void testGetUserById() throws Exception {
 
@@ -68,6 +267,36 @@ public class StudentControllerWithServiceMockTests {
                 .andExpect(jsonPath("$.age", is(28)));
     }
 
+    @Test
+    public void testGetUserByIdWithCurrentETagReturnsNotModified() throws Exception {
+
+        when(studentService.getStudentById(1)).thenReturn(new StudentDTO(1, "Ben", 28));
+
+        String eTag = mockMvc.perform(get("/students/1"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/students/1").header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        verify(studentService, times(1)).getStudentById(1);
+    }
+
+    @Test
+    public void testGetAllUsersWithCurrentETagReturnsNotModified() throws Exception {
+
+        when(studentService.getStudentPage(StudentQuery.ALL, null, 100)).thenReturn(new StudentPage(List.of(new StudentDTO(1, "Ben", 28)), null));
+
+        String eTag = mockMvc.perform(get("/students"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/students").header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified());
+        verify(studentService, times(1)).getStudentPage(StudentQuery.ALL, null, 100);
+    }
+
     @Test
     public void testUnknownIdReturnsError() throws Exception {
         when(studentService.getStudentById(2)).thenThrow(new NoSuchIdException(2));
@@ -96,6 +325,62 @@ public class StudentControllerWithServiceMockTests {
                 .andExpect(jsonPath("$.age", is(22)));
     }
 
+    @Test
+    public void testAddNewStudentsReportsInvalidStudentsByIndex() throws Exception {
+
+        List<StudentCreationDTO> students = List.of(
+                new StudentCreationDTO("Andy", 22),
+                new StudentCreationDTO("Andrew", 16),
+                new StudentCreationDTO("Ben", 28));
+
+        when(studentService.addNewStudents(any())).thenReturn(new StudentBatchResult(
+                List.of(new StudentDTO(1, "Andy", 22), new StudentDTO(2, "Ben", 28)), List.of()));
+
+        ObjectMapper mapper = new ObjectMapper();
+        mockMvc.perform(post("/students/batch")
+                        .content(mapper.writeValueAsString(students))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isMultiStatus())
+                .andExpect(jsonPath("$.created[0].id", is(1)))
+                .andExpect(jsonPath("$.created[1].id", is(2)))
+                .andExpect(jsonPath("$.errors[0].index", is(1)))
+                .andExpect(jsonPath("$.errors[0].errors.age", is("age cannot be less than 17 years old")));
+
+        verify(studentService).addNewStudents(Map.of(0, students.get(0), 2, students.get(2)));
+    }
+
+    @Test
+    public void testAddNewStudentsCreatesEveryValidStudent() throws Exception {
+
+        when(studentService.addNewStudents(any())).thenReturn(new StudentBatchResult(
+                List.of(new StudentDTO(1, "Andy", 22)), List.of()));
+
+        ObjectMapper mapper = new ObjectMapper();
+        mockMvc.perform(post("/students/batch")
+                        .content(mapper.writeValueAsString(List.of(new StudentCreationDTO("Andy", 22))))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.created[0].name", is("Andy")))
+                .andExpect(jsonPath("$.errors.length()", is(0)));
+    }
+
+    @Test
+    public void testAddTooManyStudentsReturnsBadRequest() throws Exception {
+
+        List<StudentCreationDTO> students = new ArrayList<>();
+        for (int i = 0; i <= StudentController.MAX_BATCH_SIZE; i++) {
+            students.add(new StudentCreationDTO("Andy", 22));
+        }
+
+        ObjectMapper mapper = new ObjectMapper();
+        mockMvc.perform(post("/students/batch")
+                        .content(mapper.writeValueAsString(students))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Batch of 10001 items exceeds the maximum of 10000"));
+        verify(studentService, never()).addNewStudents(any());
+    }
+
     @Test
     public void validateEmptyNameInRequest() throws Exception {
         ObjectMapper mapper = new ObjectMapper();
@@ -144,6 +429,19 @@ public class StudentControllerWithServiceMockTests {
         verify(studentService, times(1)).deleteStudentById(1);
     }
 
+    @Test
+    public void testDeleteStudentsByIds() throws Exception {
+
+        when(studentService.deleteStudentsByIds(List.of(1, 2))).thenReturn(new StudentBulkDeleteResult(List.of(1), List.of(2)));
+
+        mockMvc.perform(delete("/students")
+                        .content("[1,2]")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.deleted[0]", is(1)))
+                .andExpect(jsonPath("$.missing[0]", is(2)));
+    }
+
     @Test
     public void testDeleteNonExistentStudentThrowsError() throws Exception {
 
@@ -0,0 +1,125 @@
+package com.khanivorous.studentservice.eventtests;
+
+import com.khanivorous.studentservice.student.events.StudentChangeFeed;
+import com.khanivorous.studentservice.student.events.StudentCreatedEvent;
+import com.khanivorous.studentservice.student.events.StudentDeletedEvent;
+import com.khanivorous.studentservice.student.events.StudentUpdatedEvent;
+import com.khanivorous.studentservice.student.model.StudentDTO;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StudentChangeFeedTest {
+
+    private final StudentChangeFeed feed = new StudentChangeFeed(3, 2, Duration.ofHours(1));
+
+    @Test
+    public void testSubscriberReceivesChangesInCommitOrder() {
+        StudentDTO ben = new StudentDTO(1, "Ben", 28, 0L);
+        StudentDTO benjamin = new StudentDTO(1, "Benjamin", 28, 1L);
+
+        StepVerifier.create(feed.subscribe(null))
+                .expectNextMatches(StudentChangeFeedTest::isHeartbeat)
+                .then(() -> {
+                    feed.onCreated(new StudentCreatedEvent(ben));
+                    feed.onUpdated(new StudentUpdatedEvent(benjamin));
+                    feed.onDeleted(new StudentDeletedEvent(1));
+                })
+                .assertNext(event -> assertEvent(StudentChangeFeed.CREATED_EVENT, ben, event))
+                .assertNext(event -> assertEvent(StudentChangeFeed.UPDATED_EVENT, benjamin, event))
+                .assertNext(event -> assertEvent(StudentChangeFeed.DELETED_EVENT, new StudentDTO(1, null, null), event))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    public void testResumeSendsOnlyTheMissedChanges() {
+        List<ServerSentEvent<?>> seen = new ArrayList<>();
+        StepVerifier.create(feed.subscribe(null))
+                .expectNextMatches(StudentChangeFeedTest::isHeartbeat)
+                .then(() -> feed.onCreated(new StudentCreatedEvent(new StudentDTO(1, "Ben", 28, 0L))))
+                .recordWith(() -> seen)
+                .expectNextCount(1)
+                .thenCancel()
+                .verify();
+
+        StudentDTO andy = new StudentDTO(2, "Andy", 22, 0L);
+        feed.onCreated(new StudentCreatedEvent(andy));
+
+        StepVerifier.create(feed.subscribe(seen.get(0).id()))
+                .expectNextMatches(StudentChangeFeedTest::isHeartbeat)
+                .assertNext(event -> assertEvent(StudentChangeFeed.CREATED_EVENT, andy, event))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    public void testResumeFromEvictedOrForeignIdSendsReset() {
+        String first = lastEventId();
+        for (int id = 2; id <= 5; id++) {
+            feed.onCreated(new StudentCreatedEvent(new StudentDTO(id, "Student" + id, 20, 0L)));
+        }
+
+        StepVerifier.create(feed.subscribe(first))
+                .expectNextMatches(StudentChangeFeedTest::isHeartbeat)
+                .assertNext(event -> assertEquals(StudentChangeFeed.RESET_EVENT, event.event()))
+                .thenCancel()
+                .verify();
+        StepVerifier.create(feed.subscribe("0123abcd-1"))
+                .expectNextMatches(StudentChangeFeedTest::isHeartbeat)
+                .assertNext(event -> assertEquals(StudentChangeFeed.RESET_EVENT, event.event()))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    public void testSlowSubscriberIsDisconnectedWithoutBlockingOthers() {
+        StepVerifier.create(feed.subscribe(null), 0)
+                .then(() -> {
+                    for (int id = 1; id <= 3; id++) {
+                        feed.onCreated(new StudentCreatedEvent(new StudentDTO(id, "Student" + id, 20, 0L)));
+                    }
+                })
+                .thenRequest(Long.MAX_VALUE)
+                .expectNextMatches(StudentChangeFeedTest::isHeartbeat)
+                .expectNextCount(2)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+
+        StepVerifier.create(feed.subscribe(null))
+                .expectNextMatches(StudentChangeFeedTest::isHeartbeat)
+                .then(() -> feed.onDeleted(new StudentDeletedEvent(3)))
+                .assertNext(event -> assertEquals(StudentChangeFeed.DELETED_EVENT, event.event()))
+                .thenCancel()
+                .verify();
+    }
+
+    private String lastEventId() {
+        List<ServerSentEvent<?>> seen = new ArrayList<>();
+        StepVerifier.create(feed.subscribe(null))
+                .expectNextMatches(StudentChangeFeedTest::isHeartbeat)
+                .then(() -> feed.onCreated(new StudentCreatedEvent(new StudentDTO(1, "Ben", 28, 0L))))
+                .recordWith(() -> seen)
+                .expectNextCount(1)
+                .thenCancel()
+                .verify();
+        return seen.get(0).id();
+    }
+
+    private static boolean isHeartbeat(ServerSentEvent<?> event) {
+        return event.event() == null && event.comment() != null;
+    }
+
+    private static void assertEvent(String type, StudentDTO student, ServerSentEvent<?> event) {
+        assertEquals(type, event.event());
+        assertEquals(student, event.data());
+        assertTrue(event.id() != null && !event.id().isEmpty());
+    }
+}
@@ -0,0 +1,35 @@
+package com.khanivorous.studentservice.eventtests;
+
+import com.khanivorous.studentservice.student.events.StudentCreatedEvent;
+import com.khanivorous.studentservice.student.events.StudentDeletedEvent;
+import com.khanivorous.studentservice.student.events.StudentVersion;
+import com.khanivorous.studentservice.student.model.StudentDTO;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class StudentVersionTest {
+
+    @Test
+    public void testETagChangesWithEveryChange() {
+        StudentVersion studentVersion = new StudentVersion(true);
+        String before = studentVersion.eTag();
+        assertEquals(before, studentVersion.eTag());
+
+        studentVersion.onCreated(new StudentCreatedEvent(new StudentDTO(1, "Ben", 28)));
+        String created = studentVersion.eTag();
+        assertNotEquals(before, created);
+
+        studentVersion.onDeleted(new StudentDeletedEvent(1));
+        assertNotEquals(created, studentVersion.eTag());
+    }
+
+    @Test
+    public void testNoETagWhenTurnedOff() {
+        StudentVersion studentVersion = new StudentVersion(false);
+        studentVersion.onCreated(new StudentCreatedEvent(new StudentDTO(1, "Ben", 28)));
+        assertNull(studentVersion.eTag());
+    }
+}
@@ -0,0 +1,93 @@
+package com.khanivorous.studentservice.exporttests;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.khanivorous.studentservice.student.export.StudentJsonHttpMessageConverter;
+import com.khanivorous.studentservice.student.model.StudentDTO;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.http.MockHttpInputMessage;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StudentJsonHttpMessageConverterTest {
+
+    private static final Type STUDENT_LIST = new ParameterizedTypeReference<List<StudentDTO>>() {
+    }.getType();
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    private final StudentJsonHttpMessageConverter converterUnderTest = new StudentJsonHttpMessageConverter(objectMapper);
+
+    @Test
+    public void testStudentIsWrittenExactlyAsJacksonWritesIt() throws Exception {
+        for (StudentDTO student : List.of(
+                new StudentDTO(1, "Ben", 28),
+                new StudentDTO(2, "Ann", 30, 7L),
+                new StudentDTO(null, null, null),
+                new StudentDTO(Integer.MIN_VALUE, "", Integer.MAX_VALUE, Long.MIN_VALUE),
+                new StudentDTO(3, "\"quoted\" back\\slash /slash", -1),
+                new StudentDTO(4, "tab\tnew\nline\rcr\bbs\ffeed\u0000nul\u001fus\u007fdel", 20),
+                new StudentDTO(5, "Zoë Łukasz 山田   😀", 21))) {
+            assertArrayEquals(objectMapper.writeValueAsBytes(student), write(student, StudentDTO.class));
+        }
+    }
+
+    @Test
+    public void testListIsWrittenExactlyAsJacksonWritesIt() throws Exception {
+        List<StudentDTO> students = new ArrayList<>();
+        for (int id = 1; id <= 10_000; id++) {
+            students.add(new StudentDTO(id, "Student " + id + " Ñ", 17 + id % 60, id % 3 == 0 ? (long) id : null));
+        }
+        students.add(null);
+
+        assertArrayEquals(objectMapper.writeValueAsBytes(students), write(students, STUDENT_LIST));
+        assertArrayEquals(objectMapper.writeValueAsBytes(List.of()), write(List.of(), STUDENT_LIST));
+    }
+
+    @Test
+    public void testOnlyStudentsAreWrittenAsJson() {
+        assertTrue(converterUnderTest.canWrite(StudentDTO.class, StudentDTO.class, MediaType.APPLICATION_JSON));
+        assertTrue(converterUnderTest.canWrite(STUDENT_LIST, ArrayList.class, null));
+        assertFalse(converterUnderTest.canWrite(STUDENT_LIST, ArrayList.class, MediaType.APPLICATION_CBOR));
+        assertFalse(converterUnderTest.canWrite(List.class, ArrayList.class, MediaType.APPLICATION_JSON));
+        assertFalse(converterUnderTest.canWrite(new ParameterizedTypeReference<List<String>>() {
+        }.getType(), ArrayList.class, MediaType.APPLICATION_JSON));
+        assertFalse(converterUnderTest.canRead(StudentDTO.class, StudentDTO.class, MediaType.APPLICATION_JSON));
+        assertFalse(converterUnderTest.canRead(StudentDTO.class, MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    public void testReadingIsRejectedAsNotReadable() {
+        MockHttpInputMessage body = new MockHttpInputMessage("{\"id\":1}".getBytes(StandardCharsets.UTF_8));
+
+        assertThrows(HttpMessageNotReadableException.class, () -> converterUnderTest.read(StudentDTO.class, body));
+        assertThrows(HttpMessageNotReadableException.class, () -> converterUnderTest.read(STUDENT_LIST, null, body));
+    }
+
+    @Test
+    public void testStudentsAreLeftToJacksonWhenItIsConfiguredDifferently() {
+        StudentJsonHttpMessageConverter indented = new StudentJsonHttpMessageConverter(
+                Jackson2ObjectMapperBuilder.json().featuresToEnable(SerializationFeature.INDENT_OUTPUT).build());
+
+        assertFalse(indented.canWrite(StudentDTO.class, StudentDTO.class, MediaType.APPLICATION_JSON));
+    }
+
+    private byte[] write(Object value, Type type) throws Exception {
+        MockHttpOutputMessage output = new MockHttpOutputMessage();
+        converterUnderTest.write(value, type, MediaType.APPLICATION_JSON, output);
+        return output.getBodyAsBytes();
+    }
+}
@@ -0,0 +1,189 @@
+package com.khanivorous.studentservice.ingesttests;
+
+import com.khanivorous.studentservice.student.IngestQueueFullException;
+import com.khanivorous.studentservice.student.NoSuchIdException;
+import com.khanivorous.studentservice.student.events.StudentCreatedEvent;
+import com.khanivorous.studentservice.student.ingest.StudentIngestQueue;
+import com.khanivorous.studentservice.student.model.StudentDTO;
+import com.khanivorous.studentservice.student.model.StudentIngestStatus;
+import com.khanivorous.studentservice.student.repository.StudentRepository;
+import com.khanivorous.studentservice.student.sharding.StudentShards;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class StudentIngestQueueTest {
+
+    @Mock
+    private StudentRepository studentRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final List<List<StudentDTO>> batches = new CopyOnWriteArrayList<>();
+
+    private StudentIngestQueue queue;
+
+    @BeforeEach
+    public void setUp() {
+        AtomicInteger ids = new AtomicInteger();
+        lenient().when(studentRepository.nextId()).thenAnswer(invocation -> ids.incrementAndGet());
+        lenient().doAnswer(invocation -> batches.add(new ArrayList<>(invocation.getArgument(0))))
+                .when(studentRepository).insertAll(any());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (queue != null && queue.isRunning()) {
+            queue.stop();
+        }
+    }
+
+    @Test
+    public void testAcceptedStudentsAreWrittenInBatchesOfFlushSize() {
+        queue = newQueue(10, 2, Duration.ofSeconds(10), StudentIngestQueue.Durability.ACCEPTED);
+        queue.start();
+
+        List<StudentDTO> accepted = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            StudentIngestQueue.Receipt receipt = queue.accept("Student" + i, 20 + i);
+            assertFalse(receipt.committed());
+            accepted.add(receipt.student());
+        }
+        queue.stop();
+
+        assertEquals(accepted, batches.stream().flatMap(List::stream).toList());
+        assertTrue(batches.stream().allMatch(batch -> batch.size() <= 2));
+        accepted.forEach(student -> verify(eventPublisher).publishEvent(new StudentCreatedEvent(student)));
+        assertEquals(batches.size(), meterRegistry.get("student.ingest.flush").tag("outcome", "success").timer().count());
+    }
+
+    @Test
+    public void testPartialBatchIsWrittenAfterFlushInterval() throws InterruptedException {
+        queue = newQueue(10, 100, Duration.ofMillis(20), StudentIngestQueue.Durability.ACCEPTED);
+        queue.start();
+
+        StudentDTO student = queue.accept("Ben", 28).student();
+
+        awaitUntil(() -> !batches.isEmpty());
+        assertEquals(List.of(List.of(student)), batches);
+    }
+
+    @Test
+    public void testFullQueueRejectsStudents() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> release.await(10, TimeUnit.SECONDS)).when(studentRepository).insertAll(any());
+        queue = newQueue(1, 1, Duration.ofMillis(10), StudentIngestQueue.Durability.ACCEPTED);
+        queue.start();
+
+        queue.accept("Ben", 28);
+        // the writer takes the first student off the queue and blocks writing it, the second one fills the queue
+        awaitUntil(() -> meterRegistry.get("student.ingest.queue.depth").gauge().value() == 0);
+        queue.accept("Andy", 22);
+
+        assertThrows(IngestQueueFullException.class, () -> queue.accept("Bob", 25));
+        assertEquals(1, meterRegistry.get("student.ingest.rejected").counter().count());
+        release.countDown();
+    }
+
+    @Test
+    public void testStatusFollowsStudentFromQueuedToWritten() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> release.await(10, TimeUnit.SECONDS)).when(studentRepository).insertAll(any());
+        when(studentRepository.existsById(1)).thenReturn(true);
+        queue = newQueue(10, 1, Duration.ofMillis(10), StudentIngestQueue.Durability.ACCEPTED);
+        queue.start();
+
+        int id = queue.accept("Ben", 28).student().id();
+        assertEquals(StudentIngestStatus.State.QUEUED, queue.status(id).state());
+
+        release.countDown();
+        awaitUntil(() -> queue.status(id).state() != StudentIngestStatus.State.QUEUED);
+        assertEquals(StudentIngestStatus.State.WRITTEN, queue.status(id).state());
+    }
+
+    @Test
+    public void testFailedBatchIsReportedAndNotPublished() throws InterruptedException {
+        doThrow(new DataIntegrityViolationException("duplicate")).when(studentRepository).insertAll(any());
+        queue = newQueue(10, 1, Duration.ofMillis(10), StudentIngestQueue.Durability.ACCEPTED);
+        queue.start();
+
+        int id = queue.accept("Ben", 28).student().id();
+
+        awaitUntil(() -> queue.status(id).state() != StudentIngestStatus.State.QUEUED);
+        assertEquals(StudentIngestStatus.State.FAILED, queue.status(id).state());
+        verify(eventPublisher, times(0)).publishEvent(any());
+        assertEquals(1, meterRegistry.get("student.ingest.flush").tag("outcome", "failure").timer().count());
+    }
+
+    @Test
+    public void testUnknownIdHasNoStatus() {
+        queue = newQueue(10, 1, Duration.ofMillis(10), StudentIngestQueue.Durability.ACCEPTED);
+
+        assertThrows(NoSuchIdException.class, () -> queue.status(123));
+    }
+
+    @Test
+    public void testCommittedDurabilityWaitsForTheBatch() {
+        queue = newQueue(10, 100, Duration.ofMillis(20), StudentIngestQueue.Durability.COMMITTED);
+        queue.start();
+
+        StudentIngestQueue.Receipt receipt = queue.accept("Ben", 28);
+
+        assertTrue(receipt.committed());
+        assertEquals(List.of(List.of(receipt.student())), batches);
+    }
+
+    @Test
+    public void testStoppedQueueRejectsStudents() {
+        queue = newQueue(10, 1, Duration.ofMillis(10), StudentIngestQueue.Durability.ACCEPTED);
+
+        assertThrows(IngestQueueFullException.class, () -> queue.accept("Ben", 28));
+    }
+
+    private StudentIngestQueue newQueue(int capacity, int flushSize, Duration flushInterval, StudentIngestQueue.Durability durability) {
+        return new StudentIngestQueue(studentRepository, new StudentShards(studentRepository, Optional.empty(), Optional.empty(), 1),
+                eventPublisher, meterRegistry, capacity, flushSize, flushInterval,
+                durability, Duration.ofSeconds(5));
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not met within 5 seconds");
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.khanivorous.studentservice.loadtests;
+
+import java.util.Arrays;
+
+enum Endpoint {
+
+    POST("post"),
+    GET_BY_ID("get"),
+    GET_ALL("list"),
+    DELETE("delete");
+
+    private final String label;
+
+    Endpoint(String label) {
+        this.label = label;
+    }
+
+    String label() {
+        return label;
+    }
+
+    static Endpoint named(String label) {
+        return Arrays.stream(values())
+                .filter(endpoint -> endpoint.label.equals(label))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown endpoint " + label + ", expected one of post, get, list, delete"));
+    }
+}
@@ -0,0 +1,44 @@
+package com.khanivorous.studentservice.loadtests;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Settings for {@link StudentLoadTest}, read from system properties so they can be passed on the maven command line.
+ * Per-endpoint values are lists such as {@code post=20,get=50,list=20,delete=10}, using the names of {@link Endpoint}.
+ * <ul>
+ *     <li>{@code load.rate} requests per second across all endpoints, default 50</li>
+ *     <li>{@code load.duration} seconds to measure for, default 30, after {@code load.warmup} seconds, default 10</li>
+ *     <li>{@code load.clients} most requests in flight at once, default 64</li>
+ *     <li>{@code load.mix} relative weight of each endpoint</li>
+ *     <li>{@code load.budget.p99} and {@code load.budget.p999} latency budgets in milliseconds</li>
+ * </ul>
+ */
+record LoadTestConfig(int rate, Duration warmup, Duration duration, int clients, Map<Endpoint, Integer> mix,
+                      Map<Endpoint, Long> p99BudgetMillis, Map<Endpoint, Long> p999BudgetMillis) {
+
+    static LoadTestConfig fromSystemProperties() {
+        return new LoadTestConfig(
+                Integer.getInteger("load.rate", 50),
+                Duration.ofSeconds(Long.getLong("load.warmup", 10)),
+                Duration.ofSeconds(Long.getLong("load.duration", 30)),
+                Integer.getInteger("load.clients", 64),
+                parse(System.getProperty("load.mix", "post=20,get=50,list=20,delete=10"), Integer::valueOf),
+                parse(System.getProperty("load.budget.p99", "post=100,get=50,list=100,delete=100"), Long::valueOf),
+                parse(System.getProperty("load.budget.p999", "post=250,get=150,list=250,delete=250"), Long::valueOf));
+    }
+
+    private static <T> Map<Endpoint, T> parse(String value, Function<String, T> parser) {
+        Map<Endpoint, T> values = new EnumMap<>(Endpoint.class);
+        for (String entry : value.split(",")) {
+            String[] pair = entry.split("=");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Expected endpoint=value but got " + entry);
+            }
+            values.put(Endpoint.named(pair[0].trim()), parser.apply(pair[1].trim()));
+        }
+        return values;
+    }
+}
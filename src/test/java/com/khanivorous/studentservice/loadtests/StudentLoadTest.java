@@ -0,0 +1,236 @@
+package com.khanivorous.studentservice.loadtests;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.khanivorous.studentservice.student.model.StudentCreationDTO;
+import com.khanivorous.studentservice.student.model.StudentDTO;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Replays a weighted mix of requests against /students at a fixed rate and reports throughput and latency
+ * percentiles per endpoint. Requests are sent on schedule whether or not earlier ones have completed, and latency is
+ * measured from the time a request was due, so a stalled server shows up in the percentiles instead of slowing the
+ * load down. Fails when an endpoint exceeds its p99 or p99.9 budget or answers with a server error. Run with
+ * {@code mvn test -Pload-test}, see {@link LoadTestConfig} for the settings. Full latency distributions are written to
+ * {@code target/load-test/<endpoint>.hgrm}.
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:load-test;DB_CLOSE_DELAY=-1",
+        "logging.level.org.hibernate.SQL=off"})
+public class StudentLoadTest {
+
+    private static final int SEED_STUDENTS = 1_000;
+
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    private final IdPool ids = new IdPool();
+
+    @Test
+    public void replayMixWithinLatencyBudgets() throws Exception {
+        LoadTestConfig config = LoadTestConfig.fromSystemProperties();
+        seed();
+
+        Map<Endpoint, Histogram> histograms = new EnumMap<>(Endpoint.class);
+        Map<Endpoint, LongAdder> errors = new EnumMap<>(Endpoint.class);
+        for (Endpoint endpoint : Endpoint.values()) {
+            histograms.put(endpoint, new ConcurrentHistogram(HIGHEST_TRACKABLE_NANOS, 3));
+            errors.put(endpoint, new LongAdder());
+        }
+        run(config, histograms, errors);
+
+        report(config, histograms, errors);
+        List<Executable> checks = new ArrayList<>();
+        for (Endpoint endpoint : Endpoint.values()) {
+            Histogram histogram = histograms.get(endpoint);
+            checks.add(() -> assertEquals(0, errors.get(endpoint).sum(), endpoint.label() + " server errors"));
+            checkBudget(checks, endpoint, "p99", histogram.getValueAtPercentile(99.0), config.p99BudgetMillis().get(endpoint));
+            checkBudget(checks, endpoint, "p99.9", histogram.getValueAtPercentile(99.9), config.p999BudgetMillis().get(endpoint));
+        }
+        assertAll(checks);
+    }
+
+    private void run(LoadTestConfig config, Map<Endpoint, Histogram> histograms, Map<Endpoint, LongAdder> errors) throws InterruptedException {
+        Endpoint[] weighted = weighted(config.mix());
+        Semaphore inFlight = new Semaphore(config.clients());
+        long interval = TimeUnit.SECONDS.toNanos(1) / config.rate();
+        long start = System.nanoTime();
+        long measureFrom = start + config.warmup().toNanos();
+        long total = (config.warmup().toSeconds() + config.duration().toSeconds()) * config.rate();
+
+        for (long i = 0; i < total; i++) {
+            long due = start + i * interval;
+            long wait;
+            while ((wait = due - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            inFlight.acquire();
+            Endpoint endpoint = weighted[ThreadLocalRandom.current().nextInt(weighted.length)];
+            send(endpoint).whenComplete((status, failure) -> {
+                long latency = System.nanoTime() - due;
+                if (due >= measureFrom) {
+                    histograms.get(endpoint).recordValue(Math.min(latency, HIGHEST_TRACKABLE_NANOS));
+                    if (failure != null || status >= 500) {
+                        errors.get(endpoint).increment();
+                    }
+                }
+                inFlight.release();
+            });
+        }
+        inFlight.acquire(config.clients());
+    }
+
+    private CompletableFuture<Integer> send(Endpoint endpoint) {
+        URI students = URI.create("http://localhost:" + port + "/students");
+        return switch (endpoint) {
+            case POST -> client.sendAsync(HttpRequest.newBuilder(students)
+                            .header("Content-Type", "application/json")
+                            .POST(HttpRequest.BodyPublishers.ofString(json(new StudentCreationDTO("Load", 20))))
+                            .build(), HttpResponse.BodyHandlers.ofString())
+                    .thenApply(response -> {
+                        if (response.statusCode() == 201) {
+                            ids.add(read(response.body()).id());
+                        }
+                        return response.statusCode();
+                    });
+            case GET_BY_ID -> status(HttpRequest.newBuilder(students.resolve("/students/" + ids.any())).GET().build());
+            case GET_ALL -> status(HttpRequest.newBuilder(students.resolve("/students?limit=100")).GET().build());
+            case DELETE -> status(HttpRequest.newBuilder(students.resolve("/students/" + ids.take())).DELETE().build());
+        };
+    }
+
+    private CompletableFuture<Integer> status(HttpRequest request) {
+        return client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).thenApply(HttpResponse::statusCode);
+    }
+
+    private void seed() throws IOException, InterruptedException {
+        List<StudentCreationDTO> students = new ArrayList<>(SEED_STUDENTS);
+        for (int i = 0; i < SEED_STUDENTS; i++) {
+            students.add(new StudentCreationDTO("Seed " + i, 17 + i % 60));
+        }
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/students/batch"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json(students)))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(201, response.statusCode());
+        objectMapper.readTree(response.body()).get("created").forEach(student -> ids.add(student.get("id").asInt()));
+    }
+
+    private static void report(LoadTestConfig config, Map<Endpoint, Histogram> histograms, Map<Endpoint, LongAdder> errors) throws IOException {
+        Path directory = Path.of("target", "load-test");
+        Files.createDirectories(directory);
+        System.out.printf("%d req/s target, %d clients, %d s measured%n", config.rate(), config.clients(), config.duration().toSeconds());
+        System.out.printf("%-8s %9s %9s %9s %9s %9s %9s %7s%n", "endpoint", "requests", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "errors");
+        for (Endpoint endpoint : Endpoint.values()) {
+            Histogram histogram = histograms.get(endpoint);
+            System.out.printf("%-8s %9d %9.1f %9.2f %9.2f %9.2f %9.2f %7d%n", endpoint.label(), histogram.getTotalCount(),
+                    (double) histogram.getTotalCount() / config.duration().toSeconds(),
+                    millis(histogram.getValueAtPercentile(50.0)), millis(histogram.getValueAtPercentile(99.0)),
+                    millis(histogram.getValueAtPercentile(99.9)), millis(histogram.getMaxValue()), errors.get(endpoint).sum());
+            try (PrintStream out = new PrintStream(directory.resolve(endpoint.label() + ".hgrm").toFile())) {
+                histogram.outputPercentileDistribution(out, 1_000_000.0);
+            }
+        }
+    }
+
+    private static void checkBudget(List<Executable> checks, Endpoint endpoint, String percentile, long nanos, Long budgetMillis) {
+        if (budgetMillis != null) {
+            checks.add(() -> assertTrue(millis(nanos) <= budgetMillis,
+                    endpoint.label() + " " + percentile + " was " + millis(nanos) + " ms, the budget is " + budgetMillis + " ms"));
+        }
+    }
+
+    private static Endpoint[] weighted(Map<Endpoint, Integer> mix) {
+        List<Endpoint> weighted = new ArrayList<>();
+        mix.forEach((endpoint, weight) -> {
+            for (int i = 0; i < weight; i++) {
+                weighted.add(endpoint);
+            }
+        });
+        return weighted.toArray(new Endpoint[0]);
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private String json(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private StudentDTO read(String body) {
+        try {
+            return objectMapper.readValue(body, StudentDTO.class);
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Ids of the students that exist, so reads and deletes mostly hit real students. A read can still race with the
+     * delete of the same student and get a 404, which is not counted as an error.
+     */
+    private static class IdPool {
+
+        private final List<Integer> ids = new ArrayList<>();
+
+        synchronized void add(int id) {
+            ids.add(id);
+        }
+
+        synchronized int any() {
+            return ids.isEmpty() ? 0 : ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+        }
+
+        synchronized int take() {
+            if (ids.isEmpty()) {
+                return 0;
+            }
+            int index = ThreadLocalRandom.current().nextInt(ids.size());
+            int last = ids.remove(ids.size() - 1);
+            return index == ids.size() ? last : ids.set(index, last);
+        }
+    }
+}
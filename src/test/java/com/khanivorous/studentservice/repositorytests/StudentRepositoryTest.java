@@ -0,0 +1,309 @@
+package com.khanivorous.studentservice.repositorytests;
+
+import com.khanivorous.studentservice.student.entities.Student;
+import com.khanivorous.studentservice.student.model.StudentAgeCount;
+import com.khanivorous.studentservice.student.model.StudentChange;
+import com.khanivorous.studentservice.student.model.StudentCursor;
+import com.khanivorous.studentservice.student.model.StudentDTO;
+import com.khanivorous.studentservice.student.model.StudentQuery;
+import com.khanivorous.studentservice.student.model.StudentSort;
+import com.khanivorous.studentservice.student.repository.StudentRepository;
+import org.hibernate.Session;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest(properties = "student.export.fetch-size=2")
+public class StudentRepositoryTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private StudentRepository studentRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void testForEachStudentVisitsEveryStudentInIdOrder() {
+        List<StudentDTO> saved = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Integer id = entityManager.persistAndGetId(newStudent("Student" + i, 20 + i), Integer.class);
+            saved.add(new StudentDTO(id, "Student" + i, 20 + i, 0L));
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        List<StudentDTO> visited = new ArrayList<>();
+        studentRepository.forEachStudent(visited::add);
+
+        assertEquals(saved, visited);
+        assertEquals(0, persistenceContextSize());
+    }
+
+    @Test
+    public void testFindDTOByIdDoesNotLoadEntity() {
+        Integer id = entityManager.persistAndGetId(newStudent("Ben", 28), Integer.class);
+        entityManager.flush();
+        entityManager.clear();
+
+        assertEquals(Optional.of(new StudentDTO(id, "Ben", 28, 0L)), studentRepository.findDTOById(id));
+        assertEquals(Optional.empty(), studentRepository.findDTOById(id + 100));
+        assertEquals(0, persistenceContextSize());
+    }
+
+    @Test
+    public void testFindDTOsByIdGreaterThanReturnsSliceInIdOrder() {
+        List<Integer> savedIds = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            savedIds.add(entityManager.persistAndGetId(newStudent("Student" + i, 20 + i), Integer.class));
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        Slice<StudentDTO> first = studentRepository.findDTOsByIdGreaterThan(0, PageRequest.ofSize(2));
+        assertEquals(savedIds.subList(0, 2), first.map(StudentDTO::id).getContent());
+        assertTrue(first.hasNext());
+
+        Slice<StudentDTO> last = studentRepository.findDTOsByIdGreaterThan(savedIds.get(1), PageRequest.ofSize(2));
+        assertEquals(savedIds.subList(2, 3), last.map(StudentDTO::id).getContent());
+        assertFalse(last.hasNext());
+        assertEquals(0, persistenceContextSize());
+    }
+
+    @Test
+    public void testFindDTOsFiltersByNamePrefixAndAgeInNameOrder() {
+        Integer bob = entityManager.persistAndGetId(newStudent("Bob", 25), Integer.class);
+        Integer ben = entityManager.persistAndGetId(newStudent("Ben", 28), Integer.class);
+        entityManager.persist(newStudent("Andy", 25));
+        entityManager.persist(newStudent("Bea", 40));
+        Integer secondBen = entityManager.persistAndGetId(newStudent("Ben", 22), Integer.class);
+        entityManager.flush();
+        entityManager.clear();
+        StudentQuery query = new StudentQuery("B", 20, 30, StudentSort.NAME);
+
+        Slice<StudentDTO> first = studentRepository.findDTOs(query, null, 2);
+        assertEquals(List.of(new StudentDTO(ben, "Ben", 28, 0L), new StudentDTO(secondBen, "Ben", 22, 0L)), first.getContent());
+        assertTrue(first.hasNext());
+
+        Slice<StudentDTO> last = studentRepository.findDTOs(query, new StudentDTO(secondBen, "Ben", null), 2);
+        assertEquals(List.of(new StudentDTO(bob, "Bob", 25, 0L)), last.getContent());
+        assertFalse(last.hasNext());
+        assertEquals(0, persistenceContextSize());
+    }
+
+    @Test
+    public void testFindDTOsEscapesLikeWildcardsInNamePrefix() {
+        Integer underscore = entityManager.persistAndGetId(newStudent("B_x", 25), Integer.class);
+        entityManager.persist(newStudent("Bax", 25));
+        entityManager.flush();
+
+        Slice<StudentDTO> page = studentRepository.findDTOs(new StudentQuery("B_", null, null, StudentSort.ID), null, 10);
+
+        assertEquals(List.of(new StudentDTO(underscore, "B_x", 25, 0L)), page.getContent());
+    }
+
+    @Test
+    public void testFindDTOsPagesByAgeThenId() {
+        Integer first = entityManager.persistAndGetId(newStudent("Ben", 30), Integer.class);
+        Integer second = entityManager.persistAndGetId(newStudent("Andy", 20), Integer.class);
+        Integer third = entityManager.persistAndGetId(newStudent("Tom", 30), Integer.class);
+        entityManager.flush();
+        StudentQuery query = new StudentQuery(null, null, null, StudentSort.AGE);
+
+        Slice<StudentDTO> page = studentRepository.findDTOs(query, new StudentDTO(first, null, 30), 10);
+        assertEquals(List.of(third), page.map(StudentDTO::id).getContent());
+
+        page = studentRepository.findDTOs(query, null, 10);
+        assertEquals(List.of(second, first, third), page.map(StudentDTO::id).getContent());
+    }
+
+    @Test
+    public void testCursorsPageAcrossStudentsWithoutNameOrAge() {
+        List<Integer> ids = new ArrayList<>();
+        for (Student student : List.of(newStudent("null", 30), newStudent(null, null), newStudent("", 20),
+                newStudent(null, 25), newStudent("Ben", null))) {
+            ids.add(entityManager.persistAndGetId(student, Integer.class));
+        }
+        entityManager.flush();
+
+        assertEquals(List.of(ids.get(1), ids.get(3), ids.get(2), ids.get(4), ids.get(0)), pageOneByOne(StudentSort.NAME));
+        assertEquals(List.of(ids.get(1), ids.get(4), ids.get(2), ids.get(3), ids.get(0)), pageOneByOne(StudentSort.AGE));
+    }
+
+    private List<Integer> pageOneByOne(StudentSort sort) {
+        StudentQuery query = new StudentQuery(null, null, null, sort);
+        List<Integer> ids = new ArrayList<>();
+        StudentDTO after = null;
+        Slice<StudentDTO> page;
+        do {
+            page = studentRepository.findDTOs(query, after, 1);
+            StudentDTO last = page.getContent().get(0);
+            ids.add(last.id());
+            after = StudentCursor.decode(StudentCursor.encode(sort, last), sort);
+        } while (page.hasNext());
+        return ids;
+    }
+
+    @Test
+    public void testNamePrefixPageIsAnIndexRangeScan() {
+        String plan = jdbcTemplate.queryForObject(
+                "explain select id, name, age from student where name like 'Be%' escape '!' and name >= 'Be' and name < 'Bf'"
+                        + " and (name > 'Ben' or (name = 'Ben' and id > 3)) order by name, id limit 101",
+                String.class);
+        String agePlan = jdbcTemplate.queryForObject(
+                "explain select id, name, age from student where age >= 20 and age <= 30 order by age, id limit 101",
+                String.class);
+
+        assertTrue(plan.contains("IDX_STUDENT_NAME_ID: NAME") && plan.contains("index sorted"), plan);
+        assertTrue(agePlan.contains("IDX_STUDENT_AGE_ID: AGE") && agePlan.contains("index sorted"), agePlan);
+    }
+
+    @Test
+    public void testCountByAgeGroupsInAgeOrder() {
+        entityManager.persist(newStudent("Ben", 28));
+        entityManager.persist(newStudent("Andy", 22));
+        entityManager.persist(newStudent("Bob", 28));
+        entityManager.flush();
+
+        assertEquals(List.of(new StudentAgeCount(22, 1), new StudentAgeCount(28, 2)), studentRepository.countByAge());
+    }
+
+    @Test
+    public void testUpdateStudentSetsOnlyGivenFieldsAndBumpsVersion() {
+        Integer id = entityManager.persistAndGetId(newStudent("Ben", 28), Integer.class);
+        entityManager.flush();
+
+        assertEquals(1, studentRepository.updateStudent(id, null, 29, 0L));
+        entityManager.clear();
+
+        assertEquals(Optional.of(new StudentDTO(id, "Ben", 29, 1L)), studentRepository.findDTOById(id));
+    }
+
+    @Test
+    public void testUpdateStudentAtAnotherVersionUpdatesNothing() {
+        Integer id = entityManager.persistAndGetId(newStudent("Ben", 28), Integer.class);
+        entityManager.flush();
+
+        assertEquals(0, studentRepository.updateStudent(id, "Andy", null, 3L));
+        assertEquals(1, studentRepository.updateStudent(id, "Andy", null, null));
+        entityManager.clear();
+
+        assertEquals(Optional.of(new StudentDTO(id, "Andy", 28, 1L)), studentRepository.findDTOById(id));
+    }
+
+    @Test
+    public void testDeleteStudentByIdReturnsAffectedRows() {
+        Integer id = entityManager.persistAndGetId(newStudent("Ben", 28), Integer.class);
+        entityManager.flush();
+
+        assertEquals(1, studentRepository.deleteStudentById(id));
+        assertEquals(0, studentRepository.deleteStudentById(id));
+    }
+
+    @Test
+    public void testDeleteExistingByIdInReturnsDeletedIds() {
+        Integer first = entityManager.persistAndGetId(newStudent("Ben", 28), Integer.class);
+        Integer second = entityManager.persistAndGetId(newStudent("Andy", 22), Integer.class);
+        entityManager.flush();
+
+        List<Integer> deleted = studentRepository.deleteExistingByIdIn(List.of(first, second + 100));
+
+        assertEquals(List.of(first), deleted);
+        assertFalse(studentRepository.existsById(first));
+        assertTrue(studentRepository.existsById(second));
+    }
+
+    @Test
+    public void testEveryWriteTakesTheNextChangeSeq() {
+        long before = studentRepository.lastChangeSeq();
+        Student ben = studentRepository.save(newStudent("Ben", 28));
+        List<Student> batch = new ArrayList<>();
+        studentRepository.saveAll(List.of(newStudent("Andy", 22), newStudent("Bob", 25))).forEach(batch::add);
+        int queuedId = studentRepository.nextId();
+        studentRepository.insertAll(List.of(new StudentDTO(queuedId, "Carl", 30)));
+        studentRepository.updateStudent(ben.getId(), "Benjamin", null, null);
+        studentRepository.deleteStudentById(batch.get(0).getId());
+        studentRepository.deleteStudentById(batch.get(0).getId() + 1000);
+        entityManager.flush();
+        entityManager.clear();
+
+        List<StudentChange> changes = studentRepository.findChangesAfter(before, 0, Long.MAX_VALUE, 10);
+
+        assertEquals(List.of(
+                new StudentChange(changes.get(0).changeSeq(), batch.get(1).getId(), new StudentDTO(batch.get(1).getId(), "Bob", 25, 0L)),
+                new StudentChange(changes.get(1).changeSeq(), queuedId, new StudentDTO(queuedId, "Carl", 30, 0L)),
+                new StudentChange(changes.get(2).changeSeq(), ben.getId(), new StudentDTO(ben.getId(), "Benjamin", 28, 1L)),
+                new StudentChange(changes.get(3).changeSeq(), batch.get(0).getId(), null)), changes);
+        // numbers come from a pooled sequence, so they rise but rolled back tests leave gaps
+        assertTrue(before < changes.get(0).changeSeq());
+        for (int i = 1; i < changes.size(); i++) {
+            assertTrue(changes.get(i - 1).changeSeq() < changes.get(i).changeSeq());
+        }
+        // the test's own transaction does not hold back what it reads
+        assertEquals(changes.get(3).changeSeq(), studentRepository.lastChangeSeq());
+        assertEquals(List.of(), studentRepository.findChangesAfter(before, 0, before, 10));
+    }
+
+    @Test
+    public void testFindChangesAfterPagesThroughStudentsWrittenBeforeTheChangeSeq() {
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            ids.add(entityManager.persistAndGetId(newStudent("Student" + i, 20 + i), Integer.class));
+        }
+        entityManager.flush();
+
+        List<StudentChange> first = studentRepository.findChangesAfter(0, 0, Long.MAX_VALUE, 2);
+        List<StudentChange> rest = studentRepository.findChangesAfter(0, first.get(1).id(), Long.MAX_VALUE, 2);
+
+        assertEquals(ids.subList(0, 2), first.stream().map(StudentChange::id).toList());
+        assertEquals(ids.subList(2, 3), rest.stream().map(StudentChange::id).toList());
+        assertTrue(first.stream().allMatch(change -> change.changeSeq() == 0));
+    }
+
+    @Test
+    public void testCompactTombstonesRemovesOldOnesAndRecordsHowFar() {
+        studentRepository.createChangeSequence();
+        Integer first = studentRepository.save(newStudent("Ben", 28)).getId();
+        Integer second = studentRepository.save(newStudent("Andy", 22)).getId();
+        studentRepository.deleteStudentById(first);
+        long compactedThrough = studentRepository.lastChangeSeq();
+        entityManager.flush();
+
+        assertEquals(1, studentRepository.compactTombstones(Instant.now().plusSeconds(1)));
+        studentRepository.deleteStudentById(second);
+        entityManager.flush();
+
+        assertEquals(compactedThrough, studentRepository.compactedChangeSeq());
+        assertEquals(List.of(second), studentRepository.findChangesAfter(0, 0, Long.MAX_VALUE, 10).stream()
+                .filter(StudentChange::deleted)
+                .map(StudentChange::id)
+                .toList());
+        assertEquals(0, studentRepository.compactTombstones(Instant.now().minusSeconds(60)));
+    }
+
+    private int persistenceContextSize() {
+        return entityManager.getEntityManager().unwrap(Session.class).getStatistics().getEntityCount();
+    }
+
+    private static Student newStudent(String name, Integer age) {
+        Student student = new Student();
+        student.setName(name);
+        student.setAge(age);
+        return student;
+    }
+}
@@ -0,0 +1,149 @@
+package com.khanivorous.studentservice.searchtests;
+
+import com.khanivorous.studentservice.student.events.StudentCreatedEvent;
+import com.khanivorous.studentservice.student.events.StudentDeletedEvent;
+import com.khanivorous.studentservice.student.events.StudentUpdatedEvent;
+import com.khanivorous.studentservice.student.model.StudentDTO;
+import com.khanivorous.studentservice.student.model.StudentMatch;
+import com.khanivorous.studentservice.student.repository.StudentRepository;
+import com.khanivorous.studentservice.student.search.StudentNameIndex;
+import com.khanivorous.studentservice.student.sharding.StudentShards;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+@ExtendWith(MockitoExtension.class)
+public class StudentNameIndexTest {
+
+    @Mock
+    private StudentRepository studentRepository;
+
+    private StudentNameIndex index;
+
+    @BeforeEach
+    public void setUp() {
+        doAnswer(invocation -> {
+            Consumer<StudentDTO> consumer = invocation.getArgument(0);
+            consumer.accept(new StudentDTO(1, "Ben Smith", 28));
+            consumer.accept(new StudentDTO(2, "Benjamin Jones", 30));
+            consumer.accept(new StudentDTO(3, "Andy Benson", 22));
+            consumer.accept(new StudentDTO(4, "Zoë Müller", 19));
+            return null;
+        }).when(studentRepository).forEachStudent(any());
+        index = new StudentNameIndex(studentRepository, new StudentShards(studentRepository, Optional.empty(), Optional.empty(), 1));
+        index.afterSingletonsInstantiated();
+    }
+
+    @Test
+    public void testShortestMatchingNameRanksFirst() {
+        List<StudentMatch> matches = index.search("ben", 10);
+
+        assertEquals(List.of(1, 3, 2), matches.stream().map(match -> match.student().id()).toList());
+        assertEquals(1, best(index.search("Ben Smith", 10)));
+    }
+
+    @Test
+    public void testUnfinishedWordMatchesEveryNameStartingWithIt() {
+        assertEquals(List.of(1, 2, 3), ids(index.search("ben", 10)));
+        assertEquals(2, best(index.search("benja", 10)));
+    }
+
+    @Test
+    public void testToleratesTypos() {
+        assertEquals(2, best(index.search("Benjamni", 10)));
+        assertEquals(1, best(index.search("smiht", 10)));
+    }
+
+    @Test
+    public void testIgnoresCaseAndAccents() {
+        assertEquals(List.of(4), ids(index.search("zoe muller", 10)));
+        assertEquals(List.of(), index.search("xyz", 10));
+    }
+
+    @Test
+    public void testLimitKeepsBestMatches() {
+        List<StudentMatch> matches = index.search("ben", 2);
+
+        assertEquals(2, matches.size());
+        assertTrue(matches.get(0).score() >= matches.get(1).score());
+    }
+
+    @Test
+    public void testFollowsCreatedAndDeletedStudents() {
+        index.onCreated(new StudentCreatedEvent(new StudentDTO(5, "Bert", 40)));
+        assertEquals(5, best(index.search("bert", 10)));
+
+        index.onDeleted(new StudentDeletedEvent(1));
+        assertEquals(List.of(2, 3, 5), ids(index.search("be", 10)));
+        assertEquals(4, index.size());
+    }
+
+    @Test
+    public void testWritesDuringTheBuildAreAppliedAfterIt() {
+        doAnswer(invocation -> {
+            Consumer<StudentDTO> consumer = invocation.getArgument(0);
+            consumer.accept(new StudentDTO(1, "Ben Smith", 28));
+            index.onCreated(new StudentCreatedEvent(new StudentDTO(2, "Carla Diaz", 24)));
+            index.onUpdated(new StudentUpdatedEvent(new StudentDTO(3, "Dora Evans", 31)));
+            index.onDeleted(new StudentDeletedEvent(1));
+            consumer.accept(new StudentDTO(2, "Carla Diaz", 24));
+            consumer.accept(new StudentDTO(3, "Andy Benson", 22));
+            return null;
+        }).when(studentRepository).forEachStudent(any());
+        index.rebuild();
+
+        assertEquals(List.of(), index.search("ben smith", 10));
+        assertEquals(List.of(2), ids(index.search("carla", 10)));
+        assertEquals(List.of(3), ids(index.search("dora evans", 10)));
+        assertEquals(List.of(), index.search("andy benson", 10));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    public void testStudentWhoseNameIsRemovedLeavesTheIndex() {
+        index.onUpdated(new StudentUpdatedEvent(new StudentDTO(4, null, 19)));
+
+        assertEquals(List.of(), index.search("zoe muller", 10));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    public void testFindsEveryNameAmongManyOfTheSameLength() {
+        doAnswer(invocation -> {
+            Consumer<StudentDTO> consumer = invocation.getArgument(0);
+            for (int id = 1; id <= 10_000; id++) {
+                consumer.accept(new StudentDTO(id, String.format("Student %05d", id), 20));
+            }
+            return null;
+        }).when(studentRepository).forEachStudent(any());
+        index.rebuild();
+
+        for (int id : List.of(1, 4095, 4096, 4097, 8192, 8193, 10_000)) {
+            assertEquals(id, best(index.search(String.format("student %05d", id), 10)));
+        }
+    }
+
+    @Test
+    public void testBlankQueryMatchesNothing() {
+        assertEquals(List.of(), index.search(" -", 10));
+    }
+
+    private static int best(List<StudentMatch> matches) {
+        return matches.get(0).student().id();
+    }
+
+    private static List<Integer> ids(List<StudentMatch> matches) {
+        return matches.stream().map(match -> match.student().id()).sorted().toList();
+    }
+}
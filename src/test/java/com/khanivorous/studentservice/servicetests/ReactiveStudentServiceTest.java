@@ -0,0 +1,100 @@
+package com.khanivorous.studentservice.servicetests;
+
+import com.khanivorous.studentservice.student.InvalidPageRequestException;
+import com.khanivorous.studentservice.student.NoSuchIdException;
+import com.khanivorous.studentservice.student.events.StudentCreatedEvent;
+import com.khanivorous.studentservice.student.events.StudentDeletedEvent;
+import com.khanivorous.studentservice.student.model.StudentCursor;
+import com.khanivorous.studentservice.student.model.StudentDTO;
+import com.khanivorous.studentservice.student.model.StudentPage;
+import com.khanivorous.studentservice.student.repository.ReactiveStudentRepository;
+import com.khanivorous.studentservice.student.services.ReactiveStudentServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ReactiveStudentServiceTest {
+
+    @Mock
+    private ReactiveStudentRepository studentRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private ReactiveStudentServiceImpl serviceUnderTest;
+
+    @BeforeEach
+    public void setUp() {
+        this.serviceUnderTest = new ReactiveStudentServiceImpl(studentRepository, eventPublisher);
+    }
+
+    @Test
+    public void testGetUnknownIdReturnsError() {
+        when(studentRepository.findDTOById(1)).thenReturn(Mono.empty());
+
+        StepVerifier.create(serviceUnderTest.getStudentById(1))
+                .expectErrorMatches(ex -> ex instanceof NoSuchIdException
+                        && ex.getMessage().equals("Could not find student with id 1"))
+                .verify();
+    }
+
+    @Test
+    public void testGetStudentPageFetchesOneExtraRowForTheCursor() {
+        when(studentRepository.findDTOsByIdGreaterThan(4, 2)).thenReturn(Flux.just(
+                new StudentDTO(5, "Ben", 28), new StudentDTO(6, "Andy", 22)));
+
+        StepVerifier.create(serviceUnderTest.getStudentPage(StudentCursor.encode(4), 1))
+                .expectNext(new StudentPage(List.of(new StudentDTO(5, "Ben", 28)), StudentCursor.encode(5)))
+                .verifyComplete();
+    }
+
+    @Test
+    public void testGetStudentPageWithLimitAboveMaximumReturnsError() {
+        StepVerifier.create(serviceUnderTest.getStudentPage(null, 1001))
+                .expectError(InvalidPageRequestException.class)
+                .verify();
+        verify(studentRepository, never()).findDTOsByIdGreaterThan(anyInt(), anyInt());
+    }
+
+    @Test
+    public void testAddNewStudentPublishesEvent() {
+        StudentDTO student = new StudentDTO(1, "Andy", 22);
+        when(studentRepository.insert("Andy", 22)).thenReturn(Mono.just(student));
+
+        StepVerifier.create(serviceUnderTest.addNewStudent("Andy", 22))
+                .expectNext(student)
+                .verifyComplete();
+        verify(eventPublisher, times(1)).publishEvent(new StudentCreatedEvent(student));
+    }
+
+    @Test
+    public void testDeleteUnknownIdReturnsError() {
+        when(studentRepository.deleteStudentById(1)).thenReturn(Mono.just(0));
+
+        StepVerifier.create(serviceUnderTest.deleteStudentById(1))
+                .expectError(NoSuchIdException.class)
+                .verify();
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    public void testDeleteStudentPublishesEvent() {
+        when(studentRepository.deleteStudentById(1)).thenReturn(Mono.just(1));
+
+        StepVerifier.create(serviceUnderTest.deleteStudentById(1))
+                .verifyComplete();
+        verify(eventPublisher, times(1)).publishEvent(new StudentDeletedEvent(1));
+    }
+}
@@ -1,24 +1,64 @@
 package com.khanivorous.studentservice.servicetests;
 
+import com.khanivorous.studentservice.student.ChangeTokenExpiredException;
+import com.khanivorous.studentservice.student.InvalidPageRequestException;
 import com.khanivorous.studentservice.student.NoSuchIdException;
 import com.khanivorous.studentservice.student.entities.Student;
+import com.khanivorous.studentservice.student.events.StudentCreatedEvent;
+import com.khanivorous.studentservice.student.events.StudentDeletedEvent;
+import com.khanivorous.studentservice.student.events.StudentRecentChanges;
+import com.khanivorous.studentservice.student.events.StudentUpdatedEvent;
+import com.khanivorous.studentservice.student.idempotency.StudentIdempotencyStore;
 import com.khanivorous.studentservice.student.mapper.StudentMapper;
+import com.khanivorous.studentservice.student.model.StudentAgeCount;
+import com.khanivorous.studentservice.student.model.StudentBatchError;
+import com.khanivorous.studentservice.student.model.StudentBatchResult;
+import com.khanivorous.studentservice.student.model.StudentBulkDeleteResult;
+import com.khanivorous.studentservice.student.model.StudentChange;
+import com.khanivorous.studentservice.student.model.StudentChangeToken;
+import com.khanivorous.studentservice.student.model.StudentChanges;
+import com.khanivorous.studentservice.student.model.StudentCreationDTO;
+import com.khanivorous.studentservice.student.model.StudentCreationResult;
+import com.khanivorous.studentservice.student.model.StudentCursor;
 import com.khanivorous.studentservice.student.model.StudentDTO;
+import com.khanivorous.studentservice.student.model.StudentMatch;
+import com.khanivorous.studentservice.student.model.StudentPage;
+import com.khanivorous.studentservice.student.model.StudentQuery;
+import com.khanivorous.studentservice.student.model.StudentSort;
+import com.khanivorous.studentservice.student.model.StudentStats;
 import com.khanivorous.studentservice.student.repository.StudentRepository;
+import com.khanivorous.studentservice.student.search.StudentNameIndex;
 import com.khanivorous.studentservice.student.services.StudentServiceImpl;
+import com.khanivorous.studentservice.student.sharding.StudentShards;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -32,26 +72,33 @@ public class StudentServiceTest {
     @Spy
     private StudentMapper studentMapper;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private StudentNameIndex studentNameIndex;
+
+    @Mock
+    private StudentIdempotencyStore studentIdempotencyStore;
+
     @BeforeEach
     public void setUp() {
-        this.serviceUnderTest = new StudentServiceImpl(studentRepository,studentMapper);
+        this.serviceUnderTest = new StudentServiceImpl(studentRepository,studentMapper,eventPublisher,studentNameIndex,studentIdempotencyStore,
+                new StudentShards(studentRepository, Optional.empty(), Optional.empty(), 1), Optional.empty(), new StudentRecentChanges("", Duration.ofSeconds(5)));
     }
 
     @Test
     public void testGetStudentById() {
-        Student student1 = new Student();
-        student1.setId(1);
-        student1.setName("Ben");
-        student1.setAge(28);
-        when(studentRepository.findById(1)).thenReturn(Optional.of(student1));
+        when(studentRepository.findDTOById(1)).thenReturn(Optional.of(new StudentDTO(1, "Ben", 28)));
 
         StudentDTO response = serviceUnderTest.getStudentById(1);
 
-        assertEquals(student1.getId(), response.id());
-        assertEquals(student1.getName(), response.name());
-        assertEquals(student1.getAge(), response.age());
+        assertEquals(1, response.id());
+        assertEquals("Ben", response.name());
+        assertEquals(28, response.age());
 
-        verify(studentMapper, times(1)).toDTO(any(Student.class));
+        verify(studentRepository, never()).findById(anyInt());
+        verify(studentMapper, never()).toDTO(any(Student.class));
     }
 
     @Test
@@ -66,22 +113,241 @@ public class StudentServiceTest {
 
     @Test
     public void testGetAllStudents() {
-        Student student1 = new Student();
-        student1.setId(1);
-        student1.setName("Ben");
-        student1.setAge(28);
+        when(studentRepository.findAllDTOs()).thenReturn(List.of(new StudentDTO(1, "Ben", 28)));
 
-        ArrayList<Student> studentList = new ArrayList<>();
-        studentList.add(student1);
+        List<StudentDTO> response = serviceUnderTest.getAllStudents();
+        assertEquals(List.of(new StudentDTO(1, "Ben", 28)), response);
 
-        when(studentRepository.findAll()).thenReturn(studentList);
+        verify(studentRepository, never()).findAll();
+        verify(studentMapper, never()).toDTOList(anyIterable());
+    }
 
-        List<StudentDTO> response = serviceUnderTest.getAllStudents();
-        assertEquals(studentList.get(0).getId(), response.get(0).id());
-        assertEquals(studentList.get(0).getName(), response.get(0).name());
-        assertEquals(studentList.get(0).getAge(), response.get(0).age());
+    @Test
+    public void testGetStudentPage() {
+        List<StudentDTO> studentList = List.of(new StudentDTO(5, "Ben", 28));
 
-        verify(studentMapper, times(1)).toDTOList(anyIterable());
+        when(studentRepository.findDTOsByIdGreaterThan(eq(4), any(Pageable.class)))
+                .thenReturn(new SliceImpl<>(studentList, PageRequest.ofSize(1), true));
+
+        StudentPage response = serviceUnderTest.getStudentPage(StudentCursor.encode(4), 1);
+        assertEquals(5, response.students().get(0).id());
+        assertEquals(StudentCursor.encode(5), response.nextCursor());
+    }
+
+    @Test
+    public void testGetLastStudentPageHasNoNextCursor() {
+        when(studentRepository.findDTOsByIdGreaterThan(eq(0), any(Pageable.class)))
+                .thenReturn(new SliceImpl<>(new ArrayList<>(), PageRequest.ofSize(10), false));
+
+        StudentPage response = serviceUnderTest.getStudentPage(null, 10);
+        assertTrue(response.students().isEmpty());
+        assertNull(response.nextCursor());
+    }
+
+    @Test
+    public void testGetStudentPageWithLimitAboveMaximumThrowsError() {
+        assertThrows(InvalidPageRequestException.class, () -> serviceUnderTest.getStudentPage(null, 1001));
+        verify(studentRepository, never()).findDTOsByIdGreaterThan(anyInt(), any());
+    }
+
+    @Test
+    public void testGetFilteredStudentPageContinuesAfterCursorInSortOrder() {
+        StudentQuery query = new StudentQuery("B", 20, null, StudentSort.AGE);
+        String after = StudentCursor.encode(StudentSort.AGE, new StudentDTO(3, "Bob", 21));
+        when(studentRepository.findDTOs(query, new StudentDTO(3, null, 21), 1))
+                .thenReturn(new SliceImpl<>(List.of(new StudentDTO(8, "Ben", 28)), PageRequest.ofSize(1), true));
+
+        StudentPage response = serviceUnderTest.getStudentPage(query, after, 1);
+
+        assertEquals(8, response.students().get(0).id());
+        assertEquals(new StudentDTO(8, null, 28), StudentCursor.decode(response.nextCursor(), StudentSort.AGE));
+        verify(studentRepository, never()).findDTOsByIdGreaterThan(anyInt(), any());
+    }
+
+    @Test
+    public void testGetStudentPageWithCursorOfAnotherSortThrowsError() {
+        String after = StudentCursor.encode(StudentSort.AGE, new StudentDTO(3, "Bob", 21));
+
+        assertThrows(InvalidPageRequestException.class,
+                () -> serviceUnderTest.getStudentPage(new StudentQuery(null, null, null, StudentSort.NAME), after, 10));
+    }
+
+    @Test
+    public void testGetStudentPageWithEmptyAgeRangeThrowsError() {
+        assertThrows(InvalidPageRequestException.class,
+                () -> serviceUnderTest.getStudentPage(new StudentQuery(null, 30, 20, StudentSort.ID), null, 10));
+        verify(studentRepository, never()).findDTOs(any(), any(), anyInt());
+    }
+
+    @Test
+    public void testSearchStudentsUsesNameIndex() {
+        List<StudentMatch> matches = List.of(new StudentMatch(new StudentDTO(1, "Ben", 28), 1.0));
+        when(studentNameIndex.search("ben", 10)).thenReturn(matches);
+
+        assertEquals(matches, serviceUnderTest.searchStudents("ben", 10));
+    }
+
+    @Test
+    public void testSearchStudentsWithLimitAboveMaximumThrowsError() {
+        assertThrows(InvalidPageRequestException.class, () -> serviceUnderTest.searchStudents("ben", 101));
+        verifyNoInteractions(studentNameIndex);
+    }
+
+    @Test
+    public void testAddNewStudentWithIdempotencyKeyCreatesThroughStore() {
+        Student savedStudent = new Student();
+        savedStudent.setId(1);
+        savedStudent.setName("Ben");
+        savedStudent.setAge(28);
+        when(studentRepository.save(any(Student.class))).thenReturn(savedStudent);
+        when(studentIdempotencyStore.createOnce(eq("key-1"), eq("Ben"), eq(28), any()))
+                .thenAnswer(invocation -> new StudentCreationResult(invocation.<Supplier<StudentDTO>>getArgument(3).get(), false));
+
+        StudentCreationResult result = serviceUnderTest.addNewStudent("Ben", 28, "key-1");
+
+        assertEquals(new StudentCreationResult(new StudentDTO(1, "Ben", 28), false), result);
+        verify(studentRepository, times(1)).save(any(Student.class));
+    }
+
+    @Test
+    public void testAddNewStudentWithTooLongIdempotencyKeyThrowsError() {
+        String key = "k".repeat(StudentIdempotencyStore.MAX_KEY_LENGTH + 1);
+
+        assertThrows(InvalidPageRequestException.class, () -> serviceUnderTest.addNewStudent("Ben", 28, key));
+        verifyNoInteractions(studentIdempotencyStore);
+    }
+
+    @Test
+    public void testChangesSinceTokenSplitsChangedAndDeletedStudents() {
+        StudentChangeToken since = new StudentChangeToken(10, 0);
+        StudentDTO ben = new StudentDTO(1, "Ben", 28, 1L);
+        when(studentRepository.lastChangeSeq()).thenReturn(13L);
+        when(studentRepository.findChangesAfter(10, 0, 13, 3)).thenReturn(List.of(
+                new StudentChange(11, 1, ben),
+                new StudentChange(12, 2, null)));
+
+        StudentChanges changes = serviceUnderTest.getChangesSince(since.encode(), 2);
+
+        assertEquals(List.of(ben), changes.changed());
+        assertEquals(List.of(2), changes.deleted());
+        assertFalse(changes.hasMore());
+        // nothing after 12 was committed by the time 13 was read, so the next sync starts after 13
+        assertEquals(new StudentChangeToken(13, 0), StudentChangeToken.decode(changes.nextToken()));
+    }
+
+    @Test
+    public void testChangesBeyondLimitAreLeftForTheNextToken() {
+        when(studentRepository.lastChangeSeq()).thenReturn(20L);
+        when(studentRepository.findChangesAfter(0, 0, 20, 2)).thenReturn(List.of(
+                new StudentChange(0, 5, new StudentDTO(5, "Ben", 28, 0L)),
+                new StudentChange(3, 6, new StudentDTO(6, "Andy", 22, 0L))));
+
+        StudentChanges changes = serviceUnderTest.getChangesSince(null, 1);
+
+        assertTrue(changes.hasMore());
+        assertEquals(List.of(new StudentDTO(5, "Ben", 28, 0L)), changes.changed());
+        assertEquals(new StudentChangeToken(0, 5), StudentChangeToken.decode(changes.nextToken()));
+        verify(studentRepository, never()).compactedChangeSeq();
+    }
+
+    @Test
+    public void testChangesSinceCompactedTokenThrowsExpired() {
+        when(studentRepository.compactedChangeSeq()).thenReturn(50L);
+        String since = new StudentChangeToken(49, 0).encode();
+
+        assertThrows(ChangeTokenExpiredException.class, () -> serviceUnderTest.getChangesSince(since, 10));
+    }
+
+    @Test
+    public void testChangesWithInvalidTokenOrLimitThrowsError() {
+        assertThrows(InvalidPageRequestException.class, () -> serviceUnderTest.getChangesSince("not a token", 10));
+        assertThrows(InvalidPageRequestException.class, () -> serviceUnderTest.getChangesSince(null, 0));
+        assertThrows(InvalidPageRequestException.class, () -> serviceUnderTest.getChangesSince(null, StudentServiceImpl.MAX_PAGE_SIZE + 1));
+    }
+
+    @Test
+    public void testUpdateStudentAtExpectedVersionDoesNotReadStudent() {
+        when(studentRepository.updateStudent(1, "Ben", 29, 3L)).thenReturn(1);
+
+        StudentDTO updated = serviceUnderTest.updateStudent(1, "Ben", 29, 3L);
+
+        assertEquals(new StudentDTO(1, "Ben", 29, 4L), updated);
+        verify(studentRepository, never()).findDTOById(anyInt());
+        verify(eventPublisher, times(1)).publishEvent(new StudentUpdatedEvent(updated));
+    }
+
+    @Test
+    public void testPartialUpdateReadsBackStudent() {
+        when(studentRepository.updateStudent(1, null, 29, null)).thenReturn(1);
+        when(studentRepository.findDTOById(1)).thenReturn(Optional.of(new StudentDTO(1, "Ben", 29, 4L)));
+
+        assertEquals(new StudentDTO(1, "Ben", 29, 4L), serviceUnderTest.updateStudent(1, null, 29, null));
+    }
+
+    @Test
+    public void testUpdateStudentAtOtherVersionThrowsConflict() {
+        when(studentRepository.updateStudent(1, "Ben", 29, 3L)).thenReturn(0);
+        when(studentRepository.existsById(1)).thenReturn(true);
+
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> serviceUnderTest.updateStudent(1, "Ben", 29, 3L));
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    public void testUpdateMissingStudentThrowsError() {
+        when(studentRepository.updateStudent(1, "Ben", 29, null)).thenReturn(0);
+
+        assertThrows(NoSuchIdException.class, () -> serviceUnderTest.updateStudent(1, "Ben", 29, null));
+    }
+
+    @Test
+    public void testUpdateWithoutFieldsThrowsError() {
+        assertThrows(InvalidPageRequestException.class, () -> serviceUnderTest.updateStudent(1, null, null, 3L));
+        verify(studentRepository, never()).updateStudent(anyInt(), any(), any(), any());
+    }
+
+    @Test
+    public void testGetStudentStatsBucketsAgeCounts() {
+        when(studentRepository.countByAge()).thenReturn(List.of(
+                new StudentAgeCount(null, 1), new StudentAgeCount(18, 2), new StudentAgeCount(19, 1), new StudentAgeCount(42, 1)));
+
+        StudentStats stats = serviceUnderTest.getStudentStats(10);
+
+        assertEquals(5, stats.count());
+        assertEquals(18, stats.minAge());
+        assertEquals(42, stats.maxAge());
+        assertEquals(24.25, stats.meanAge());
+        assertEquals(List.of(new StudentStats.AgeBucket(10, 19, 3), new StudentStats.AgeBucket(40, 49, 1)), stats.ageHistogram());
+    }
+
+    @Test
+    public void testGetStudentStatsOfEmptyTable() {
+        when(studentRepository.countByAge()).thenReturn(List.of());
+
+        StudentStats stats = serviceUnderTest.getStudentStats(10);
+
+        assertEquals(new StudentStats(0, null, null, null, List.of()), stats);
+    }
+
+    @Test
+    public void testGetStudentStatsWithInvalidBucketSizeThrowsError() {
+        assertThrows(InvalidPageRequestException.class, () -> serviceUnderTest.getStudentStats(0));
+        verify(studentRepository, never()).countByAge();
+    }
+
+    @Test
+    public void testExportStudentsPassesEveryStudent() {
+        doAnswer(invocation -> {
+            Consumer<StudentDTO> consumer = invocation.getArgument(0);
+            consumer.accept(new StudentDTO(1, "Ben", 28));
+            return null;
+        }).when(studentRepository).forEachStudent(any());
+
+        List<StudentDTO> exported = new ArrayList<>();
+        serviceUnderTest.exportStudents(exported::add);
+
+        assertEquals(List.of(new StudentDTO(1, "Ben", 28)), exported);
+        verify(studentRepository, never()).findAll();
     }
 
     @Test
@@ -96,24 +362,84 @@ public class StudentServiceTest {
 
         serviceUnderTest.addNewStudent("john", 23);
         verify(studentMapper, times(1)).toDTO(any(Student.class));
+        verify(eventPublisher, times(1)).publishEvent(new StudentCreatedEvent(new StudentDTO(1, "Andy", 22)));
     }
 
+    @Test
+    public void testAddNewStudentsSavesInChunks() {
+        Map<Integer, StudentCreationDTO> students = new LinkedHashMap<>();
+        for (int i = 0; i < StudentServiceImpl.BATCH_CHUNK_SIZE + 1; i++) {
+            students.put(i, new StudentCreationDTO("Andy", 22));
+        }
+        when(studentRepository.saveAll(anyIterable())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        StudentBatchResult result = serviceUnderTest.addNewStudents(students);
+
+        assertEquals(StudentServiceImpl.BATCH_CHUNK_SIZE + 1, result.created().size());
+        assertTrue(result.errors().isEmpty());
+        verify(studentRepository, times(2)).saveAll(anyIterable());
+    }
+
+    @Test
+    public void testAddNewStudentsReportsEveryStudentInAFailedChunk() {
+        Map<Integer, StudentCreationDTO> students = new LinkedHashMap<>();
+        students.put(3, new StudentCreationDTO("Andy", 22));
+        students.put(7, new StudentCreationDTO("Ben", 28));
+        when(studentRepository.saveAll(anyIterable())).thenThrow(new DataIntegrityViolationException("duplicate"));
+
+        StudentBatchResult result = serviceUnderTest.addNewStudents(students);
+
+        assertTrue(result.created().isEmpty());
+        assertEquals(List.of(3, 7), result.errors().stream().map(StudentBatchError::index).toList());
+    }
 
     @Test
     public void testDeleteById() {
-        when(studentRepository.existsById(1)).thenReturn(true);
+        when(studentRepository.deleteStudentById(1)).thenReturn(1);
         serviceUnderTest.deleteStudentById(1);
-        verify(studentRepository, times(1)).deleteById(1);
+        verify(studentRepository, times(1)).deleteStudentById(1);
+        verify(studentRepository, never()).existsById(anyInt());
+        verify(eventPublisher, times(1)).publishEvent(new StudentDeletedEvent(1));
     }
 
     @Test
     public void testDeleteByNonExistentIdThrowsError() {
-        when(studentRepository.existsById(1)).thenReturn(false);
+        when(studentRepository.deleteStudentById(1)).thenReturn(0);
         Exception exception = assertThrows(NoSuchIdException.class, () -> serviceUnderTest.deleteStudentById(1));
         String expectedMessage = "Could not find student with id 1";
         String actualMessage = exception.getMessage();
         assertEquals(expectedMessage, actualMessage);
         verify(studentRepository, never()).delete(any());
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+
+    @Test
+    public void testDeleteStudentsByIdsReportsMissingIds() {
+        when(studentRepository.deleteExistingByIdIn(List.of(1, 2, 3))).thenReturn(List.of(3, 1));
+
+        StudentBulkDeleteResult result = serviceUnderTest.deleteStudentsByIds(List.of(1, 2, 3, 2));
+
+        assertEquals(List.of(1, 3), result.deleted());
+        assertEquals(List.of(2), result.missing());
+        verify(eventPublisher, times(1)).publishEvent(new StudentDeletedEvent(1));
+        verify(eventPublisher, times(1)).publishEvent(new StudentDeletedEvent(3));
+        verify(eventPublisher, never()).publishEvent(new StudentDeletedEvent(2));
+    }
+
+    @Test
+    public void testDeleteStudentsByIdsDeletesInChunks() {
+        List<Integer> ids = new ArrayList<>();
+        for (int id = 1; id <= StudentServiceImpl.DELETE_CHUNK_SIZE + 1; id++) {
+            ids.add(id);
+        }
+        when(studentRepository.deleteExistingByIdIn(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        StudentBulkDeleteResult result = serviceUnderTest.deleteStudentsByIds(ids);
+
+        assertEquals(ids, result.deleted());
+        assertTrue(result.missing().isEmpty());
+        verify(studentRepository, times(2)).deleteExistingByIdIn(anyList());
     }
 
 }
@@ -0,0 +1,137 @@
+package com.khanivorous.studentservice.shardingtests;
+
+import com.khanivorous.studentservice.student.NoSuchIdException;
+import com.khanivorous.studentservice.student.repository.StudentRepository;
+import com.khanivorous.studentservice.student.sharding.StudentShardRoutingDataSource;
+import com.khanivorous.studentservice.student.sharding.StudentShards;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class StudentShardsTest {
+
+    @Mock
+    private StudentRepository studentRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private DataSource home;
+
+    @Mock
+    private DataSource first;
+
+    @Mock
+    private DataSource second;
+
+    @Mock
+    private Connection homeConnection;
+
+    @Mock
+    private Connection secondConnection;
+
+    private StudentShardRoutingDataSource routing;
+
+    private StudentShards shardsUnderTest;
+
+    @BeforeEach
+    public void setUp() {
+        this.routing = new StudentShardRoutingDataSource(List.of(home, first, second));
+        this.shardsUnderTest = new StudentShards(studentRepository, Optional.of(routing), Optional.of(transactionManager), 2);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        shardsUnderTest.destroy();
+    }
+
+    @Test
+    public void testNextIdSpreadsStudentsOverShards() {
+        when(studentRepository.nextId()).thenReturn(7, 8, 9);
+
+        int firstId = shardsUnderTest.nextId();
+        int secondId = shardsUnderTest.nextId();
+        int onHome = shardsUnderTest.nextId(StudentShards.HOME_SHARD);
+
+        assertEquals(7 << 4 | 1, firstId);
+        assertEquals(1, shardsUnderTest.shardOf(firstId));
+        assertEquals(8 << 4 | 2, secondId);
+        assertEquals(2, shardsUnderTest.shardOf(secondId));
+        assertEquals(9 << 4, onHome);
+        assertEquals(StudentShards.HOME_SHARD, shardsUnderTest.shardOf(onHome));
+    }
+
+    @Test
+    public void testNextIdFailsWhenSequenceOutgrowsShardBits() {
+        when(studentRepository.nextId()).thenReturn(Integer.MAX_VALUE >> 3);
+
+        assertThrows(IllegalStateException.class, () -> shardsUnderTest.nextId());
+    }
+
+    @Test
+    public void testOnShardOfRoutesConnectionsToShardOfId() throws SQLException {
+        when(second.getConnection()).thenReturn(secondConnection);
+        when(home.getConnection()).thenReturn(homeConnection);
+
+        assertSame(secondConnection, shardsUnderTest.onShardOf(5 << 4 | 2, this::connection));
+        assertSame(homeConnection, routing.getConnection());
+    }
+
+    @Test
+    public void testOnShardOfRejectsIdOfMissingShard() {
+        assertThrows(NoSuchIdException.class, () -> shardsUnderTest.onShardOf(5 << 4 | 3, () -> null));
+    }
+
+    @Test
+    public void testGroupByShardDropsIdsOfMissingShards() {
+        Map<Integer, List<Integer>> byShard = shardsUnderTest.groupByShard(List.of(34, 16, 17, 3, 50), id -> id);
+
+        assertEquals(Map.of(0, List.of(16), 1, List.of(17), 2, List.of(34, 50)), byShard);
+    }
+
+    @Test
+    public void testMergeInterleavesSortedListsUpToLimit() {
+        List<List<Integer>> sorted = List.of(List.of(1, 4, 9), List.of(), List.of(2, 3, 10), List.of(5));
+
+        assertEquals(List.of(1, 2, 3, 4, 5, 9, 10), StudentShards.merge(sorted, Comparator.naturalOrder(), 100));
+        assertEquals(List.of(1, 2, 3, 4), StudentShards.merge(sorted, Comparator.naturalOrder(), 4));
+        assertEquals(List.of(7), StudentShards.merge(List.of(List.of(7, 8)), Comparator.naturalOrder(), 1));
+    }
+
+    @Test
+    public void testUnshardedRunsEverythingOnHomeShard() {
+        StudentShards unsharded = new StudentShards(studentRepository, Optional.empty(), Optional.empty(), 2);
+        when(studentRepository.nextId()).thenReturn(42);
+
+        assertEquals(42, unsharded.nextId());
+        assertEquals(StudentShards.HOME_SHARD, unsharded.shardOf(42));
+        assertEquals(List.of("read"), unsharded.scatter(() -> "read"));
+    }
+
+    private Connection connection() {
+        try {
+            return routing.getConnection();
+        } catch (SQLException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
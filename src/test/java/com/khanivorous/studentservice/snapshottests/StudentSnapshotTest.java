@@ -0,0 +1,166 @@
+package com.khanivorous.studentservice.snapshottests;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.khanivorous.studentservice.student.events.StudentCreatedEvent;
+import com.khanivorous.studentservice.student.events.StudentDeletedEvent;
+import com.khanivorous.studentservice.student.events.StudentUpdatedEvent;
+import com.khanivorous.studentservice.student.export.StudentJsonHttpMessageConverter;
+import com.khanivorous.studentservice.student.model.StudentDTO;
+import com.khanivorous.studentservice.student.repository.StudentRepository;
+import com.khanivorous.studentservice.student.sharding.StudentShards;
+import com.khanivorous.studentservice.student.snapshot.StudentSnapshot;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+@ExtendWith(MockitoExtension.class)
+public class StudentSnapshotTest {
+
+    private static final int SEGMENT_SIZE = 4;
+
+    @Mock
+    private StudentRepository studentRepository;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private StudentSnapshot snapshot;
+
+    @Test
+    public void testPagesFollowIdOrderAcrossSegments() {
+        snapshot = build(students(1, 10));
+
+        StudentSnapshot.Rows first = snapshot.page(0, 6);
+        assertEquals(students(1, 6), first);
+        assertTrue(first.hasMore());
+        assertEquals(6, first.lastId());
+
+        StudentSnapshot.Rows last = snapshot.page(first.lastId(), 6);
+        assertEquals(students(7, 10), last);
+        assertFalse(last.hasMore());
+        assertEquals(List.of(), snapshot.page(10, 6));
+        assertEquals(students(1, 10), snapshot.all());
+    }
+
+    @Test
+    public void testFollowsCreatedUpdatedAndDeletedStudents() {
+        snapshot = build(students(1, 3));
+
+        snapshot.onCreated(new StudentCreatedEvent(new StudentDTO(4, "Dee", 40, 0L)));
+        snapshot.onUpdated(new StudentUpdatedEvent(new StudentDTO(2, "Bo", 21, 3L)));
+        snapshot.onDeleted(new StudentDeletedEvent(1));
+        snapshot.onDeleted(new StudentDeletedEvent(99));
+
+        assertEquals(List.of(new StudentDTO(2, "Bo", 21, 3L), new StudentDTO(3, "Student 3", 20, 0L),
+                new StudentDTO(4, "Dee", 40, 0L)), snapshot.all());
+    }
+
+    @Test
+    public void testStaysInOrderThroughRandomWrites() {
+        snapshot = build(List.of());
+        TreeMap<Integer, StudentDTO> expected = new TreeMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 5_000; i++) {
+            int id = random.nextInt(500);
+            if (random.nextInt(3) == 0) {
+                snapshot.remove(id);
+                expected.remove(id);
+            } else {
+                StudentDTO student = new StudentDTO(id, random.nextBoolean() ? null : "Name " + i, random.nextBoolean() ? null : i, (long) i);
+                snapshot.put(student);
+                expected.put(id, student);
+            }
+        }
+
+        assertEquals(new ArrayList<>(expected.values()), snapshot.all());
+        assertEquals(expected.size(), snapshot.size());
+        int after = expected.keySet().stream().skip(expected.size() / 2).findFirst().orElseThrow();
+        assertEquals(new ArrayList<>(expected.tailMap(after, false).values()).subList(0, 10), snapshot.page(after, 10));
+    }
+
+    @Test
+    public void testWritesDuringTheBuildAreAppliedAfterIt() {
+        doAnswer(invocation -> {
+            Consumer<StudentDTO> consumer = invocation.getArgument(0);
+            consumer.accept(new StudentDTO(1, "Ann", 20, 0L));
+            snapshot.put(new StudentDTO(3, "Cy", 22, 0L));
+            snapshot.remove(1);
+            consumer.accept(new StudentDTO(2, "Ben", 21, 1L));
+            return null;
+        }).when(studentRepository).forEachStudent(any());
+        snapshot = new StudentSnapshot(studentRepository, new StudentShards(studentRepository, Optional.empty(), Optional.empty(), 1),
+                meterRegistry, SEGMENT_SIZE);
+        snapshot.afterSingletonsInstantiated();
+
+        assertEquals(List.of(new StudentDTO(2, "Ben", 21, 1L), new StudentDTO(3, "Cy", 22, 0L)), snapshot.all());
+    }
+
+    @Test
+    public void testRowsAreWrittenExactlyAsJacksonWritesTheStudents() throws Exception {
+        List<StudentDTO> students = List.of(
+                new StudentDTO(1, "Ben", 28, 0L),
+                new StudentDTO(2, null, null, 7L),
+                new StudentDTO(3, "", Integer.MAX_VALUE, Long.MAX_VALUE),
+                new StudentDTO(4, "\"quoted\" back\\slash tab\t\u0000nul\u007fdel", -1, 0L),
+                new StudentDTO(5, "Zoë Łukasz 山田 😀", 21, 12L),
+                new StudentDTO(6, "lone \ud83d high and \ude00 low", 22, 0L));
+        snapshot = build(students);
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        MockHttpOutputMessage output = new MockHttpOutputMessage();
+
+        new StudentJsonHttpMessageConverter(objectMapper).write(snapshot.all(), new ParameterizedTypeReference<List<StudentDTO>>() {
+        }.getType(), MediaType.APPLICATION_JSON, output);
+
+        assertArrayEquals(objectMapper.writeValueAsBytes(students), output.getBodyAsBytes());
+        assertEquals(students, snapshot.all());
+    }
+
+    @Test
+    public void testReportsItsSizeAsMetrics() {
+        snapshot = build(students(1, 10));
+
+        assertEquals(10, meterRegistry.get("student.snapshot.students").gauge().value());
+        double memory = meterRegistry.get("student.snapshot.memory").gauge().value();
+        assertEquals(snapshot.footprint(), memory);
+        assertTrue(memory > 10 * 20);
+    }
+
+    private StudentSnapshot build(List<StudentDTO> students) {
+        doAnswer(invocation -> {
+            Consumer<StudentDTO> consumer = invocation.getArgument(0);
+            students.forEach(consumer);
+            return null;
+        }).when(studentRepository).forEachStudent(any());
+        StudentSnapshot built = new StudentSnapshot(studentRepository,
+                new StudentShards(studentRepository, Optional.empty(), Optional.empty(), 1), meterRegistry, SEGMENT_SIZE);
+        built.afterSingletonsInstantiated();
+        return built;
+    }
+
+    private static List<StudentDTO> students(int from, int to) {
+        List<StudentDTO> students = new ArrayList<>();
+        for (int id = from; id <= to; id++) {
+            students.add(new StudentDTO(id, "Student " + id, 17 + id, 0L));
+        }
+        return students;
+    }
+}